@@ -0,0 +1,43 @@
+package br.com.ccs.rinha.benchmark;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+// Postgres local do docker-compose (porta 54323) por padrão, sobrescreva com -Drinha.jdbc.url
+public final class BenchmarkDatabase {
+
+    private static final String URL = System.getProperty("rinha.jdbc.url", "jdbc:postgresql://localhost:54323/rinha");
+    private static final String USER = System.getProperty("rinha.jdbc.user", "rinha");
+    private static final String PASSWORD = System.getProperty("rinha.jdbc.password", "rinha");
+
+    private BenchmarkDatabase() {
+    }
+
+    public static Connection connect() throws SQLException {
+        var conn = DriverManager.getConnection(URL, USER, PASSWORD);
+        conn.setAutoCommit(false);
+        return conn;
+    }
+
+    // pool pequeno para os benchmarks que passam pelo repositório, que pede uma conexão por consulta
+    public static HikariDataSource dataSource() {
+        var config = new HikariConfig();
+        config.setJdbcUrl(URL);
+        config.setUsername(USER);
+        config.setPassword(PASSWORD);
+        config.setMaximumPoolSize(2);
+        config.setAutoCommit(false);
+        return new HikariDataSource(config);
+    }
+
+    public static void truncate(Connection conn) throws SQLException {
+        try (var stmt = conn.createStatement()) {
+            stmt.execute("TRUNCATE payments, payments_rollup");
+        }
+        conn.commit();
+    }
+}
@@ -1,4 +1,4 @@
-package br.com.ccs.rinha.api.model.input;
+package br.com.ccs.rinha.benchmark;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
 
@@ -6,7 +6,8 @@ import java.math.BigDecimal;
 import java.time.OffsetDateTime;
 import java.util.UUID;
 
-public final class PaymentRequest {
+// Cópia do PaymentRequest anterior ao codec manual, binding Jackson + getJson() com StringBuilder
+public final class LegacyPaymentRequest {
     public UUID correlationId;
     public BigDecimal amount;
     @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'")
@@ -16,14 +17,6 @@ public final class PaymentRequest {
 
     private String json;
 
-    public void setDefaultFalse() {
-        this.isDefault = false;
-    }
-
-    public void setDefaultTrue() {
-        this.isDefault = true;
-    }
-
     public String getJson() {
         if (json == null) {
             toJson();
@@ -40,4 +33,4 @@ public final class PaymentRequest {
                 .append("}")
                 .toString();
     }
-}
\ No newline at end of file
+}
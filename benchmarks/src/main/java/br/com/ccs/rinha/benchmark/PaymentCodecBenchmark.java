@@ -0,0 +1,75 @@
+package br.com.ccs.rinha.benchmark;
+
+import br.com.ccs.rinha.api.codec.PaymentJsonCodec;
+import br.com.ccs.rinha.store.PaymentStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Ingestão do POST /payments + payload enviado ao processor: Jackson + StringBuilder contra o codec manual.
+// Rode com -prof gc para comparar a alocação por operação.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PaymentCodecBenchmark {
+
+    private ObjectMapper objectMapper;
+    private byte[] body;
+    private PaymentStore store;
+
+    @Setup
+    public void setup() {
+        objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        store = new PaymentStore(16);
+        body = ("{\"correlationId\":\"" + UUID.randomUUID() + "\",\"amount\":19.90}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] jacksonAndStringBuilder() throws Exception {
+        var pr = objectMapper.readValue(body, LegacyPaymentRequest.class);
+        pr.requestedAt = OffsetDateTime.now(ZoneOffset.UTC);
+        return pr.getJson().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public ByteBuffer jsonCodec() {
+        int slot = store.allocate();
+        PaymentJsonCodec.parse(body, 0, body.length, store, slot);
+        store.requestedAtMillis[slot] = System.currentTimeMillis();
+        var payload = PaymentJsonCodec.payload(store, slot);
+        store.release(slot);
+        return payload;
+    }
+
+    @Benchmark
+    public LegacyPaymentRequest jacksonParse() throws Exception {
+        return objectMapper.readValue(body, LegacyPaymentRequest.class);
+    }
+
+    @Benchmark
+    public long jsonCodecParse() {
+        int slot = store.allocate();
+        PaymentJsonCodec.parse(body, 0, body.length, store, slot);
+        store.release(slot);
+        return store.amountCents[slot];
+    }
+}
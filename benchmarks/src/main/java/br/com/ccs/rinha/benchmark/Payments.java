@@ -0,0 +1,46 @@
+package br.com.ccs.rinha.benchmark;
+
+import br.com.ccs.rinha.monitor.PipelineMetrics;
+import br.com.ccs.rinha.store.CorrelationIdSet;
+import br.com.ccs.rinha.store.IntakeJournal;
+import br.com.ccs.rinha.store.PaymentStore;
+
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.ThreadLocalRandom;
+
+public final class Payments {
+
+    private Payments() {
+    }
+
+    // repositórios medidos sem o diário de entrada
+    public static IntakeJournal journalDisabled(PaymentStore store) throws IOException {
+        return new IntakeJournal(store, new CorrelationIdSet(1024), new PipelineMetrics(), false, "", 0, 0);
+    }
+
+    public static int random(PaymentStore store, OffsetDateTime requestedAt) {
+        return random(store, requestedAt.toInstant().toEpochMilli());
+    }
+
+    public static int random(PaymentStore store, long requestedAtMillis) {
+        var random = ThreadLocalRandom.current();
+        int slot = store.allocate();
+        store.correlationIdMsb[slot] = random.nextLong();
+        store.correlationIdLsb[slot] = random.nextLong();
+        store.amountCents[slot] = random.nextLong(1, 100_000);
+        store.requestedAtMillis[slot] = requestedAtMillis;
+        store.isDefault[slot] = random.nextInt(10) < 8;
+        return slot;
+    }
+
+    public static int[] random(PaymentStore store, int count) {
+        var now = OffsetDateTime.now(ZoneOffset.UTC);
+        var slots = new int[count];
+        for (int i = 0; i < count; i++) {
+            slots[i] = random(store, now.plusNanos(i * 100_000L));
+        }
+        return slots;
+    }
+}
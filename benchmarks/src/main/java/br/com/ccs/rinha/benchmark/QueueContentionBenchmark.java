@@ -0,0 +1,147 @@
+package br.com.ccs.rinha.benchmark;
+
+import br.com.ccs.rinha.store.IntBlockingQueue;
+import br.com.ccs.rinha.store.MpmcBlockingQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Vazão de mensagens entre N produtores e 2 consumidores, como no caminho controller -> workers do processor.
+// Filtre com -p, ex.: -p queue=IntBlockingQueue,ArrayBlockingQueue -p threads=virtual
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@OperationsPerInvocation(QueueContentionBenchmark.MESSAGES)
+public class QueueContentionBenchmark {
+
+    static final int MESSAGES = 100_000;
+    private static final int CAPACITY = 1024;
+    private static final int CONSUMERS = 2;
+    private static final Integer[] BOXED = new Integer[CAPACITY];
+
+    static {
+        for (int i = 0; i < CAPACITY; i++) {
+            BOXED[i] = i;
+        }
+    }
+
+    @Param({"ArrayBlockingQueue", "LinkedBlockingQueue", "MpmcBlockingQueue", "IntBlockingQueue"})
+    public String queue;
+
+    @Param({"1", "2", "4", "8", "16"})
+    public int producers;
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    private Channel channel;
+    private ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        channel = switch (queue) {
+            case "ArrayBlockingQueue" -> boxed(new ArrayBlockingQueue<>(CAPACITY));
+            case "LinkedBlockingQueue" -> boxed(new LinkedBlockingQueue<>(CAPACITY));
+            case "MpmcBlockingQueue" -> boxed(new MpmcBlockingQueue<>(CAPACITY));
+            case "IntBlockingQueue" -> primitive(new IntBlockingQueue(CAPACITY));
+            default -> throw new IllegalArgumentException(queue);
+        };
+
+        executor = threads.equals("virtual")
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(producers + CONSUMERS);
+    }
+
+    @Benchmark
+    public void transfer() throws Exception {
+        int perProducer = MESSAGES / producers;
+        var remaining = new AtomicInteger(perProducer * producers);
+        var tasks = new ArrayList<Future<?>>(producers + CONSUMERS);
+
+        for (int c = 0; c < CONSUMERS; c++) {
+            tasks.add(executor.submit(() -> {
+                while (remaining.getAndDecrement() > 0) {
+                    channel.take();
+                }
+                return null;
+            }));
+        }
+
+        for (int p = 0; p < producers; p++) {
+            tasks.add(executor.submit(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    while (!channel.offer(i & (CAPACITY - 1))) {
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+
+        for (var task : tasks) {
+            task.get();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private interface Channel {
+        boolean offer(int value);
+
+        int take() throws InterruptedException;
+    }
+
+    private static Channel boxed(BlockingQueue<Integer> queue) {
+        return new Channel() {
+            @Override
+            public boolean offer(int value) {
+                return queue.offer(BOXED[value]);
+            }
+
+            @Override
+            public int take() throws InterruptedException {
+                return queue.take();
+            }
+        };
+    }
+
+    private static Channel primitive(IntBlockingQueue queue) {
+        return new Channel() {
+            @Override
+            public boolean offer(int value) {
+                return queue.offer(value);
+            }
+
+            @Override
+            public int take() throws InterruptedException {
+                return queue.take();
+            }
+        };
+    }
+}
@@ -0,0 +1,106 @@
+package br.com.ccs.rinha.loadtest;
+
+import br.com.ccs.rinha.monitor.Histogram;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Modelo aberto: as chegadas seguem a taxa alvo (rampa linear) independente das respostas, e a latência é medida a
+// partir do instante planejado de envio, então uma API travada não esconde a própria fila (coordinated omission).
+final class LoadGenerator {
+
+    private static final Duration TIMEOUT = Duration.ofMillis(1500);
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final HttpClient client;
+    private final URI paymentsUri;
+    private final String amount;
+
+    final Histogram latency = new Histogram();
+    final LongAdder sent = new LongAdder();
+    final LongAdder succeeded = new LongAdder();
+    final LongAdder timeouts = new LongAdder();
+    final LongAdder errors = new LongAdder();
+    private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    LoadGenerator(HttpClient client, String baseUrl, String amount) {
+        this.client = client;
+        this.paymentsUri = URI.create(baseUrl + "/payments");
+        this.amount = amount;
+    }
+
+    // rampa de startRate até targetRate req/s ao longo de duration
+    void run(double startRate, double targetRate, Duration duration) throws InterruptedException {
+        long durationNanos = duration.toNanos();
+        double seconds = durationNanos / 1e9;
+        long start = System.nanoTime();
+        long issued = 0;
+
+        while (true) {
+            long now = System.nanoTime();
+            long elapsed = Math.min(now - start, durationNanos);
+            double t = elapsed / 1e9;
+            long due = (long) (startRate * t + (targetRate - startRate) * t * t / (2 * seconds));
+
+            for (; issued < due; issued++) {
+                send(now);
+            }
+
+            if (elapsed >= durationNanos) {
+                break;
+            }
+            LockSupport.parkNanos(TICK_NANOS);
+        }
+
+        // espera as respostas em voo; o timeout do cliente limita a espera
+        while (pending.get() > 0) {
+            Thread.sleep(10);
+        }
+    }
+
+    private void send(long intendedAt) {
+        var body = "{\"correlationId\":\"" + UUID.randomUUID() + "\",\"amount\":" + amount + "}";
+        var request = HttpRequest.newBuilder(paymentsUri)
+                .timeout(TIMEOUT)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+
+        sent.increment();
+        pending.incrementAndGet();
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, error) -> {
+                    long elapsed = System.nanoTime() - intendedAt;
+                    if (error != null) {
+                        (error.getCause() instanceof HttpTimeoutException ? timeouts : errors).increment();
+                    } else {
+                        int status = response.statusCode();
+                        statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+                        if (status == 200 || status == 201 || status == 202 || status == 204) {
+                            succeeded.increment();
+                            latency.record(elapsed);
+                        }
+                    }
+                    pending.decrementAndGet();
+                });
+    }
+
+    Map<Integer, Long> statuses() {
+        var snapshot = new TreeMap<Integer, Long>();
+        statuses.forEach((status, count) -> snapshot.put(status, count.sum()));
+        return snapshot;
+    }
+}
@@ -0,0 +1,203 @@
+package br.com.ccs.rinha.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
+
+// Reproduz localmente o rinha.js: rampa de carga contra POST /payments, estágios de delay/falha nos processors,
+// checagem de consistência a cada 10s e, no fim, p50/p99/p99.9, lag e a pontuação com a mesma fórmula do k6.
+// java -cp target/benchmarks.jar br.com.ccs.rinha.loadtest.LoadTest --rate=500 --duration=60 --stubs=true
+public final class LoadTest {
+
+    // estágios do rinha.js em segundos de um teste de 60s; escalados para a duração configurada
+    private static final List<Stage> RINHA_STAGES = List.of(
+            new Stage(1, 0, false, 0, false),
+            new Stage(10, 100, false, 0, false),
+            new Stage(20, 100, true, 0, false),
+            new Stage(30, 2000, true, 1000, true),
+            new Stage(40, 20, false, 20, false),
+            new Stage(50, 0, false, 5000, false));
+
+    private static final List<Stage> STEADY_STAGES = List.of(new Stage(0, 0, false, 0, false));
+
+    private static final Duration CHECK_INTERVAL = Duration.ofSeconds(10);
+
+    public static void main(String[] args) throws Exception {
+        var options = parse(args);
+        var backendUrl = options.getOrDefault("url", "http://localhost:9999");
+        var defaultUrl = options.getOrDefault("default-url", "http://localhost:8001");
+        var fallbackUrl = options.getOrDefault("fallback-url", "http://localhost:8002");
+        var token = options.getOrDefault("token", "123");
+        var amount = options.getOrDefault("amount", "19.90");
+        double rate = Double.parseDouble(options.getOrDefault("rate", "500"));
+        double startRate = Double.parseDouble(options.getOrDefault("start-rate", "1"));
+        int seconds = Integer.parseInt(options.getOrDefault("duration", "60"));
+        var stages = options.getOrDefault("scenario", "rinha").equals("steady") ? STEADY_STAGES : RINHA_STAGES;
+        boolean stubs = Boolean.parseBoolean(options.getOrDefault("stubs", "true"));
+
+        StubProcessor defaultStub = null;
+        StubProcessor fallbackStub = null;
+        if (stubs) {
+            defaultStub = new StubProcessor(URI.create(defaultUrl).getPort(), new BigDecimal("0.05"));
+            fallbackStub = new StubProcessor(URI.create(fallbackUrl).getPort(), new BigDecimal("0.15"));
+        }
+
+        var client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(1))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        var defaultProcessor = new ProcessorAdmin(client, defaultUrl, token);
+        var fallbackProcessor = new ProcessorAdmin(client, fallbackUrl, token);
+        var backend = new ProcessorAdmin(client, backendUrl, token);
+
+        defaultProcessor.purge();
+        fallbackProcessor.purge();
+        backend.send("POST", "/purge-payments", "");
+        defaultProcessor.configure(0, false);
+        fallbackProcessor.configure(0, false);
+
+        System.out.printf(Locale.ROOT, "Load test: %s, %.0f -> %.0f req/s over %ds, %d stages, stubs=%s%n",
+                backendUrl, startRate, rate, seconds, stages.size(), stubs);
+
+        var generator = new LoadGenerator(client, backendUrl, amount);
+        var inconsistency = new DoubleAdder();
+        var start = Instant.now();
+        double scale = seconds / 60.0;
+
+        var stageThread = Thread.ofVirtual().name("load-test-stages").start(() -> {
+            try {
+                for (var stage : stages) {
+                    sleepUntil(start.plusMillis((long) (stage.atSecond * scale * 1000)));
+                    defaultProcessor.configure(stage.defaultDelay, stage.defaultFailure);
+                    fallbackProcessor.configure(stage.fallbackDelay, stage.fallbackFailure);
+                    System.out.printf("stage @%ds: default=%dms%s fallback=%dms%s%n",
+                            Duration.between(start, Instant.now()).toSeconds(),
+                            stage.defaultDelay, stage.defaultFailure ? " failing" : "",
+                            stage.fallbackDelay, stage.fallbackFailure ? " failing" : "");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                System.err.println("Stage error: " + e.getMessage());
+            }
+        });
+
+        // mesma janela do checkPayments: últimos 10s até 100ms atrás
+        var checkThread = Thread.ofVirtual().name("load-test-check").start(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    Thread.sleep(CHECK_INTERVAL);
+                    var now = Instant.now();
+                    var from = now.minus(CHECK_INTERVAL);
+                    var to = now.minusMillis(100);
+                    var backendSummary = backend.get("/payments-summary?from=" + from + "&to=" + to);
+                    double amountDiff = difference(backendSummary, defaultProcessor.summary(from, to), fallbackProcessor.summary(from, to));
+                    inconsistency.add(amountDiff);
+                    if (amountDiff != 0) {
+                        System.out.printf(Locale.ROOT, "inconsistency of %.2f in [%s, %s]%n", amountDiff, from, to);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Exception e) {
+                    System.err.println("Consistency check error: " + e.getMessage());
+                }
+            }
+        });
+
+        generator.run(startRate, rate, Duration.ofSeconds(seconds));
+        checkThread.interrupt();
+        stageThread.interrupt();
+
+        // mesma janela do teardown: 70s até agora
+        var to = Instant.now();
+        var from = to.minusSeconds(Math.max(70, seconds + 10));
+        var backendSummary = backend.get("/payments-summary?from=" + from + "&to=" + to);
+        var defaultSummary = defaultProcessor.summary(from, to);
+        var fallbackSummary = fallbackProcessor.summary(from, to);
+        inconsistency.add(difference(backendSummary, defaultSummary, fallbackSummary));
+
+        report(generator, backendSummary, defaultSummary, fallbackSummary, inconsistency.sum());
+
+        if (stubs) {
+            defaultStub.close();
+            fallbackStub.close();
+        }
+        System.exit(0);
+    }
+
+    private static double difference(JsonNode backend, JsonNode defaultProcessor, JsonNode fallbackProcessor) {
+        var diff = backend.path("default").path("totalAmount").decimalValue().subtract(defaultProcessor.path("totalAmount").decimalValue()).abs()
+                .add(backend.path("fallback").path("totalAmount").decimalValue().subtract(fallbackProcessor.path("totalAmount").decimalValue()).abs());
+        return diff.doubleValue();
+    }
+
+    private static void report(LoadGenerator generator, JsonNode backend, JsonNode defaultProcessor,
+                               JsonNode fallbackProcessor, double inconsistency) {
+        var latency = generator.latency;
+        double p99 = millis(latency.quantile(0.99));
+        long succeeded = generator.succeeded.sum();
+
+        var defaultAmount = backend.path("default").path("totalAmount").decimalValue();
+        var fallbackAmount = backend.path("fallback").path("totalAmount").decimalValue();
+        double totalAmount = defaultAmount.add(fallbackAmount).doubleValue();
+        double totalFee = defaultAmount.multiply(defaultProcessor.path("feePerTransaction").decimalValue())
+                .add(fallbackAmount.multiply(fallbackProcessor.path("feePerTransaction").decimalValue())).doubleValue();
+        long lag = succeeded - backend.path("default").path("totalRequests").asLong() - backend.path("fallback").path("totalRequests").asLong();
+
+        double bonus = Math.max((11 - p99) * 0.02, 0);
+        double fine = inconsistency != 0 ? 0.35 : 0;
+        double partial = totalAmount - totalFee;
+        double score = partial + partial * bonus - partial * fine;
+
+        System.out.println();
+        System.out.printf(Locale.ROOT, "requests     sent=%d succeeded=%d timeouts=%d errors=%d statuses=%s%n",
+                generator.sent.sum(), succeeded, generator.timeouts.sum(), generator.errors.sum(), generator.statuses());
+        System.out.printf(Locale.ROOT, "latency ms   p50=%.2f p90=%.2f p99=%.2f p99.9=%.2f max=%.2f%n",
+                millis(latency.quantile(0.5)), millis(latency.quantile(0.9)), p99,
+                millis(latency.quantile(0.999)), millis(latency.quantile(1.0)));
+        System.out.printf(Locale.ROOT, "backend      default=%s fallback=%s%n", backend.path("default"), backend.path("fallback"));
+        System.out.printf(Locale.ROOT, "processors   default=%s fallback=%s%n", defaultProcessor, fallbackProcessor);
+        System.out.printf(Locale.ROOT, "consistency  inconsistency=%.2f lag=%d%n", inconsistency, lag);
+        System.out.printf(Locale.ROOT, "score        gross=%.2f fee=%.2f p99 bonus=%.1f%% fine=%.0f%% net=%.2f%n",
+                totalAmount, totalFee, bonus * 100, fine * 100, score);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private static void sleepUntil(Instant instant) throws InterruptedException {
+        long millis = Duration.between(Instant.now(), instant).toMillis();
+        if (millis > 0) {
+            Thread.sleep(millis);
+        }
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        var options = new HashMap<String, String>();
+        for (var arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            int eq = arg.indexOf('=');
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        return options;
+    }
+
+    private record Stage(int atSecond, int defaultDelay, boolean defaultFailure, int fallbackDelay,
+                         boolean fallbackFailure) {
+    }
+}
@@ -0,0 +1,65 @@
+package br.com.ccs.rinha.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+
+// Cliente HTTP da API /admin dos processors e do backend: serve tanto para o StubProcessor quanto para os oficiais
+final class ProcessorAdmin {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Duration TIMEOUT = Duration.ofMillis(1500);
+
+    private final HttpClient client;
+    private final String baseUrl;
+    private final String token;
+
+    ProcessorAdmin(HttpClient client, String baseUrl, String token) {
+        this.client = client;
+        this.baseUrl = baseUrl;
+        this.token = token;
+    }
+
+    void configure(int delay, boolean failure) throws IOException, InterruptedException {
+        send("PUT", "/admin/configurations/delay", "{\"delay\":" + delay + "}");
+        send("PUT", "/admin/configurations/failure", "{\"failure\":" + failure + "}");
+    }
+
+    void purge() throws IOException, InterruptedException {
+        send("POST", "/admin/purge-payments", "");
+    }
+
+    JsonNode summary(Instant from, Instant to) throws IOException, InterruptedException {
+        return get("/admin/payments-summary?from=" + from + "&to=" + to);
+    }
+
+    JsonNode get(String path) throws IOException, InterruptedException {
+        var response = client.send(request(path).GET().build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IOException("GET " + baseUrl + path + " returned " + response.statusCode());
+        }
+        return MAPPER.readTree(response.body());
+    }
+
+    void send(String method, String path, String body) throws IOException, InterruptedException {
+        var response = client.send(request(path).method(method, HttpRequest.BodyPublishers.ofString(body)).build(),
+                HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() >= 300) {
+            throw new IOException(method + " " + baseUrl + path + " returned " + response.statusCode());
+        }
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(TIMEOUT)
+                .header("Content-Type", "application/json")
+                .header("X-Rinha-Token", token);
+    }
+}
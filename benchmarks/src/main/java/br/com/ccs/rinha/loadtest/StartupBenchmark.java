@@ -0,0 +1,175 @@
+package br.com.ccs.rinha.loadtest;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+// Mede o que o container paga antes e depois de aquecer: lança a aplicação (binário nativo ou java -jar) --runs vezes,
+// cronometra até o primeiro 200 do GET /payments-summary, lê VmRSS do /proc ocioso e, depois de --duration segundos
+// de carga em --rate req/s contra os stubs, VmRSS e o pico VmHWM, para comparar com o limite de 100MB do compose.
+// java -cp target/benchmarks.jar br.com.ccs.rinha.loadtest.StartupBenchmark --cmd="../target/rinha" --runs=5
+public final class StartupBenchmark {
+
+    private static final Duration READY_TIMEOUT = Duration.ofSeconds(60);
+    private static final Duration STOP_TIMEOUT = Duration.ofSeconds(10);
+
+    public static void main(String[] args) throws Exception {
+        var options = parse(args);
+        var command = options.get("cmd");
+        if (command == null) {
+            throw new IllegalArgumentException("Missing --cmd=<command that starts the application>");
+        }
+        var backendUrl = options.getOrDefault("url", "http://localhost:9999");
+        var defaultUrl = options.getOrDefault("default-url", "http://localhost:8001");
+        var fallbackUrl = options.getOrDefault("fallback-url", "http://localhost:8002");
+        int runs = Integer.parseInt(options.getOrDefault("runs", "5"));
+        double rate = Double.parseDouble(options.getOrDefault("rate", "300"));
+        int seconds = Integer.parseInt(options.getOrDefault("duration", "10"));
+        var log = Path.of(options.getOrDefault("log", "startup-benchmark.log"));
+
+        var client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(200))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+
+        System.out.printf(Locale.ROOT, "Startup benchmark: %s, %d runs, %.0f req/s over %ds%n",
+                command, runs, rate, seconds);
+        System.out.printf(Locale.ROOT, "%-4s %12s %12s %12s %12s%n", "run", "ready ms", "idle MB", "load MB", "peak MB");
+
+        var results = new ArrayList<Run>();
+        try (var defaultStub = new StubProcessor(URI.create(defaultUrl).getPort(), new BigDecimal("0.05"));
+             var fallbackStub = new StubProcessor(URI.create(fallbackUrl).getPort(), new BigDecimal("0.15"))) {
+
+            for (int i = 1; i <= runs; i++) {
+                var run = run(client, command, backendUrl, defaultUrl, fallbackUrl, rate, seconds, log);
+                results.add(run);
+                System.out.printf(Locale.ROOT, "%-4d %12.1f %12.1f %12.1f %12.1f%n",
+                        i, run.readyMillis, mb(run.idleKb), mb(run.loadKb), mb(run.peakKb));
+            }
+        }
+
+        System.out.printf(Locale.ROOT, "%-4s %12.1f %12.1f %12.1f %12.1f%n", "p50",
+                median(results, r -> r.readyMillis), mb(median(results, r -> r.idleKb)),
+                mb(median(results, r -> r.loadKb)), mb(median(results, r -> r.peakKb)));
+    }
+
+    private static Run run(HttpClient client, String command, String backendUrl, String defaultUrl,
+                           String fallbackUrl, double rate, int seconds, Path log) throws Exception {
+        var builder = new ProcessBuilder(command.trim().split("\\s+"))
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(log.toFile()));
+        // quem chama define o resto do ambiente (o mesmo app-env do compose); aqui só o que aponta para os stubs
+        var env = builder.environment();
+        env.putIfAbsent("SERVER_PORT", String.valueOf(URI.create(backendUrl).getPort()));
+        env.putIfAbsent("payment-processor.default.url", defaultUrl);
+        env.putIfAbsent("payment-processor.fallback.url", fallbackUrl);
+
+        long start = System.nanoTime();
+        var process = builder.start();
+        try {
+            awaitReady(client, process, backendUrl);
+            double readyMillis = (System.nanoTime() - start) / 1e6;
+            long idleKb = status(process, "VmRSS:");
+
+            var generator = new LoadGenerator(client, backendUrl, "19.90");
+            generator.run(rate, rate, Duration.ofSeconds(seconds));
+            long loadKb = status(process, "VmRSS:");
+            long peakKb = status(process, "VmHWM:");
+
+            return new Run(readyMillis, idleKb, loadKb, peakKb);
+        } finally {
+            stop(process);
+        }
+    }
+
+    private static void awaitReady(HttpClient client, Process process, String backendUrl) throws Exception {
+        var request = HttpRequest.newBuilder(URI.create(backendUrl + "/payments-summary"))
+                .timeout(Duration.ofMillis(500))
+                .GET()
+                .build();
+        long deadline = System.nanoTime() + READY_TIMEOUT.toNanos();
+
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("Application exited with " + process.exitValue() + " before ready");
+            }
+            try {
+                if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // ainda não está ouvindo
+            }
+            Thread.sleep(5);
+        }
+        throw new IllegalStateException("Application not ready after " + READY_TIMEOUT);
+    }
+
+    // SIGTERM para a imagem instrumentada ou o shutdown hook rodarem como no docker stop
+    private static void stop(Process process) throws InterruptedException {
+        process.destroy();
+        if (!process.waitFor(STOP_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+            process.destroyForcibly().waitFor();
+        }
+    }
+
+    // --cmd pode ser um script que lança a aplicação; mede o processo mais fundo da árvore
+    private static long status(Process process, String field) throws IOException {
+        var handle = process.toHandle();
+        while (true) {
+            var child = handle.children().findFirst();
+            if (child.isEmpty()) {
+                break;
+            }
+            handle = child.get();
+        }
+
+        for (var line : Files.readAllLines(Path.of("/proc", String.valueOf(handle.pid()), "status"))) {
+            if (line.startsWith(field)) {
+                return Long.parseLong(line.substring(field.length()).trim().split("\\s+")[0]);
+            }
+        }
+        throw new IllegalStateException(field + " not found for pid " + handle.pid());
+    }
+
+    private static double median(List<Run> runs, ToDoubleFunction<Run> metric) {
+        double[] values = runs.stream().mapToDouble(metric).toArray();
+        Arrays.sort(values);
+        return values[values.length / 2];
+    }
+
+    private static double mb(double kb) {
+        return kb / 1024;
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        var options = new HashMap<String, String>();
+        for (var arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            int eq = arg.indexOf('=');
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        return options;
+    }
+
+    private record Run(double readyMillis, long idleKb, long loadKb, long peakKb) {
+    }
+}
@@ -0,0 +1,167 @@
+package br.com.ccs.rinha.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Payment processor em processo com a mesma API do oficial: POST /payments, service-health com limite de 1 chamada
+// a cada 5s e os endpoints /admin de delay, falha, resumo e purge que o rinha.js usa.
+// Sozinho: java -cp target/benchmarks.jar br.com.ccs.rinha.loadtest.StubProcessor <porta> [taxa]
+public final class StubProcessor implements AutoCloseable {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final long HEALTH_INTERVAL_MILLIS = 5_000;
+
+    private final HttpServer server;
+    private final BigDecimal fee;
+    private final Set<String> correlationIds = ConcurrentHashMap.newKeySet();
+    private final ConcurrentLinkedQueue<Payment> payments = new ConcurrentLinkedQueue<>();
+    private final AtomicLong lastHealthCheck = new AtomicLong();
+
+    private volatile int delay;
+    private volatile boolean failure;
+
+    public StubProcessor(int port, BigDecimal fee) throws IOException {
+        this.fee = fee;
+        this.server = HttpServer.create(new InetSocketAddress(port), 1024);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = Integer.parseInt(args[0]);
+        var fee = args.length > 1 ? new BigDecimal(args[1]) : new BigDecimal("0.05");
+        new StubProcessor(port, fee);
+        System.out.printf("Stub processor on port %d with fee %s%n", port, fee);
+        Thread.currentThread().join();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            var method = exchange.getRequestMethod();
+            var path = exchange.getRequestURI().getPath();
+
+            switch (method + " " + path) {
+                case "POST /payments" -> payment(exchange);
+                case "GET /payments/service-health" -> health(exchange);
+                case "GET /admin/payments-summary" -> summary(exchange);
+                case "PUT /admin/configurations/delay" -> {
+                    delay = MAPPER.readTree(exchange.getRequestBody()).path("delay").asInt();
+                    respond(exchange, 200, "{}");
+                }
+                case "PUT /admin/configurations/failure" -> {
+                    failure = MAPPER.readTree(exchange.getRequestBody()).path("failure").asBoolean();
+                    respond(exchange, 200, "{}");
+                }
+                case "PUT /admin/configurations/token" -> respond(exchange, 204, null);
+                case "POST /admin/purge-payments" -> {
+                    correlationIds.clear();
+                    payments.clear();
+                    respond(exchange, 200, "{\"message\":\"All payments purged.\"}");
+                }
+                default -> respond(exchange, 404, null);
+            }
+        }
+    }
+
+    private void payment(HttpExchange exchange) throws IOException {
+        var body = MAPPER.readTree(exchange.getRequestBody());
+
+        if (failure) {
+            respond(exchange, 500, null);
+            return;
+        }
+
+        sleep(delay);
+
+        var correlationId = body.path("correlationId").asText();
+        if (!correlationIds.add(correlationId)) {
+            respond(exchange, 422, "{\"message\":\"CorrelationId already exists\"}");
+            return;
+        }
+
+        var requestedAt = OffsetDateTime.parse(body.path("requestedAt").asText()).toInstant().toEpochMilli();
+        payments.add(new Payment(requestedAt, body.path("amount").decimalValue()));
+        respond(exchange, 200, "{\"message\":\"payment processed successfully\"}");
+    }
+
+    private void health(HttpExchange exchange) throws IOException {
+        long now = System.currentTimeMillis();
+        long last = lastHealthCheck.get();
+        if (now - last < HEALTH_INTERVAL_MILLIS || !lastHealthCheck.compareAndSet(last, now)) {
+            respond(exchange, 429, null);
+            return;
+        }
+        respond(exchange, 200, "{\"failing\":" + failure + ",\"minResponseTime\":" + delay + "}");
+    }
+
+    private void summary(HttpExchange exchange) throws IOException {
+        long from = Long.MIN_VALUE;
+        long to = Long.MAX_VALUE;
+        var query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (var param : query.split("&")) {
+                var pair = param.split("=", 2);
+                var value = URLDecoder.decode(pair[1], StandardCharsets.UTF_8);
+                long millis = OffsetDateTime.parse(value).toInstant().toEpochMilli();
+                if (pair[0].equals("from")) from = millis;
+                if (pair[0].equals("to")) to = millis;
+            }
+        }
+
+        long count = 0;
+        var total = BigDecimal.ZERO;
+        for (var payment : payments) {
+            if (payment.requestedAtMillis >= from && payment.requestedAtMillis <= to) {
+                count++;
+                total = total.add(payment.amount);
+            }
+        }
+
+        respond(exchange, 200, String.format(Locale.ROOT,
+                "{\"totalRequests\":%d,\"totalAmount\":%s,\"totalFee\":%s,\"feePerTransaction\":%s}",
+                count, total.toPlainString(), total.multiply(fee).toPlainString(), fee.toPlainString()));
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        var bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static void sleep(int millis) {
+        if (millis <= 0) return;
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private record Payment(long requestedAtMillis, BigDecimal amount) {
+    }
+}
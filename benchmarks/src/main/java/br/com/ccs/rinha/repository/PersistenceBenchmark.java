@@ -0,0 +1,108 @@
+package br.com.ccs.rinha.repository;
+
+import br.com.ccs.rinha.benchmark.BenchmarkDatabase;
+import br.com.ccs.rinha.benchmark.Payments;
+import br.com.ccs.rinha.monitor.PipelineMetrics;
+import br.com.ccs.rinha.store.PaymentStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.concurrent.TimeUnit;
+
+// Compara o sink WAL em arquivo mapeado com o caminho JDBC (batch e COPY binário, com e sem o rollup por segundo),
+// em linhas persistidas por segundo. Os modos jdbc-* exigem o Postgres do docker-compose rodando.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@OperationsPerInvocation(PersistenceBenchmark.BATCH_SIZE)
+public class PersistenceBenchmark {
+
+    static final int BATCH_SIZE = 500;
+
+    @Param({"wal", "jdbc-batch", "jdbc-copy", "jdbc-copy-rollup"})
+    public String sink;
+
+    private PaymentStore store;
+    private int[] batch;
+    private Path walDirectory;
+    private MappedFilePaymentRepository wal;
+    private Connection conn;
+    private PreparedStatement stmt;
+    private PgBinaryCopyWriter copyWriter;
+    private PaymentRollup rollup;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        store = new PaymentStore(BATCH_SIZE);
+        batch = Payments.random(store, BATCH_SIZE);
+
+        if (sink.equals("wal")) {
+            walDirectory = Files.createTempDirectory("rinha-wal-bench");
+            wal = new MappedFilePaymentRepository(store, Payments.journalDisabled(store), new PipelineMetrics(), walDirectory.toString(), 64, BATCH_SIZE);
+            return;
+        }
+
+        conn = BenchmarkDatabase.connect();
+        stmt = conn.prepareStatement(JdbcPaymentRepository.SQL_INSERT);
+        copyWriter = sink.startsWith("jdbc-copy") ? new PgBinaryCopyWriter(conn, false) : null;
+        rollup = sink.endsWith("-rollup") ? new PaymentRollup(conn) : null;
+    }
+
+    @Setup(Level.Iteration)
+    public void clean() throws Exception {
+        if (wal != null) {
+            wal.purge();
+        } else {
+            BenchmarkDatabase.truncate(conn);
+        }
+    }
+
+    // com o índice único em correlation_id, cada invocação precisa de ids novos
+    @Setup(Level.Invocation)
+    public void renewIds() {
+        for (int slot : batch) {
+            store.correlationIdLsb[slot]++;
+        }
+    }
+
+    @Benchmark
+    public void persistBatch() throws Exception {
+        if (wal != null) {
+            wal.appendBatch(batch, BATCH_SIZE);
+        } else {
+            JdbcPaymentRepository.persistBatch(conn, stmt, copyWriter, rollup, false, store, batch, BATCH_SIZE);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        if (wal != null) {
+            wal.purge();
+            Files.walk(walDirectory)
+                    .sorted((a, b) -> b.compareTo(a))
+                    .forEach(p -> p.toFile().delete());
+            return;
+        }
+        stmt.close();
+        conn.close();
+    }
+}
@@ -0,0 +1,147 @@
+package br.com.ccs.rinha.repository;
+
+import br.com.ccs.rinha.api.model.output.PaymentSummary;
+import br.com.ccs.rinha.benchmark.BenchmarkDatabase;
+import br.com.ccs.rinha.benchmark.Payments;
+import br.com.ccs.rinha.monitor.PipelineMetrics;
+import br.com.ccs.rinha.store.PaymentStore;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+// GET /payments-summary com 10k/100k/1M pagamentos espalhados em 60s, consultando a metade central do intervalo.
+// index e wal rodam sem dependências; jdbc e jdbc-rollup precisam do Postgres do docker-compose (veja BenchmarkDatabase).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SummaryBenchmark {
+
+    private static final int CHUNK = 10_000;
+    private static final long SPAN_MILLIS = 60_000;
+
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    @Param({"index", "wal", "jdbc", "jdbc-rollup", "jdbc-lane"})
+    public String source;
+
+    private PaymentSummaryIndex index;
+    private PaymentRepository repository;
+    private Path walDirectory;
+    private HikariDataSource dataSource;
+    private OffsetDateTime from;
+    private OffsetDateTime to;
+
+    @Setup
+    public void setup() throws Exception {
+        // a janela do índice começa no reset, então os pagamentos começam logo depois
+        long base = System.currentTimeMillis() + 1_000;
+        from = at(base + SPAN_MILLIS / 4);
+        to = at(base + SPAN_MILLIS * 3 / 4);
+
+        var store = new PaymentStore(CHUNK);
+        int[] slots = new int[CHUNK];
+
+        switch (source) {
+            case "index" -> {
+                index = new PaymentSummaryIndex(true, 1, 120);
+                load(store, slots, base, (s, size) -> {
+                    for (int i = 0; i < size; i++) {
+                        int slot = s[i];
+                        index.add(store.requestedAtMillis[slot], store.amountCents[slot], store.isDefault[slot]);
+                    }
+                });
+            }
+            case "wal" -> {
+                walDirectory = Files.createTempDirectory("rinha-wal-summary");
+                var wal = new MappedFilePaymentRepository(store, Payments.journalDisabled(store), new PipelineMetrics(), walDirectory.toString(), 64, CHUNK);
+                load(store, slots, base, wal::appendBatch);
+                repository = wal;
+            }
+            case "jdbc", "jdbc-rollup", "jdbc-lane" -> {
+                boolean rollupEnabled = source.equals("jdbc-rollup");
+                dataSource = BenchmarkDatabase.dataSource();
+                try (Connection conn = BenchmarkDatabase.connect();
+                     PreparedStatement insert = conn.prepareStatement(JdbcPaymentRepository.SQL_INSERT)) {
+                    BenchmarkDatabase.truncate(conn);
+                    var copyWriter = new PgBinaryCopyWriter(conn, false);
+                    var rollup = rollupEnabled ? new PaymentRollup(conn) : null;
+                    load(store, slots, base, (s, size) ->
+                            JdbcPaymentRepository.persistBatch(conn, insert, copyWriter, rollup, false, store, s, size));
+                    try (var stmt = conn.createStatement()) {
+                        stmt.execute("ANALYZE payments");
+                        stmt.execute("ANALYZE payments_rollup");
+                    }
+                    conn.commit();
+                }
+                repository = new JdbcPaymentRepository(dataSource, store, Payments.journalDisabled(store), new PipelineMetrics(),
+                        1, 1, false, rollupEnabled, false, 10, CHUNK, 5, 20, source.equals("jdbc-lane"), 0, false, 0);
+            }
+            default -> throw new IllegalArgumentException(source);
+        }
+    }
+
+    @Benchmark
+    public PaymentSummary getSummary() {
+        return index != null ? index.getSummary(from, to) : repository.getSummary(from, to);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        if (walDirectory != null) {
+            repository.purge();
+            Files.walk(walDirectory)
+                    .sorted((a, b) -> b.compareTo(a))
+                    .forEach(p -> p.toFile().delete());
+        }
+        if (dataSource != null) {
+            try (Connection conn = BenchmarkDatabase.connect()) {
+                BenchmarkDatabase.truncate(conn);
+            }
+            dataSource.close();
+        }
+    }
+
+    // gera os pagamentos em blocos reaproveitando os slots do store
+    private void load(PaymentStore store, int[] slots, long base, Sink sink) throws Exception {
+        for (int loaded = 0; loaded < rows; loaded += CHUNK) {
+            int size = Math.min(CHUNK, rows - loaded);
+            for (int i = 0; i < size; i++) {
+                slots[i] = Payments.random(store, base + (loaded + i) * SPAN_MILLIS / rows);
+            }
+            sink.accept(slots, size);
+            store.releaseAll(slots, size);
+        }
+    }
+
+    private static OffsetDateTime at(long epochMillis) {
+        return OffsetDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneOffset.UTC);
+    }
+
+    @FunctionalInterface
+    private interface Sink {
+        void accept(int[] slots, int size) throws Exception;
+    }
+}
@@ -0,0 +1,63 @@
+-- variante particionada por hora de requested_at: troque o volume do init.sql no docker-compose para usá-la.
+-- o purge vira TRUNCATE das partições e consultas por intervalo só tocam as partições do período.
+-- tabela particionada não guarda dados nem aceita UNLOGGED; as partições é que são UNLOGGED
+CREATE TABLE IF NOT EXISTS payments
+(
+    correlation_id UUID           NOT NULL,
+    -- com REPOSITORY_AMOUNT_CENTS=true a coluna passa a ser BIGINT em centavos: amount BIGINT NOT NULL
+    amount         DECIMAL(10, 2) NOT NULL,
+    requested_at   TIMESTAMP      NOT NULL,
+    is_default     BOOLEAN        NOT NULL
+) PARTITION BY RANGE (requested_at);
+
+-- partições de 1h cobrindo da subida do banco até 1 dia depois; o que cair fora vai para a default
+DO
+$$
+    DECLARE
+        start_at TIMESTAMP := date_trunc('hour', now() AT TIME ZONE 'UTC') - INTERVAL '1 hour';
+    BEGIN
+        FOR i IN 0..24
+            LOOP
+                EXECUTE format(
+                        'CREATE UNLOGGED TABLE IF NOT EXISTS %I PARTITION OF payments FOR VALUES FROM (%L) TO (%L)',
+                        'payments_' || to_char(start_at + i * INTERVAL '1 hour', 'YYYYMMDDHH24'),
+                        start_at + i * INTERVAL '1 hour',
+                        start_at + (i + 1) * INTERVAL '1 hour');
+            END LOOP;
+    END
+$$;
+
+CREATE UNLOGGED TABLE IF NOT EXISTS payments_default PARTITION OF payments DEFAULT;
+
+CREATE INDEX IF NOT EXISTS idx_payments_covering
+    ON payments (requested_at)
+    INCLUDE (is_default, amount);
+
+-- índice único em tabela particionada precisa da chave de partição; requested_at é carimbado no primeiro envio ao
+-- processor, repetido em todas as tentativas e no replay do journal, então a garantia continua sendo uma liquidação
+-- por processor
+CREATE UNIQUE INDEX IF NOT EXISTS uk_payments_correlation_processor
+    ON payments (correlation_id, is_default, requested_at);
+
+-- agregado por segundo mantido pelo writer quando REPOSITORY_ROLLUP_ENABLED=true
+CREATE UNLOGGED TABLE IF NOT EXISTS payments_rollup
+(
+    bucket_second  BIGINT  NOT NULL,
+    is_default     BOOLEAN NOT NULL,
+    total_requests BIGINT  NOT NULL,
+    total_cents    BIGINT  NOT NULL,
+    PRIMARY KEY (bucket_second, is_default)
+);
+
+
+CREATE UNLOGGED TABLE IF NOT EXISTS processor_health
+(
+    processor         VARCHAR(16) PRIMARY KEY,
+    failing           BOOLEAN   NOT NULL DEFAULT FALSE,
+    min_response_time INTEGER   NOT NULL DEFAULT 0,
+    checked_at        TIMESTAMP NOT NULL DEFAULT 'epoch'
+);
+
+INSERT INTO processor_health (processor)
+VALUES ('default'), ('fallback')
+ON CONFLICT DO NOTHING;
@@ -1,6 +1,7 @@
 CREATE UNLOGGED TABLE IF NOT EXISTS payments
 (
     correlation_id UUID           NOT NULL,
+    -- com REPOSITORY_AMOUNT_CENTS=true a coluna passa a ser BIGINT em centavos: amount BIGINT NOT NULL
     amount         DECIMAL(10, 2) NOT NULL,
     requested_at   TIMESTAMP      NOT NULL,
     is_default     BOOLEAN        NOT NULL
@@ -9,3 +10,30 @@ CREATE UNLOGGED TABLE IF NOT EXISTS payments
 CREATE INDEX IF NOT EXISTS idx_payments_covering
     ON payments (requested_at)
     INCLUDE (is_default, amount);
+
+-- um pagamento é liquidado no máximo uma vez em cada processor
+CREATE UNIQUE INDEX IF NOT EXISTS uk_payments_correlation_processor
+    ON payments (correlation_id, is_default);
+
+-- agregado por segundo mantido pelo writer quando REPOSITORY_ROLLUP_ENABLED=true
+CREATE UNLOGGED TABLE IF NOT EXISTS payments_rollup
+(
+    bucket_second  BIGINT  NOT NULL,
+    is_default     BOOLEAN NOT NULL,
+    total_requests BIGINT  NOT NULL,
+    total_cents    BIGINT  NOT NULL,
+    PRIMARY KEY (bucket_second, is_default)
+);
+
+
+CREATE UNLOGGED TABLE IF NOT EXISTS processor_health
+(
+    processor         VARCHAR(16) PRIMARY KEY,
+    failing           BOOLEAN   NOT NULL DEFAULT FALSE,
+    min_response_time INTEGER   NOT NULL DEFAULT 0,
+    checked_at        TIMESTAMP NOT NULL DEFAULT 'epoch'
+);
+
+INSERT INTO processor_health (processor)
+VALUES ('default'), ('fallback')
+ON CONFLICT DO NOTHING;
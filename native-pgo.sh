@@ -0,0 +1,47 @@
+#!/bin/bash
+# Build nativo com PGO (exige Oracle GraalVM no JAVA_HOME, o Community não tem --pgo):
+# imagem instrumentada -> carga do loadtest com stubs e Postgres local -> perfil -> imagem otimizada em target/rinha
+set -e
+
+RATE=${RATE:-500}
+DURATION=${DURATION:-60}
+PROFILE=${PROFILE:-pgo/default.iprof}
+
+# Banco do compose na porta 54323, mesmo schema do init.sql
+docker compose -f docker-compose.yml up -d --wait backend-db
+
+mvn -Pnative,pgo-instrument -DskipTests clean native:compile
+(cd benchmarks && mvn -B -q package)
+
+mkdir -p "$(dirname "$PROFILE")"
+rm -rf /tmp/rinha-pgo-journal
+
+# Mesmo app-env do compose, apontando para o banco local e para os stubs que o LoadTest sobe em 8001/8002
+env ACTIVE_MONITOR=true VIRTUAL_THREADS=true THREAD_POOL_SIZE=10 QUEUE_SIZE=500 WEBCLIENT_MAX_CONNECTION=200 \
+  REQUEST_CONNECTION_TIMEOUT=100 REQUEST_READ_TIMEOUT=5000 \
+  PAYMENT_PROCESSOR_MAX_RETRIES=5 PAYMENT_PROCESSOR_REQUEST_TIMEOUT=10000 PAYMENT_PROCESSOR_WORKERS=1 \
+  PAYMENT_REPOSITORY=jdbc REPOSITORY_COPY_ENABLED=true REPOSITORY_SUMMARY_LANE_ENABLED=true \
+  REPOSITORY_SUMMARY_FLUSH_ENABLED=true SUMMARY_INDEX_ENABLED=true \
+  INTAKE_JOURNAL_ENABLED=true INTAKE_JOURNAL_DIR=/tmp/rinha-pgo-journal \
+  ADMISSION_ENABLED=true RAW_INGRESS_ENABLED=true PROCESSOR_CLIENT=pipelined CIRCUIT_BREAKER_ENABLED=true \
+  PROCESSOR_WINDOW_ENABLED=true HEALTH_CHECK_ENABLED=true SERVER_PORT=9999 \
+  payment-processor.default.url=http://localhost:8001 payment-processor.fallback.url=http://localhost:8002 \
+  SPRING_APPLICATION_JSON='{"server.port":9999,"spring.main.banner-mode":"off",
+    "spring.datasource.url":"jdbc:postgresql://localhost:54323/rinha",
+    "spring.datasource.username":"rinha","spring.datasource.password":"rinha",
+    "spring.datasource.hikari.maximum-pool-size":4,"spring.datasource.hikari.minimum-idle":4}' \
+  target/rinha -XX:ProfilesDumpFile="$PROFILE" &
+APP=$!
+
+until curl -sf http://localhost:9999/payments-summary > /dev/null; do sleep 0.2; done
+
+# Estágios do rinha.js: exercita default, fallback, retry e resumo, não só o caminho feliz
+java -cp benchmarks/target/benchmarks.jar br.com.ccs.rinha.loadtest.LoadTest \
+  --url=http://localhost:9999 --rate="$RATE" --duration="$DURATION"
+
+# O perfil é gravado no shutdown
+kill -TERM $APP
+wait $APP || true
+
+mvn -Pnative,pgo -Dpgo.profile="$(pwd)/$PROFILE" -DskipTests native:compile
+echo "Imagem otimizada: target/rinha (perfil em $PROFILE)"
@@ -0,0 +1,39 @@
+package br.com.ccs.rinha.api.codec;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+import java.io.IOException;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+
+// centavos em long no Java, número com duas casas no JSON
+public final class CentsJson {
+
+    private CentsJson() {
+    }
+
+    public static final class Serializer extends JsonSerializer<Long> {
+        @Override
+        public void serialize(Long cents, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            byte[] buf = new byte[24];
+            int length = PaymentJsonCodec.writeCents(buf, 0, cents);
+            gen.writeNumber(new String(buf, 0, length, StandardCharsets.US_ASCII));
+        }
+    }
+
+    // só lê o resumo do peer, uma vez por consulta: o BigDecimal aqui garante o mesmo HALF_UP do parser
+    public static final class Deserializer extends JsonDeserializer<Long> {
+        @Override
+        public Long deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            return parser.getDecimalValue()
+                    .setScale(2, RoundingMode.HALF_UP)
+                    .unscaledValue()
+                    .longValueExact();
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package br.com.ccs.rinha.api.codec;
+
+import br.com.ccs.rinha.api.model.output.PaymentSummary;
+import br.com.ccs.rinha.store.PaymentStore;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Parser e writer do corpo fixo {correlationId, amount}, direto de/para bytes sem UUID, BigDecimal ou String
+public final class PaymentJsonCodec {
+
+    private static final byte[] CORRELATION_ID = "correlationId".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] AMOUNT = "amount".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PAYLOAD_ID = "{\"correlationId\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PAYLOAD_AMOUNT = "\",\"amount\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PAYLOAD_REQUESTED_AT = ",\"requestedAt\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SUMMARY_DEFAULT = "{\"default\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SUMMARY_FALLBACK = ",\"fallback\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SUMMARY_REQUESTS = "{\"totalRequests\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SUMMARY_AMOUNT = ",\"totalAmount\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final int UUID_LENGTH = 36;
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    private static final int MAX_INTEGER_DIGITS = 17;
+    // amount DECIMAL(10,2) em payments: acima disso o banco recusaria um pagamento já liquidado no processor
+    public static final long MAX_AMOUNT_CENTS = 9_999_999_999L;
+
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[256]);
+
+    private PaymentJsonCodec() {
+    }
+
+    public static void parse(byte[] buf, int offset, int length, PaymentStore store, int slot) {
+        int end = offset + length;
+        int i = skipWhitespace(buf, offset, end);
+        expect(buf, i++, end, '{');
+
+        boolean hasId = false;
+        boolean hasAmount = false;
+
+        while (true) {
+            i = skipWhitespace(buf, i, end);
+            if (i >= end) throw invalid();
+
+            byte b = buf[i];
+            if (b == '}') break;
+            if (b == ',') {
+                i++;
+                continue;
+            }
+
+            expect(buf, i++, end, '"');
+            int keyStart = i;
+            while (i < end && buf[i] != '"') {
+                if (buf[i] == '\\') i++;
+                i++;
+            }
+            int keyEnd = i++;
+
+            i = skipWhitespace(buf, i, end);
+            expect(buf, i++, end, ':');
+            i = skipWhitespace(buf, i, end);
+
+            if (matches(buf, keyStart, keyEnd, CORRELATION_ID)) {
+                i = parseUuid(buf, i, end, store, slot);
+                hasId = true;
+            } else if (matches(buf, keyStart, keyEnd, AMOUNT)) {
+                i = parseAmount(buf, i, end, store, slot);
+                hasAmount = true;
+            } else {
+                i = skipValue(buf, i, end);
+            }
+        }
+
+        if (!hasId || !hasAmount) throw invalid();
+    }
+
+    private static int parseUuid(byte[] buf, int i, int end, PaymentStore store, int slot) {
+        expect(buf, i++, end, '"');
+        if (i + UUID_LENGTH >= end || buf[i + UUID_LENGTH] != '"') throw invalid();
+
+        long msb = 0;
+        long lsb = 0;
+        int digits = 0;
+
+        for (int p = i; p < i + UUID_LENGTH; p++) {
+            byte c = buf[p];
+            if (c == '-') {
+                int pos = p - i;
+                if (pos != 8 && pos != 13 && pos != 18 && pos != 23) throw invalid();
+                continue;
+            }
+
+            long nibble = hexValue(c);
+            if (digits < 16) {
+                msb = msb << 4 | nibble;
+            } else {
+                lsb = lsb << 4 | nibble;
+            }
+            digits++;
+        }
+
+        if (digits != 32) throw invalid();
+
+        store.correlationIdMsb[slot] = msb;
+        store.correlationIdLsb[slot] = lsb;
+        return i + UUID_LENGTH + 1;
+    }
+
+    // HALF_UP nos centavos, igual a BigDecimal.setScale(2, HALF_UP); notação exponencial cai no BigDecimal
+    private static int parseAmount(byte[] buf, int i, int end, PaymentStore store, int slot) {
+        boolean quoted = i < end && buf[i] == '"';
+        if (quoted) i++;
+
+        int start = i;
+        boolean negative = i < end && buf[i] == '-';
+        if (negative) i++;
+
+        long units = 0;
+        int integerDigits = 0;
+        while (i < end && isDigit(buf[i])) {
+            units = units * 10 + (buf[i++] - '0');
+            integerDigits++;
+        }
+
+        long fraction = 0;
+        int fractionDigits = 0;
+        boolean roundUp = false;
+        if (i < end && buf[i] == '.') {
+            i++;
+            while (i < end && isDigit(buf[i])) {
+                if (fractionDigits < 2) {
+                    fraction = fraction * 10 + (buf[i] - '0');
+                } else if (fractionDigits == 2) {
+                    roundUp = buf[i] >= '5';
+                }
+                fractionDigits++;
+                i++;
+            }
+        }
+
+        if (i < end && (buf[i] == 'e' || buf[i] == 'E') || integerDigits > 15) {
+            while (i < end && (isDigit(buf[i]) || buf[i] == 'e' || buf[i] == 'E' || buf[i] == '+' || buf[i] == '-')) i++;
+            var amount = new BigDecimal(new String(buf, start, i - start, StandardCharsets.US_ASCII));
+            // não cabe em long de centavos (1e30): corpo inválido, não erro interno; e sem setScale de 1e999999999
+            if (amount.precision() - amount.scale() > MAX_INTEGER_DIGITS) throw invalid();
+            try {
+                store.amountCents[slot] = amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+            } catch (ArithmeticException e) {
+                throw invalid();
+            }
+        } else {
+            if (integerDigits == 0 && fractionDigits == 0) throw invalid();
+            if (fractionDigits == 1) fraction *= 10;
+
+            long cents = units * 100 + fraction + (roundUp ? 1 : 0);
+            store.amountCents[slot] = negative ? -cents : cents;
+        }
+        long parsed = store.amountCents[slot];
+        if (parsed > MAX_AMOUNT_CENTS || parsed < -MAX_AMOUNT_CENTS) throw invalid();
+
+        if (quoted) expect(buf, i++, end, '"');
+        return i;
+    }
+
+    private static int skipValue(byte[] buf, int i, int end) {
+        int depth = 0;
+        while (i < end) {
+            byte b = buf[i];
+            if (b == '"') {
+                i++;
+                while (i < end && buf[i] != '"') {
+                    if (buf[i] == '\\') i++;
+                    i++;
+                }
+            } else if (b == '{' || b == '[') {
+                depth++;
+            } else if (b == '}' || b == ']') {
+                if (depth == 0) return i;
+                depth--;
+            } else if (b == ',' && depth == 0) {
+                return i;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    // escreve na região do slot no store, sem alocar array; o ByteBuffer devolvido vale enquanto o slot não for liberado
+    public static ByteBuffer payload(PaymentStore store, int slot) {
+        byte[] buf = store.payload;
+        int start = slot * PaymentStore.PAYLOAD_SIZE;
+        int p = put(buf, start, PAYLOAD_ID);
+        p = writeUuid(buf, p, store.correlationIdMsb[slot], store.correlationIdLsb[slot]);
+        p = put(buf, p, PAYLOAD_AMOUNT);
+        p = writeCents(buf, p, store.amountCents[slot]);
+        p = put(buf, p, PAYLOAD_REQUESTED_AT);
+        p = writeTimestamp(buf, p, store.requestedAtMillis[slot]);
+        buf[p++] = '"';
+        buf[p++] = '}';
+        return ByteBuffer.wrap(buf, start, p - start);
+    }
+
+    // mesmo JSON que o Jackson gera para PaymentSummary, usado pelo ingress sem Spring MVC
+    public static byte[] summary(PaymentSummary summary) {
+        byte[] buf = SCRATCH.get();
+        int p = put(buf, 0, SUMMARY_DEFAULT);
+        p = writeSummary(buf, p, summary._default());
+        p = put(buf, p, SUMMARY_FALLBACK);
+        p = writeSummary(buf, p, summary.fallback());
+        buf[p++] = '}';
+        return Arrays.copyOf(buf, p);
+    }
+
+    private static int writeSummary(byte[] buf, int p, PaymentSummary.Summary summary) {
+        p = put(buf, p, SUMMARY_REQUESTS);
+        p = writeLong(buf, p, summary.totalRequests());
+        p = put(buf, p, SUMMARY_AMOUNT);
+        p = writeCents(buf, p, summary.totalCents());
+        buf[p++] = '}';
+        return p;
+    }
+
+    private static int writeUuid(byte[] buf, int p, long msb, long lsb) {
+        p = writeHex(buf, p, msb >>> 32, 8);
+        buf[p++] = '-';
+        p = writeHex(buf, p, msb >>> 16, 4);
+        buf[p++] = '-';
+        p = writeHex(buf, p, msb, 4);
+        buf[p++] = '-';
+        p = writeHex(buf, p, lsb >>> 48, 4);
+        buf[p++] = '-';
+        return writeHex(buf, p, lsb, 12);
+    }
+
+    private static int writeHex(byte[] buf, int p, long value, int digits) {
+        for (int i = digits - 1; i >= 0; i--) {
+            buf[p + i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+        return p + digits;
+    }
+
+    public static int writeCents(byte[] buf, int p, long cents) {
+        if (cents < 0) {
+            buf[p++] = '-';
+            cents = -cents;
+        }
+        p = writeLong(buf, p, cents / 100);
+        buf[p++] = '.';
+        buf[p++] = (byte) ('0' + cents % 100 / 10);
+        buf[p++] = (byte) ('0' + cents % 10);
+        return p;
+    }
+
+    public static int writeLong(byte[] buf, int p, long value) {
+        if (value == 0) {
+            buf[p] = '0';
+            return p + 1;
+        }
+        int digits = 0;
+        for (long v = value; v != 0; v /= 10) digits++;
+        for (int i = p + digits - 1; i >= p; i--) {
+            buf[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return p + digits;
+    }
+
+    // yyyy-MM-ddTHH:mm:ss.SSSZ em UTC, conversão civil de dias sem java.time
+    public static int writeTimestamp(byte[] buf, int p, long epochMillis) {
+        long days = Math.floorDiv(epochMillis, MILLIS_PER_DAY);
+        long millisOfDay = Math.floorMod(epochMillis, MILLIS_PER_DAY);
+
+        long z = days + 719_468;
+        long era = Math.floorDiv(z, 146_097);
+        long doe = z - era * 146_097;
+        long yoe = (doe - doe / 1_460 + doe / 36_524 - doe / 146_096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        long day = doy - (153 * mp + 2) / 5 + 1;
+        long month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+
+        p = writePadded(buf, p, year, 4);
+        buf[p++] = '-';
+        p = writePadded(buf, p, month, 2);
+        buf[p++] = '-';
+        p = writePadded(buf, p, day, 2);
+        buf[p++] = 'T';
+        p = writePadded(buf, p, millisOfDay / 3_600_000, 2);
+        buf[p++] = ':';
+        p = writePadded(buf, p, millisOfDay / 60_000 % 60, 2);
+        buf[p++] = ':';
+        p = writePadded(buf, p, millisOfDay / 1_000 % 60, 2);
+        buf[p++] = '.';
+        p = writePadded(buf, p, millisOfDay % 1_000, 3);
+        buf[p++] = 'Z';
+        return p;
+    }
+
+    private static int writePadded(byte[] buf, int p, long value, int width) {
+        for (int i = p + width - 1; i >= p; i--) {
+            buf[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return p + width;
+    }
+
+    private static int put(byte[] buf, int p, byte[] bytes) {
+        System.arraycopy(bytes, 0, buf, p, bytes.length);
+        return p + bytes.length;
+    }
+
+    private static boolean matches(byte[] buf, int start, int end, byte[] key) {
+        return Arrays.equals(buf, start, end, key, 0, key.length);
+    }
+
+    private static long hexValue(byte c) {
+        if (c >= '0' && c <= '9') return c - '0';
+        if (c >= 'a' && c <= 'f') return c - 'a' + 10;
+        if (c >= 'A' && c <= 'F') return c - 'A' + 10;
+        throw invalid();
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static int skipWhitespace(byte[] buf, int i, int end) {
+        while (i < end && (buf[i] == ' ' || buf[i] == '\n' || buf[i] == '\r' || buf[i] == '\t')) i++;
+        return i;
+    }
+
+    private static void expect(byte[] buf, int i, int end, char c) {
+        if (i >= end || buf[i] != c) throw invalid();
+    }
+
+    private static IllegalArgumentException invalid() {
+        return new IllegalArgumentException("Invalid payment body");
+    }
+}
@@ -1,57 +1,119 @@
 package br.com.ccs.rinha.api.controller;
 
-import br.com.ccs.rinha.api.model.input.PaymentRequest;
+import br.com.ccs.rinha.api.codec.PaymentJsonCodec;
 import br.com.ccs.rinha.api.model.output.PaymentSummary;
-import br.com.ccs.rinha.repository.JdbcPaymentRepository;
+import br.com.ccs.rinha.monitor.PipelineMetrics;
+import br.com.ccs.rinha.service.AdmissionLimiter;
 import br.com.ccs.rinha.service.PaymentProcessorClientServiceBlocking;
+import br.com.ccs.rinha.service.PaymentSummaryService;
+import br.com.ccs.rinha.store.IntBlockingQueue;
+import br.com.ccs.rinha.store.PaymentStore;
 import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.time.OffsetDateTime;
-import java.time.ZoneOffset;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class PaymentController {
 
+    private static final Logger log = LoggerFactory.getLogger(PaymentController.class);
+
+    private final PaymentStore store;
     private final PaymentProcessorClientServiceBlocking client;
-    private final JdbcPaymentRepository repository;
+    private final PaymentSummaryService summaryService;
     private final ExecutorService executor;
+    private final PipelineMetrics metrics;
 
-    public PaymentController(PaymentProcessorClientServiceBlocking client,
-                             JdbcPaymentRepository repository,
-                             ThreadPoolExecutor executor) {
+    public PaymentController(PaymentStore store,
+                             PaymentProcessorClientServiceBlocking client,
+                             PaymentSummaryService summaryService,
+                             ThreadPoolExecutor executor,
+                             PipelineMetrics metrics) {
 
+        this.store = store;
         this.client = client;
-        this.repository = repository;
+        this.summaryService = summaryService;
         this.executor = executor;
+        this.metrics = metrics;
     }
 
     @PostMapping("/payments")
-    public void createPayment(@RequestBody PaymentRequest paymentRequest) {
-        executor.submit(() -> {
-            paymentRequest.receivedAt = OffsetDateTime.now(ZoneOffset.UTC);
-            client.processPayment(paymentRequest);
-        }, executor);
+    public void createPayment(@RequestBody byte[] body) {
+        int slot = store.allocate();
+        if (slot == IntBlockingQueue.EMPTY) {
+            log.error("Payment rejected, store is full");
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE);
+        }
+
+        try {
+            PaymentJsonCodec.parse(body, 0, body.length, store, slot);
+        } catch (IllegalArgumentException e) {
+            store.release(slot);
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+
+        // o offer na fila do processor não bloqueia, então dispensa o salto pelo executor
+        store.receivedAtMillis[slot] = System.currentTimeMillis();
+        var decision = client.processPayment(slot);
+        if (decision != AdmissionLimiter.Decision.ACCEPTED) {
+            throw new ResponseStatusException(HttpStatus.valueOf(decision.status));
+        }
     }
 
+    // JSON escrito pelo codec direto dos centavos, sem passar pelo Jackson
     @GetMapping("/payments-summary")
-    public PaymentSummary getPaymentsSummary(@RequestParam(required = false) OffsetDateTime from,
-                                             @RequestParam(required = false) OffsetDateTime to) {
+    public ResponseEntity<byte[]> getPaymentsSummary(@RequestParam(required = false) OffsetDateTime from,
+                                                     @RequestParam(required = false) OffsetDateTime to) {
+
+        try {
+            return json(CompletableFuture.supplyAsync(() -> summaryService.getSummary(from, to), executor).join());
+        } catch (RejectedExecutionException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    @GetMapping("/internal/payments-summary")
+    public ResponseEntity<byte[]> getLocalPaymentsSummary(@RequestParam OffsetDateTime from,
+                                                          @RequestParam OffsetDateTime to) {
+
+        var summary = summaryService.getLocalSummary(from, to);
+        if (summary == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+
+        return json(summary);
+    }
+
+    private static ResponseEntity<byte[]> json(PaymentSummary summary) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(PaymentJsonCodec.summary(summary));
+    }
 
-        return CompletableFuture.supplyAsync(() -> repository.getSummary(from, to), executor).join();
+    @GetMapping(value = "/internal/metrics", produces = PipelineMetrics.CONTENT_TYPE)
+    public String getMetrics() {
+        return metrics.render();
     }
 
     @PostMapping("/purge-payments")
     public ResponseEntity<Void> purgePayments() {
-        repository.purge();
+        summaryService.purge();
         return ResponseEntity.ok().build();
     }
 
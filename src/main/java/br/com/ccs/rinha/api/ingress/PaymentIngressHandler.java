@@ -0,0 +1,231 @@
+package br.com.ccs.rinha.api.ingress;
+
+import br.com.ccs.rinha.api.codec.PaymentJsonCodec;
+import br.com.ccs.rinha.api.model.output.PaymentSummary;
+import br.com.ccs.rinha.service.PaymentProcessorClientServiceBlocking;
+import br.com.ccs.rinha.service.PaymentSummaryService;
+import br.com.ccs.rinha.store.IntBlockingQueue;
+import br.com.ccs.rinha.store.PaymentStore;
+import io.undertow.connector.PooledByteBuffer;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.Methods;
+import io.undertow.util.StatusCodes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xnio.ChannelListener;
+import org.xnio.IoUtils;
+import org.xnio.channels.StreamSourceChannel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Deque;
+
+// Atende as rotas da API direto no HttpHandler do Undertow, antes do servlet/DispatcherServlet.
+// O POST /payments roda inteiro na thread de IO: corpo lido em buffer do pool do Undertow e enfileirado sem bloquear.
+// Os GETs de resumo bloqueiam (peer/JDBC) e vão para os workers do Undertow. O resto segue para o servlet.
+public class PaymentIngressHandler implements HttpHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentIngressHandler.class);
+    private static final String PAYMENTS = "/payments";
+    private static final String SUMMARY = "/payments-summary";
+    private static final String LOCAL_SUMMARY = "/internal/payments-summary";
+    private static final String PURGE = "/purge-payments";
+    private static final String APPLICATION_JSON = "application/json";
+
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[1024]);
+
+    private final HttpHandler next;
+    private final PaymentStore store;
+    private final PaymentProcessorClientServiceBlocking client;
+    private final PaymentSummaryService summaryService;
+
+    public PaymentIngressHandler(HttpHandler next,
+                                 PaymentStore store,
+                                 PaymentProcessorClientServiceBlocking client,
+                                 PaymentSummaryService summaryService) {
+        this.next = next;
+        this.store = store;
+        this.client = client;
+        this.summaryService = summaryService;
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        var method = exchange.getRequestMethod();
+        var path = exchange.getRequestPath();
+
+        if (method.equals(Methods.POST)) {
+            if (PAYMENTS.equals(path)) {
+                readPayment(exchange);
+                return;
+            }
+            if (PURGE.equals(path)) {
+                exchange.dispatch(() -> purge(exchange));
+                return;
+            }
+        } else if (method.equals(Methods.GET)) {
+            if (SUMMARY.equals(path)) {
+                exchange.dispatch(() -> summary(exchange, false));
+                return;
+            }
+            if (LOCAL_SUMMARY.equals(path)) {
+                exchange.dispatch(() -> summary(exchange, true));
+                return;
+            }
+        }
+
+        next.handleRequest(exchange);
+    }
+
+    private void readPayment(HttpServerExchange exchange) {
+        long length = exchange.getRequestContentLength();
+        var pooled = exchange.getConnection().getByteBufferPool().allocate();
+
+        if (length <= 0 || length > pooled.getBuffer().capacity()) {
+            pooled.close();
+            end(exchange, StatusCodes.BAD_REQUEST);
+            return;
+        }
+
+        pooled.getBuffer().clear().limit((int) length);
+        new BodyReader(exchange, pooled).handleEvent(exchange.getRequestChannel());
+    }
+
+    private void createPayment(HttpServerExchange exchange, ByteBuffer body) {
+        int length = body.remaining();
+        byte[] buf = SCRATCH.get();
+        body.get(buf, 0, length);
+
+        int slot = store.allocate();
+        if (slot == IntBlockingQueue.EMPTY) {
+            log.error("Payment rejected, store is full");
+            end(exchange, StatusCodes.SERVICE_UNAVAILABLE);
+            return;
+        }
+
+        try {
+            PaymentJsonCodec.parse(buf, 0, length, store, slot);
+        } catch (IllegalArgumentException e) {
+            store.release(slot);
+            end(exchange, StatusCodes.BAD_REQUEST);
+            return;
+        }
+
+        store.receivedAtMillis[slot] = System.currentTimeMillis();
+        end(exchange, client.processPayment(slot).status);
+    }
+
+    private void summary(HttpServerExchange exchange, boolean local) {
+        OffsetDateTime from;
+        OffsetDateTime to;
+        try {
+            from = dateParam(exchange, "from");
+            to = dateParam(exchange, "to");
+        } catch (DateTimeParseException e) {
+            end(exchange, StatusCodes.BAD_REQUEST);
+            return;
+        }
+
+        try {
+            PaymentSummary summary;
+            if (local) {
+                if (from == null || to == null) {
+                    end(exchange, StatusCodes.BAD_REQUEST);
+                    return;
+                }
+                summary = summaryService.getLocalSummary(from, to);
+                if (summary == null) {
+                    end(exchange, StatusCodes.SERVICE_UNAVAILABLE);
+                    return;
+                }
+            } else {
+                summary = summaryService.getSummary(from, to);
+            }
+
+            exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, APPLICATION_JSON);
+            exchange.getResponseSender().send(ByteBuffer.wrap(PaymentJsonCodec.summary(summary)));
+        } catch (Exception e) {
+            log.error("Get summary error: {}", e.getMessage(), e);
+            end(exchange, StatusCodes.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    private void purge(HttpServerExchange exchange) {
+        try {
+            summaryService.purge();
+            end(exchange, StatusCodes.OK);
+        } catch (Exception e) {
+            log.error("Purge error: {}", e.getMessage(), e);
+            end(exchange, StatusCodes.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    private static OffsetDateTime dateParam(HttpServerExchange exchange, String name) {
+        Deque<String> values = exchange.getQueryParameters().get(name);
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+        return OffsetDateTime.parse(values.getFirst());
+    }
+
+    private static void end(HttpServerExchange exchange, int status) {
+        exchange.setStatusCode(status);
+        exchange.endExchange();
+    }
+
+    // lê o corpo sem bloquear a thread de IO; se não chegou inteiro, continua no próximo evento de leitura
+    private final class BodyReader implements ChannelListener<StreamSourceChannel> {
+        private final HttpServerExchange exchange;
+        private final PooledByteBuffer pooled;
+        private boolean registered;
+
+        private BodyReader(HttpServerExchange exchange, PooledByteBuffer pooled) {
+            this.exchange = exchange;
+            this.pooled = pooled;
+        }
+
+        @Override
+        public void handleEvent(StreamSourceChannel channel) {
+            var buffer = pooled.getBuffer();
+            try {
+                int read = 0;
+                while (buffer.hasRemaining()) {
+                    read = channel.read(buffer);
+                    if (read <= 0) {
+                        break;
+                    }
+                }
+
+                if (buffer.hasRemaining() && read != -1) {
+                    if (!registered) {
+                        registered = true;
+                        channel.getReadSetter().set(this);
+                        channel.resumeReads();
+                    }
+                    return;
+                }
+
+                if (registered) {
+                    channel.suspendReads();
+                }
+
+                if (buffer.hasRemaining()) {
+                    pooled.close();
+                    end(exchange, StatusCodes.BAD_REQUEST);
+                    return;
+                }
+
+                buffer.flip();
+                createPayment(exchange, buffer);
+                pooled.close();
+            } catch (IOException e) {
+                pooled.close();
+                IoUtils.safeClose(exchange.getConnection());
+            }
+        }
+    }
+}
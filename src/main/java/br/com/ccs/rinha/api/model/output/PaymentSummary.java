@@ -1,12 +1,30 @@
 package br.com.ccs.rinha.api.model.output;
 
+import br.com.ccs.rinha.api.codec.CentsJson;
 import com.fasterxml.jackson.annotation.JsonProperty;
-
-import java.math.BigDecimal;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
 public record PaymentSummary(
         @JsonProperty("default") Summary _default, Summary fallback) {
 
-    public record Summary(long totalRequests, BigDecimal totalAmount) {
+    public static final PaymentSummary EMPTY = new PaymentSummary(Summary.EMPTY, Summary.EMPTY);
+
+    public PaymentSummary plus(PaymentSummary other) {
+        return new PaymentSummary(_default.plus(other._default), fallback.plus(other.fallback));
+    }
+
+    // valores em centavos; no JSON continua totalAmount com duas casas
+    public record Summary(long totalRequests,
+                          @JsonProperty("totalAmount")
+                          @JsonSerialize(using = CentsJson.Serializer.class)
+                          @JsonDeserialize(using = CentsJson.Deserializer.class)
+                          long totalCents) {
+
+        public static final Summary EMPTY = new Summary(0, 0);
+
+        public Summary plus(Summary other) {
+            return new Summary(totalRequests + other.totalRequests, totalCents + other.totalCents);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,170 @@
+package br.com.ccs.rinha.api.router;
+
+import br.com.ccs.rinha.api.codec.PaymentJsonCodec;
+import br.com.ccs.rinha.api.model.output.PaymentSummary;
+import br.com.ccs.rinha.monitor.PipelineMetrics;
+import br.com.ccs.rinha.repository.PaymentRepository;
+import br.com.ccs.rinha.repository.PaymentSummaryIndex;
+import br.com.ccs.rinha.service.PaymentProcessorClientServiceReactive;
+import br.com.ccs.rinha.service.PaymentSummaryService;
+import br.com.ccs.rinha.service.PeerSummaryClient;
+import br.com.ccs.rinha.store.IntBlockingQueue;
+import br.com.ccs.rinha.store.PaymentStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static java.util.Objects.isNull;
+
+// Mesmos endpoints do PaymentController no modo reativo; o que ainda é JDBC bloqueante sai do event loop pelo executor
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class PaymentHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentHandler.class);
+
+    private final PaymentStore store;
+    private final PaymentProcessorClientServiceReactive client;
+    private final PaymentRepository repository;
+    private final PaymentSummaryIndex summaryIndex;
+    private final PeerSummaryClient peerSummaryClient;
+    private final PaymentSummaryService summaryService;
+    private final Scheduler blocking;
+    private final PipelineMetrics metrics;
+
+    public PaymentHandler(PaymentStore store,
+                          PaymentProcessorClientServiceReactive client,
+                          PaymentRepository repository,
+                          PaymentSummaryIndex summaryIndex,
+                          PeerSummaryClient peerSummaryClient,
+                          PaymentSummaryService summaryService,
+                          ThreadPoolExecutor executor,
+                          PipelineMetrics metrics) {
+
+        this.store = store;
+        this.client = client;
+        this.repository = repository;
+        this.summaryIndex = summaryIndex;
+        this.peerSummaryClient = peerSummaryClient;
+        this.summaryService = summaryService;
+        this.blocking = Schedulers.fromExecutorService(executor);
+        this.metrics = metrics;
+    }
+
+    public Mono<ServerResponse> createPayment(ServerRequest request) {
+        return request.bodyToMono(byte[].class)
+                .flatMap(body -> {
+                    int slot = store.allocate();
+                    if (slot == IntBlockingQueue.EMPTY) {
+                        log.error("Payment rejected, store is full");
+                        return ServerResponse.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+                    }
+
+                    try {
+                        PaymentJsonCodec.parse(body, 0, body.length, store, slot);
+                    } catch (IllegalArgumentException e) {
+                        store.release(slot);
+                        return ServerResponse.badRequest().build();
+                    }
+
+                    store.receivedAtMillis[slot] = System.currentTimeMillis();
+                    return ServerResponse.status(client.processPayment(slot).status).build();
+                })
+                .switchIfEmpty(Mono.defer(() -> ServerResponse.badRequest().build()));
+    }
+
+    public Mono<ServerResponse> getPaymentsSummary(ServerRequest request) {
+        OffsetDateTime from;
+        OffsetDateTime to;
+        try {
+            from = dateParam(request, "from");
+            to = dateParam(request, "to");
+        } catch (DateTimeParseException e) {
+            return ServerResponse.badRequest().build();
+        }
+
+        var summary = repositorySummary(from, to);
+
+        var rangeFrom = isNull(from) ? OffsetDateTime.now().minusMinutes(5) : from;
+        var rangeTo = isNull(to) ? OffsetDateTime.now() : to;
+
+        if (summaryIndex.covers(rangeFrom, rangeTo)) {
+            summary = peerSummaryClient.getSummaryAsync(rangeFrom, rangeTo)
+                    .mapNotNull(peer -> {
+                        var local = summaryIndex.getSummary(rangeFrom, rangeTo);
+                        return local == null ? null : local.plus(peer);
+                    })
+                    .switchIfEmpty(summary);
+        }
+
+        long start = System.nanoTime();
+        return summary.doOnSuccess(s -> metrics.summaryLatency.record(System.nanoTime() - start))
+                .flatMap(PaymentHandler::json)
+                .onErrorResume(RejectedExecutionException.class,
+                        e -> ServerResponse.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+    }
+
+    public Mono<ServerResponse> getLocalPaymentsSummary(ServerRequest request) {
+        OffsetDateTime from;
+        OffsetDateTime to;
+        try {
+            from = dateParam(request, "from");
+            to = dateParam(request, "to");
+        } catch (DateTimeParseException e) {
+            return ServerResponse.badRequest().build();
+        }
+
+        if (isNull(from) || isNull(to)) {
+            return ServerResponse.badRequest().build();
+        }
+
+        var summary = summaryService.getLocalSummary(from, to);
+        if (summary == null) {
+            return ServerResponse.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+
+        return json(summary);
+    }
+
+    public Mono<ServerResponse> getMetrics(ServerRequest request) {
+        return ServerResponse.ok()
+                .contentType(MediaType.parseMediaType(PipelineMetrics.CONTENT_TYPE))
+                .bodyValue(metrics.render());
+    }
+
+    public Mono<ServerResponse> purgePayments(ServerRequest request) {
+        return Mono.fromRunnable(summaryService::purge)
+                .subscribeOn(blocking)
+                .then(ServerResponse.ok().build());
+    }
+
+    private Mono<PaymentSummary> repositorySummary(OffsetDateTime from, OffsetDateTime to) {
+        return Mono.fromCallable(() -> repository.getSummary(from, to))
+                .subscribeOn(blocking);
+    }
+
+    private static Mono<ServerResponse> json(PaymentSummary summary) {
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(PaymentJsonCodec.summary(summary));
+    }
+
+    private static OffsetDateTime dateParam(ServerRequest request, String name) {
+        return request.queryParam(name)
+                .map(OffsetDateTime::parse)
+                .orElse(null);
+    }
+}
@@ -0,0 +1,25 @@
+package br.com.ccs.rinha.api.router;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+// Rotas funcionais do WebFlux, ativas com spring.main.web-application-type=reactive (Reactor Netty)
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class PaymentRouter {
+
+    @Bean
+    public RouterFunction<ServerResponse> paymentRoutes(PaymentHandler handler) {
+        return RouterFunctions.route()
+                .POST("/payments", handler::createPayment)
+                .GET("/payments-summary", handler::getPaymentsSummary)
+                .GET("/internal/payments-summary", handler::getLocalPaymentsSummary)
+                .POST("/purge-payments", handler::purgePayments)
+                .GET("/internal/metrics", handler::getMetrics)
+                .build();
+    }
+}
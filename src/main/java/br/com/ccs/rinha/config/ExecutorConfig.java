@@ -1,11 +1,12 @@
 package br.com.ccs.rinha.config;
 
+import br.com.ccs.rinha.monitor.PipelineMetrics;
+import br.com.ccs.rinha.store.MpmcBlockingQueue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
@@ -15,27 +16,27 @@ public class ExecutorConfig {
     private final Logger log = LoggerFactory.getLogger(ExecutorConfig.class);
 
     @Bean
-    public ThreadPoolExecutor executorService() {
+    public ThreadPoolExecutor executorService(PipelineMetrics metrics) {
 
         var virtual = Boolean.parseBoolean(System.getenv("VIRTUAL_THREADS"));
         int threadPoolSize = Integer.parseInt(System.getenv("THREAD_POOL_SIZE"));
         int queueSize = Integer.parseInt(System.getenv("QUEUE_SIZE"));
-        boolean queueIsFair = Boolean.parseBoolean(System.getenv("QUEUE_IS_FAIR"));
 
         log.info("Thread pool size: {}", threadPoolSize);
         log.info("Queue size: {}", queueSize);
-        log.info("Queue isFair: {}", queueIsFair);
         log.info("Using Virtual Threads: {}", virtual);
 
         var executor = new ThreadPoolExecutor(
                 threadPoolSize,
                 threadPoolSize,
                 10, TimeUnit.SECONDS,
-                new ArrayBlockingQueue<>(queueSize, queueIsFair),
+                new MpmcBlockingQueue<>(queueSize),
                 virtual ? Thread.ofVirtual().factory() : Thread.ofPlatform().factory(),
-                new ThreadPoolExecutor.DiscardPolicy());
+                new ThreadPoolExecutor.AbortPolicy());
 
         executor.prestartAllCoreThreads();
+        metrics.gauge("rinha_executor_active_threads", "Executor threads running a task", executor::getActiveCount);
+        metrics.gauge("rinha_executor_queue_depth", "Tasks waiting in the executor queue", () -> executor.getQueue().size());
         log.info("Effective thread poll factory: {}", executor.getThreadFactory().getClass().getSimpleName());
         log.info("Executor is all threads started. {}", executor.prestartCoreThread());
         return executor;
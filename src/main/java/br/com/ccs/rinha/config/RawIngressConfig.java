@@ -0,0 +1,34 @@
+package br.com.ccs.rinha.config;
+
+import br.com.ccs.rinha.api.ingress.PaymentIngressHandler;
+import br.com.ccs.rinha.service.PaymentProcessorClientServiceBlocking;
+import br.com.ccs.rinha.service.PaymentSummaryService;
+import br.com.ccs.rinha.store.PaymentStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.undertow.UndertowServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "RAW_INGRESS_ENABLED", havingValue = "true")
+public class RawIngressConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(RawIngressConfig.class);
+
+    @Bean
+    public WebServerFactoryCustomizer<UndertowServletWebServerFactory> rawIngressCustomizer(
+            PaymentStore store,
+            PaymentProcessorClientServiceBlocking client,
+            PaymentSummaryService summaryService) {
+
+        log.info("Raw ingress enabled");
+        return factory -> factory.addDeploymentInfoCustomizers(deploymentInfo ->
+                deploymentInfo.addInitialHandlerChainWrapper(next ->
+                        new PaymentIngressHandler(next, store, client, summaryService)));
+    }
+}
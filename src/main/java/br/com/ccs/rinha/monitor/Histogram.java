@@ -0,0 +1,74 @@
+package br.com.ccs.rinha.monitor;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Histograma log-linear no estilo HDR: cada potência de 2 é dividida em 16 faixas lineares (~6% de erro),
+// contadores em AtomicLongArray, sem lock. Cobre todo o intervalo de long com 960 faixas.
+public final class Histogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) << SUB_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+
+    public void record(long value) {
+        if (value < 0) value = 0;
+        counts.getAndIncrement(bucketOf(value));
+        count.increment();
+        sum.add(value);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public long sum() {
+        return sum.sum();
+    }
+
+    // limite superior da faixa que contém o quantil; leitura sem snapshot atômico entre faixas
+    public long quantile(double quantile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    static int bucketOf(long value) {
+        int msb = 63 - Long.numberOfLeadingZeros(value | 1);
+        if (msb < SUB_BITS) {
+            return (int) value;
+        }
+        int shift = msb - SUB_BITS;
+        return ((shift + 1) << SUB_BITS) + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket >> SUB_BITS) - 1;
+        long mantissa = (bucket & (SUB_BUCKETS - 1)) + SUB_BUCKETS;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,173 @@
+package br.com.ccs.rinha.monitor;
+
+import br.com.ccs.rinha.service.AdmissionLimiter.Decision;
+import br.com.ccs.rinha.service.PaymentProcessorHealthService.ProcessorTarget;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// Métricas do pipeline em LongAdder e Histogram, lidas só no scrape de /internal/metrics (formato texto do Prometheus).
+// Contadores e histogramas ficam em campos para o caminho quente não procurar nada por nome;
+// profundidade de fila e afins são gauges registrados por quem é dono da fila.
+@Component
+public class PipelineMetrics {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000d;
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    public final LongAdder[] ingress = adders(Decision.values().length);
+    public final LongAdder ingressDuplicates = new LongAdder();
+    public final Histogram processorQueueWait = new Histogram();
+    public final Histogram[] processorLatency = histograms(ProcessorTarget.values().length);
+    public final LongAdder[] processorSuccesses = adders(ProcessorTarget.values().length);
+    public final LongAdder[] processorFailures = adders(ProcessorTarget.values().length);
+    public final LongAdder[] processorNotSent = adders(ProcessorTarget.values().length);
+    public final LongAdder requeues = new LongAdder();
+    public final LongAdder requeuesDeferred = new LongAdder();
+    public final LongAdder hedges = new LongAdder();
+    public final Histogram repositoryQueueWait = new Histogram();
+    public final Histogram batchSize = new Histogram();
+    public final Histogram commitLatency = new Histogram();
+    public final LongAdder repositoryRetries = new LongAdder();
+    public final LongAdder repositoryRejected = new LongAdder();
+    public final Histogram summaryLatency = new Histogram();
+    public final LongAdder summaryCacheHits = new LongAdder();
+    public final LongAdder summaryCoalesced = new LongAdder();
+    public final LongAdder summaryFlushTimeouts = new LongAdder();
+
+    private final List<Entry> entries = new ArrayList<>();
+
+    public PipelineMetrics() {
+        for (var decision : Decision.values()) {
+            add("rinha_ingress_payments_total", "Payments received by admission decision", "counter",
+                    label("decision", decision.name()), ingress[decision.ordinal()]);
+        }
+        add("rinha_ingress_duplicates_total", "Payments whose correlationId was already accepted", "counter", "", ingressDuplicates);
+        add("rinha_processor_queue_wait_seconds", "Time waiting in the processor queue", "summary", "", processorQueueWait);
+        for (var target : ProcessorTarget.values()) {
+            add("rinha_processor_latency_seconds", "Round trip per processor", "summary",
+                    label("target", target.name()), processorLatency[target.ordinal()]);
+        }
+        for (var target : ProcessorTarget.values()) {
+            add("rinha_processor_calls_total", "Processor calls by outcome", "counter",
+                    label("target", target.name()) + ",outcome=\"success\"", processorSuccesses[target.ordinal()]);
+            add("rinha_processor_calls_total", "Processor calls by outcome", "counter",
+                    label("target", target.name()) + ",outcome=\"failure\"", processorFailures[target.ordinal()]);
+            add("rinha_processor_calls_total", "Processor calls by outcome", "counter",
+                    label("target", target.name()) + ",outcome=\"not_sent\"", processorNotSent[target.ordinal()]);
+        }
+        add("rinha_processor_requeues_total", "Payments requeued with backoff", "counter", "", requeues);
+        add("rinha_processor_requeues_deferred_total", "Requeues that found the processor queue full and waited", "counter", "", requeuesDeferred);
+        add("rinha_processor_hedges_total", "Hedged requests sent to the fallback", "counter", "", hedges);
+        add("rinha_repository_queue_wait_seconds", "Time waiting in the repository queue", "summary", "", repositoryQueueWait);
+        add("rinha_repository_batch_size", "Payments per persisted batch", "summary", "", batchSize);
+        add("rinha_repository_commit_seconds", "Time to persist and commit each batch", "summary", "", commitLatency);
+        add("rinha_repository_batch_retries_total", "Failed batches kept by the worker and retried", "counter", "", repositoryRetries);
+        add("rinha_repository_rejected_total", "Payments the database refused on data and dropped from their batch", "counter", "", repositoryRejected);
+        add("rinha_summary_seconds", "Summary query latency", "summary", "", summaryLatency);
+        add("rinha_summary_cache_hits_total", "Summaries answered from the summary lane cache", "counter", "", summaryCacheHits);
+        add("rinha_summary_coalesced_total", "Summaries that joined an identical query already running", "counter", "", summaryCoalesced);
+        add("rinha_summary_flush_timeouts_total", "Summary flush barriers that hit the deadline", "counter", "", summaryFlushTimeouts);
+    }
+
+    public synchronized void gauge(String name, String help, LongSupplier supplier) {
+        entries.add(new Entry(name, help, "gauge", "", supplier));
+    }
+
+    public synchronized void gauge(String name, String help, ProcessorTarget target, LongSupplier supplier) {
+        entries.add(new Entry(name, help, "gauge", label("target", target.name()), supplier));
+    }
+
+    public synchronized String render() {
+        var out = new StringBuilder(4096);
+        String previous = null;
+
+        for (var entry : entries) {
+            if (!entry.name.equals(previous)) {
+                out.append("# HELP ").append(entry.name).append(' ').append(entry.help).append('\n');
+                out.append("# TYPE ").append(entry.name).append(' ').append(entry.type).append('\n');
+                previous = entry.name;
+            }
+
+            switch (entry.source) {
+                case LongAdder adder -> sample(out, entry.name, entry.labels, adder.sum());
+                case LongSupplier supplier -> sample(out, entry.name, entry.labels, supplier.getAsLong());
+                case Histogram histogram -> summary(out, entry, histogram);
+                default -> throw new IllegalStateException(entry.name);
+            }
+        }
+        return out.toString();
+    }
+
+    private void summary(StringBuilder out, Entry entry, Histogram histogram) {
+        boolean seconds = entry.name.endsWith("_seconds");
+        String separator = entry.labels.isEmpty() ? "" : ",";
+
+        for (double quantile : QUANTILES) {
+            out.append(entry.name).append('{').append(entry.labels).append(separator)
+                    .append("quantile=\"").append(quantile).append("\"} ");
+            value(out, histogram.quantile(quantile), seconds);
+        }
+
+        out.append(entry.name).append("_sum");
+        labels(out, entry.labels);
+        value(out, histogram.sum(), seconds);
+
+        sample(out, entry.name + "_count", entry.labels, histogram.count());
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, long value) {
+        out.append(name);
+        labels(out, labels);
+        out.append(value).append('\n');
+    }
+
+    private static void labels(StringBuilder out, String labels) {
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ');
+    }
+
+    private static void value(StringBuilder out, long value, boolean seconds) {
+        if (seconds) {
+            out.append(value / NANOS_PER_SECOND);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+
+    private void add(String name, String help, String type, String labels, Object source) {
+        entries.add(new Entry(name, help, type, labels, source));
+    }
+
+    private static String label(String name, String value) {
+        return name + "=\"" + value.toLowerCase(Locale.ROOT) + "\"";
+    }
+
+    private static LongAdder[] adders(int size) {
+        var adders = new LongAdder[size];
+        for (int i = 0; i < size; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    private static Histogram[] histograms(int size) {
+        var histograms = new Histogram[size];
+        for (int i = 0; i < size; i++) {
+            histograms[i] = new Histogram();
+        }
+        return histograms;
+    }
+
+    private record Entry(String name, String help, String type, String labels, Object source) {
+    }
+}
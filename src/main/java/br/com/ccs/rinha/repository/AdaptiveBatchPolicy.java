@@ -0,0 +1,39 @@
+package br.com.ccs.rinha.repository;
+
+final class AdaptiveBatchPolicy {
+
+    private static final double SMOOTHING = 0.2;
+
+    private final int minSize;
+    private final int maxSize;
+    private final long lingerNanos;
+    private final long targetCommitNanos;
+
+    private double nanosPerRow;
+    private int targetSize;
+
+    AdaptiveBatchPolicy(int minSize, int maxSize, long lingerNanos, long targetCommitNanos) {
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.lingerNanos = lingerNanos;
+        this.targetCommitNanos = targetCommitNanos;
+        this.targetSize = maxSize;
+    }
+
+    int targetSize() {
+        return targetSize;
+    }
+
+    long lingerNanos() {
+        return lingerNanos;
+    }
+
+    // custo por linha suavizado (EWMA), o alvo é quantas linhas cabem no tempo de commit desejado
+    void onCommit(int batchSize, long elapsedNanos) {
+        double sample = (double) elapsedNanos / batchSize;
+        nanosPerRow = nanosPerRow == 0 ? sample : nanosPerRow + SMOOTHING * (sample - nanosPerRow);
+
+        long fit = (long) (targetCommitNanos / nanosPerRow);
+        targetSize = (int) Math.max(minSize, Math.min(maxSize, fit));
+    }
+}
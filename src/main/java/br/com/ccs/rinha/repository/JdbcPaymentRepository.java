@@ -1,215 +1,566 @@
 package br.com.ccs.rinha.repository;
 
-import br.com.ccs.rinha.api.model.input.PaymentRequest;
 import br.com.ccs.rinha.api.model.output.PaymentSummary;
+import br.com.ccs.rinha.monitor.PipelineMetrics;
+import br.com.ccs.rinha.store.IntBlockingQueue;
+import br.com.ccs.rinha.store.IntakeJournal;
+import br.com.ccs.rinha.store.PaymentStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 
 import javax.sql.DataSource;
-import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Savepoint;
 import java.time.Instant;
 import java.time.OffsetDateTime;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
 
 import static java.util.Objects.isNull;
 
 @Repository
-public class JdbcPaymentRepository {
+@ConditionalOnProperty(name = "PAYMENT_REPOSITORY", havingValue = "jdbc", matchIfMissing = true)
+public class JdbcPaymentRepository implements PaymentRepository {
 
     private static final Logger log = LoggerFactory.getLogger(JdbcPaymentRepository.class);
-    private static final String SQL_INSERT = "INSERT INTO payments (correlation_id, amount, requested_at, is_default) VALUES (?, ?, ?, ?)";
+    static final String SQL_INSERT = "INSERT INTO payments (correlation_id, amount, requested_at, is_default) VALUES (?, ?, ?, ?) ON CONFLICT DO NOTHING";
+    private static final String UNIQUE_VIOLATION = "23505";
+    private static final long FLUSH_WAIT_NANOS = 50_000;
+    private static final long RETRY_BASE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long RETRY_MAX_NANOS = TimeUnit.SECONDS.toNanos(1);
+    // %1$s converte amount em centavos: 100 na coluna DECIMAL(10,2), 1 na coluna BIGINT
     private static final String SQL_SUMMARY = """
             SELECT 
                 SUM(CASE WHEN is_default = true THEN 1 ELSE 0 END) as default_count,
-                SUM(CASE WHEN is_default = true THEN amount ELSE 0 END) as default_amount,
+                (SUM(CASE WHEN is_default = true THEN amount ELSE 0 END) * %1$s)::BIGINT as default_cents,
                 SUM(CASE WHEN is_default = false THEN 1 ELSE 0 END) as fallback_count,
-                SUM(CASE WHEN is_default = false THEN amount ELSE 0 END) as fallback_amount
+                (SUM(CASE WHEN is_default = false THEN amount ELSE 0 END) * %1$s)::BIGINT as fallback_cents
             FROM payments 
             WHERE requested_at >= ? AND requested_at <= ?
             """;
+    // segundos inteiros do intervalo saem do rollup; só as pontas fracionárias varrem payments
+    private static final String SQL_SUMMARY_ROLLUP = """
+            SELECT is_default, SUM(total_requests) AS total_requests, SUM(total_cents) AS total_cents
+            FROM (SELECT is_default, total_requests, total_cents
+                  FROM payments_rollup
+                  WHERE bucket_second >= ? AND bucket_second < ?
+                  UNION ALL
+                  SELECT is_default, 1, (amount * %1$s)::BIGINT
+                  FROM payments
+                  WHERE requested_at >= ? AND requested_at < ?
+                     OR requested_at >= ? AND requested_at <= ?) edges
+            GROUP BY is_default
+            """;
     private final DataSource dataSource;
-    LinkedBlockingQueue<PaymentRequest> queue = new LinkedBlockingQueue<>(5000);
+    private final PaymentStore store;
+    private final IntakeJournal journal;
+    private final PipelineMetrics metrics;
+    private final boolean copyEnabled;
+    private final boolean rollupEnabled;
+    private final boolean amountCents;
+    private final String sqlSummary;
+    private final String sqlSummaryRollup;
+    private final int batchMinSize;
+    private final int batchMaxSize;
+    private final long batchLingerNanos;
+    private final long batchTargetCommitNanos;
+    private final SummaryLane summaryLane;
+    private final boolean summaryFlush;
+    private final long summaryFlushTimeoutNanos;
+    private final AtomicInteger flushRequests = new AtomicInteger();
+    // por worker: posição da fila quando começou o lote atual (sem nada na mão) e menor requestedAt do lote
+    // já fechado, Long.MIN_VALUE enquanto ele ainda está sendo montado
+    private final AtomicLongArray fillStart;
+    private final AtomicLongArray pendingMin;
+    IntBlockingQueue queue = new IntBlockingQueue(5000);
 
 
     public JdbcPaymentRepository(DataSource dataSource,
+                                 PaymentStore store,
+                                 IntakeJournal journal,
+                                 PipelineMetrics metrics,
                                  @Value("${spring.datasource.hikari.maximum-pool-size}") int poolSize,
-                                 @Value("${spring.datasource.hikari.minimum-idle}") int minIdle) {
+                                 @Value("${spring.datasource.hikari.minimum-idle}") int minIdle,
+                                 @Value("${REPOSITORY_COPY_ENABLED:false}") boolean copyEnabled,
+                                 @Value("${REPOSITORY_ROLLUP_ENABLED:false}") boolean rollupEnabled,
+                                 @Value("${REPOSITORY_AMOUNT_CENTS:false}") boolean amountCents,
+                                 @Value("${REPOSITORY_BATCH_MIN_SIZE:10}") int batchMinSize,
+                                 @Value("${REPOSITORY_BATCH_MAX_SIZE:500}") int batchMaxSize,
+                                 @Value("${REPOSITORY_BATCH_LINGER_MS:5}") long batchLingerMs,
+                                 @Value("${REPOSITORY_BATCH_TARGET_COMMIT_MS:20}") long batchTargetCommitMs,
+                                 @Value("${REPOSITORY_SUMMARY_LANE_ENABLED:false}") boolean summaryLaneEnabled,
+                                 @Value("${REPOSITORY_SUMMARY_CACHE_MS:20}") long summaryCacheMs,
+                                 @Value("${REPOSITORY_SUMMARY_FLUSH_ENABLED:false}") boolean summaryFlush,
+                                 @Value("${REPOSITORY_SUMMARY_FLUSH_TIMEOUT_MS:50}") long summaryFlushTimeoutMs) {
         this.dataSource = dataSource;
+        this.store = store;
+        this.journal = journal;
+        this.metrics = metrics;
+        this.copyEnabled = copyEnabled;
+        this.rollupEnabled = rollupEnabled;
+        this.amountCents = amountCents;
+        this.sqlSummary = SQL_SUMMARY.formatted(amountCents ? 1 : 100);
+        this.sqlSummaryRollup = SQL_SUMMARY_ROLLUP.formatted(amountCents ? 1 : 100);
+        this.batchMinSize = batchMinSize;
+        this.batchMaxSize = batchMaxSize;
+        this.batchLingerNanos = TimeUnit.MILLISECONDS.toNanos(batchLingerMs);
+        this.batchTargetCommitNanos = TimeUnit.MILLISECONDS.toNanos(batchTargetCommitMs);
         log.info("JDBC Pool size: {}", poolSize);
         log.info("JDBC Min Idle: {}", minIdle);
+        log.info("Binary COPY enabled: {}", copyEnabled);
+        log.info("Summary rollup enabled: {}", rollupEnabled);
+        log.info("Amount column in cents: {}", amountCents);
+        log.info("Batch size min: {} max: {}", batchMinSize, batchMaxSize);
+        log.info("Batch linger: {}ms target commit: {}ms", batchLingerMs, batchTargetCommitMs);
+        log.info("Summary lane enabled: {} cache: {}ms", summaryLaneEnabled, summaryCacheMs);
+        log.info("Summary flush barrier enabled: {} timeout: {}ms", summaryFlush, summaryFlushTimeoutMs);
+
+        // a faixa do resumo reserva uma conexão e outra continua livre para o health check
+        this.summaryLane = summaryLaneEnabled
+                ? new SummaryLane(dataSource, rollupEnabled ? sqlSummaryRollup : sqlSummary,
+                rollupEnabled ? JdbcPaymentRepository::queryRollupSummary : JdbcPaymentRepository::querySummary,
+                metrics, TimeUnit.MILLISECONDS.toNanos(summaryCacheMs))
+                : null;
+        int workers = Math.max(1, poolSize - (summaryLaneEnabled ? 2 : 1));
+        this.summaryFlush = summaryFlush;
+        this.summaryFlushTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(summaryFlushTimeoutMs);
+        this.fillStart = new AtomicLongArray(workers);
+        this.pendingMin = new AtomicLongArray(workers);
+        for (int i = 0; i < workers; i++) {
+            pendingMin.set(i, Long.MIN_VALUE);
+        }
 
-        for (int i = 0; i < poolSize - 1; i++) {
+        for (int i = 0; i < workers; i++) {
             startWorker(i);
         }
     }
 
+    // os slots do lote só voltam para o store depois do commit: se o lote falhar ele continua na mão do worker,
+    // que descarta a conexão (pode ter caído) e tenta o mesmo lote de novo numa nova, com backoff exponencial.
+    // Erro de dado (classes 22/23) não passa com retry: o lote é gravado linha a linha e só a linha ruim sai
     private void startWorker(int workerIndex) {
         log.info("Starting repository-worker-{}", workerIndex);
         Thread.ofVirtual().name("repository-worker-" + workerIndex).start(() -> {
-            try (Connection conn = dataSource.getConnection();
-                 PreparedStatement stmt = conn.prepareStatement(SQL_INSERT)) {
-
-                conn.setAutoCommit(false);
-
-                while (!Thread.currentThread().isInterrupted()) {
-                    try {
-                        if (queue.size() >= 10) {
-                            long now = Instant.now().toEpochMilli();
-                            List<PaymentRequest> batch = new ArrayList<>(100);
-                            queue.drainTo(batch, 100);
-
-                            if (batch.isEmpty()) continue;
-
-                            for (PaymentRequest pr : batch) {
-                                stmt.setObject(1, pr.correlationId);
-                                stmt.setBigDecimal(2, pr.amount);
-                                stmt.setObject(3, pr.requestedAt);
-                                stmt.setBoolean(4, pr.isDefault);
-                                stmt.addBatch();
+            var policy = new AdaptiveBatchPolicy(batchMinSize, batchMaxSize, batchLingerNanos, batchTargetCommitNanos);
+            int[] batch = new int[batchMaxSize];
+            int size = 0;
+            int failures = 0;
+
+            while (!Thread.currentThread().isInterrupted()) {
+                try (Connection conn = dataSource.getConnection();
+                     PreparedStatement stmt = conn.prepareStatement(SQL_INSERT)) {
+
+                    conn.setAutoCommit(false);
+                    var copyWriter = copyEnabled ? new PgBinaryCopyWriter(conn, amountCents) : null;
+                    var rollup = rollupEnabled ? new PaymentRollup(conn) : null;
+
+                    while (!Thread.currentThread().isInterrupted()) {
+                        if (size == 0) {
+                            size = fillBatch(workerIndex, batch, policy);
+                            if (summaryFlush) {
+                                pendingMin.set(workerIndex, minRequestedAt(batch, size));
                             }
-
-                            stmt.executeBatch();
-                            conn.commit();
-
-                            long elapsed = Instant.now().toEpochMilli() - now;
-                            log.info("BATCH Size {} Processed in {}ms Queue size {})", batch.size(), elapsed, queue.size());
-
-                            continue;
                         }
 
-                        // fallback para unitário
-                        PaymentRequest pr = queue.take();
-                        stmt.setObject(1, pr.correlationId);
-                        stmt.setBigDecimal(2, pr.amount);
-                        stmt.setObject(3, pr.requestedAt);
-                        stmt.setBoolean(4, pr.isDefault);
-                        stmt.executeUpdate();
-                        conn.commit();
-
-                    } catch (Exception e) {
-                        log.error("Error inserting payment", e);
+                        long start = System.nanoTime();
+                        if (failures == 0) {
+                            for (int i = 0; i < size; i++) {
+                                metrics.repositoryQueueWait.record(start - store.enqueuedAtNanos[batch[i]]);
+                            }
+                        }
+                        try {
+                            persistBatch(conn, stmt, copyWriter, rollup, amountCents, store, batch, size);
+                        } catch (SQLException e) {
+                            rollback(conn);
+                            if (!isDataError(e)) {
+                                throw e;
+                            }
+                            log.warn("Batch of {} failed on data ({}), persisting row by row", size, e.getSQLState());
+                            int rejected = persistRows(conn, stmt, rollup, amountCents, store, batch, size);
+                            metrics.repositoryRejected.add(rejected);
+                        }
+                        // recusados pelo banco também saem do journal, senão o replay os traria de volta para sempre
+                        journal.persisted(batch, size);
+                        store.releaseAll(batch, size);
+
+                        long elapsed = System.nanoTime() - start;
+                        policy.onCommit(size, elapsed);
+                        metrics.batchSize.record(size);
+                        metrics.commitLatency.record(elapsed);
+                        log.debug("BATCH Size {} Processed in {}us Queue size {} Next target {}",
+                                size, elapsed / 1000, queue.size(), policy.targetSize());
+                        size = 0;
+                        failures = 0;
                     }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Exception e) {
+                    metrics.repositoryRetries.increment();
+                    long backoff = Math.min(RETRY_BASE_NANOS << Math.min(failures++, 16), RETRY_MAX_NANOS);
+                    log.error("Error inserting batch of {} payments, retrying in {}ms", size, backoff / 1_000_000, e);
+                    LockSupport.parkNanos(backoff);
                 }
-            } catch (Exception e) {
-                log.error("Worker failure", e);
             }
         });
         log.info("repository-worker-{} started", workerIndex);
     }
 
-    public void saveAsync(PaymentRequest paymentRequest) {
-        queue.offer(paymentRequest);
-    }
+    // COPY não aceita ON CONFLICT: o lote com id repetido volta pelo INSERT idempotente
+    static void persistBatch(Connection conn, PreparedStatement stmt, PgBinaryCopyWriter copyWriter,
+                             PaymentRollup rollup, boolean amountCents, PaymentStore store, int[] batch,
+                             int size) throws SQLException {
+        if (rollup != null) {
+            rollup.clear();
+        }
 
-    public PaymentSummary getSummary(OffsetDateTime from, OffsetDateTime to) {
+        if (copyWriter != null) {
+            try {
+                copyWriter.copy(store, batch, size);
+                if (rollup != null) {
+                    for (int i = 0; i < size; i++) {
+                        addToRollup(rollup, store, batch[i]);
+                    }
+                    rollup.flush();
+                }
+                conn.commit();
+                return;
+            } catch (SQLException e) {
+                if (!UNIQUE_VIOLATION.equals(e.getSQLState())) {
+                    throw e;
+                }
+                conn.rollback();
+                if (rollup != null) {
+                    rollup.clear();
+                }
+                log.warn("Duplicated payment on COPY, retrying batch of {} with insert", size);
+            }
+        }
 
-        if (isNull(from)) {
-            from = OffsetDateTime.now().minusMinutes(5);
+        for (int i = 0; i < size; i++) {
+            bind(stmt, amountCents, store, batch[i]);
+            stmt.addBatch();
         }
+        int[] inserted = stmt.executeBatch();
 
-        if (isNull(to)) {
-            to = OffsetDateTime.now();
+        // id repetido cai no ON CONFLICT (0 linhas) e não pode somar de novo no rollup
+        if (rollup != null) {
+            for (int i = 0; i < size; i++) {
+                if (inserted[i] != 0) {
+                    addToRollup(rollup, store, batch[i]);
+                }
+            }
+            rollup.flush();
         }
+        conn.commit();
+    }
 
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(SQL_SUMMARY)) {
-
-            stmt.setObject(1, from);
-            stmt.setObject(2, to);
-
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return new PaymentSummary(
-                            new PaymentSummary.Summary(rs.getLong("default_count"),
-                                    rs.getBigDecimal("default_amount") != null ? rs.getBigDecimal("default_amount") : BigDecimal.ZERO),
-                            new PaymentSummary.Summary(rs.getLong("fallback_count"),
-                                    rs.getBigDecimal("fallback_amount") != null ? rs.getBigDecimal("fallback_amount") : BigDecimal.ZERO)
-                    );
+    // cada linha num savepoint: a que o banco recusar por dado é descartada e o resto do lote comita junto;
+    // qualquer outro erro sobe e o lote inteiro volta para o retry. Devolve quantas foram recusadas
+    static int persistRows(Connection conn, PreparedStatement stmt, PaymentRollup rollup, boolean amountCents,
+                           PaymentStore store, int[] batch, int size) throws SQLException {
+        stmt.clearBatch();
+        if (rollup != null) {
+            rollup.clear();
+        }
+
+        int rejected = 0;
+        for (int i = 0; i < size; i++) {
+            int slot = batch[i];
+            bind(stmt, amountCents, store, slot);
+            Savepoint savepoint = conn.setSavepoint();
+            try {
+                if (stmt.executeUpdate() != 0 && rollup != null) {
+                    addToRollup(rollup, store, slot);
                 }
-                return new PaymentSummary(new PaymentSummary.Summary(0, BigDecimal.ZERO), new PaymentSummary.Summary(0, BigDecimal.ZERO));
+                conn.releaseSavepoint(savepoint);
+            } catch (SQLException e) {
+                if (!isDataError(e)) {
+                    throw e;
+                }
+                conn.rollback(savepoint);
+                rejected++;
+                log.error("Payment {} amount {} rejected by the database ({}): {}", store.correlationId(slot),
+                        store.amountCents[slot], e.getSQLState(), e.getMessage());
             }
+        }
 
-        } catch (SQLException e) {
-            log.error("Get summary error: {}", e.getMessage(), e);
-            return new PaymentSummary(new PaymentSummary.Summary(0, BigDecimal.ZERO), new PaymentSummary.Summary(0, BigDecimal.ZERO));
+        if (rollup != null) {
+            rollup.flush();
         }
+        conn.commit();
+        return rejected;
     }
 
-    public void purge() {
-        String sql = "DELETE FROM payments";
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.executeUpdate();
-            conn.commit();
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+    private static void bind(PreparedStatement stmt, boolean amountCents, PaymentStore store, int slot)
+            throws SQLException {
+        stmt.setObject(1, store.correlationId(slot));
+        if (amountCents) {
+            stmt.setLong(2, store.amountCents[slot]);
+        } else {
+            stmt.setBigDecimal(2, store.amount(slot));
         }
+        stmt.setObject(3, store.requestedAt(slot));
+        stmt.setBoolean(4, store.isDefault[slot]);
     }
 
-    private class BatchInsert {
-        private final Connection connection;
-        private PreparedStatement preparedStatement;
-        private final AtomicInteger batchInsertCounter = new AtomicInteger(0);
-        private final Object lock = new Object();
+    // 22 (dado inválido, ex.: 22003 overflow numérico) e 23 (restrição) falham de novo com a mesma linha;
+    // conexão (08), transação (40) e intervenção do operador (57) passam com retry. O BatchUpdateException
+    // do driver traz o estado da entrada que falhou; sem ele vale o da causa
+    static boolean isDataError(SQLException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException sql && sql.getSQLState() != null) {
+                return sql.getSQLState().startsWith("22") || sql.getSQLState().startsWith("23");
+            }
+        }
+        return false;
+    }
 
-        public BatchInsert() throws SQLException {
-            this.connection = dataSource.getConnection();
-            connection.setAutoCommit(false);
-            this.preparedStatement = connection.prepareStatement(SQL_INSERT);
+    private static void addToRollup(PaymentRollup rollup, PaymentStore store, int slot) {
+        rollup.add(store.requestedAtMillis[slot], store.amountCents[slot], store.isDefault[slot]);
+    }
+
+    // bloqueia até o primeiro item e fecha o lote no que vier primeiro: tamanho alvo, linger ou um
+    // resumo pedindo flush
+    private int fillBatch(int worker, int[] batch, AdaptiveBatchPolicy policy) throws InterruptedException {
+        batch[0] = takeFirst(worker);
+        int size = 1;
+
+        int target = policy.targetSize();
+        long deadline = System.nanoTime() + policy.lingerNanos();
+
+        while (size < target) {
+            int drained = queue.drainTo(batch, size, target - size);
+            if (drained > 0) {
+                size += drained;
+                continue;
+            }
+
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || flushRequests.get() > 0) {
+                return size;
+            }
+
+            // com a barreira ligada o pedido de flush acorda o worker no meio do linger
+            int next = summaryFlush
+                    ? queue.pollOrWake(remaining, TimeUnit.NANOSECONDS)
+                    : queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next != IntBlockingQueue.EMPTY) {
+                batch[size++] = next;
+            }
         }
+        return size;
+    }
 
-        public void add(PaymentRequest paymentRequest) {
-            try {
-                addToBatch(paymentRequest);
-                if (batchInsertCounter.incrementAndGet() >= 100) {
-                    log.info("Batch insert result {}", flushBatch());
-                    batchInsertCounter.set(0);
+    // com a barreira ligada o worker publica, antes de estacionar, que não tem nada na mão e de que posição
+    // da fila o próximo lote vai começar. A barreira o acorda para republicar, senão um worker ocioso parado
+    // no take seguraria a barreira até o prazo com uma posição velha
+    private int takeFirst(int worker) throws InterruptedException {
+        if (!summaryFlush) {
+            return queue.take();
+        }
+
+        while (true) {
+            pendingMin.set(worker, Long.MIN_VALUE);
+            fillStart.set(worker, queue.dequeued());
+            int slot = queue.takeOrWake();
+            if (slot != IntBlockingQueue.EMPTY) {
+                return slot;
+            }
+        }
+    }
+
+    private long minRequestedAt(int[] batch, int size) {
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            min = Math.min(min, store.requestedAtMillis[batch[i]]);
+        }
+        return min;
+    }
+
+    // barreira do resumo: pede aos workers que fechem o lote sem linger e espera, até o prazo, que nenhum
+    // pagamento que já estava na fila quando ela começou e tem requestedAt <= to esteja fora do banco.
+    // Quem grava continua sendo o worker, em lote; devolve o instante em que a barreira começou
+    private long flushBarrier(OffsetDateTime to) {
+        long start = System.nanoTime();
+        long toMillis = to.toInstant().toEpochMilli();
+        long enqueued = queue.enqueued();
+
+        flushRequests.incrementAndGet();
+        try {
+            // acorda quem está no linger ou ocioso; repete a cada volta porque um worker que estacionou logo
+            // depois do sinal ainda pode ter publicado uma posição anterior a enqueued
+            queue.wakeWaiters();
+            while (!flushed(enqueued, toMillis)) {
+                if (System.nanoTime() - start >= summaryFlushTimeoutNanos) {
+                    metrics.summaryFlushTimeouts.increment();
+                    break;
                 }
-            } catch (Exception e) {
-                log.error("", e);
+                LockSupport.parkNanos(FLUSH_WAIT_NANOS);
+                queue.wakeWaiters();
             }
+        } finally {
+            flushRequests.decrementAndGet();
         }
+        return start;
+    }
 
-        private void addToBatch(PaymentRequest paymentRequest) throws SQLException {
-            synchronized (lock) {
-                preparedStatement.setObject(1, paymentRequest.correlationId);
-                preparedStatement.setBigDecimal(2, paymentRequest.amount);
-                preparedStatement.setObject(3, paymentRequest.requestedAt);
-                preparedStatement.setBoolean(4, paymentRequest.isDefault);
-                preparedStatement.addBatch();
+    // tudo que estava na fila já saiu dela, e cada worker ou começou o lote atual depois disso ou só tem
+    // na mão pagamentos posteriores a to
+    private boolean flushed(long enqueued, long toMillis) {
+        if (queue.dequeued() < enqueued) {
+            return false;
+        }
+        for (int i = 0; i < fillStart.length(); i++) {
+            if (fillStart.get(i) < enqueued && pendingMin.get(i) <= toMillis) {
+                return false;
             }
         }
+        return true;
+    }
 
-        public int flushBatch() {
-            try {
-                synchronized (lock) {
-                    var result = preparedStatement.executeBatch().length;
-                    connection.commit();
-                    close();
-                    return result;
-                }
-            } catch (SQLException e) {
-                log.error("", e);
-                return 0;
+    private static void rollback(Connection conn) {
+        try {
+            conn.rollback();
+        } catch (SQLException e) {
+            log.error("Rollback error: {}", e.getMessage(), e);
+        }
+    }
+
+    @Override
+    // pagamento já liquidado no processor não pode ser descartado: fila cheia segura quem produz
+    public void saveAsync(int slot) {
+        store.enqueuedAtNanos[slot] = System.nanoTime();
+        try {
+            queue.put(slot);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            store.release(slot);
+            log.error("Interrupted while saving payment");
+        }
+    }
+
+    @Override
+    public boolean trySaveAsync(int slot) {
+        store.enqueuedAtNanos[slot] = System.nanoTime();
+        return queue.offer(slot);
+    }
+
+    @Override
+    public PaymentSummary getSummary(OffsetDateTime from, OffsetDateTime to) {
+
+        if (isNull(from)) {
+            from = OffsetDateTime.now().minusMinutes(5);
+        }
+
+        if (isNull(to)) {
+            to = OffsetDateTime.now();
+        }
+
+        long flushedAt = summaryFlush ? flushBarrier(to) : Long.MIN_VALUE;
+
+        if (summaryLane != null) {
+            return summaryLane.getSummary(from, to, flushedAt);
+        }
+
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(rollupEnabled ? sqlSummaryRollup : sqlSummary)) {
+
+            return rollupEnabled ? queryRollupSummary(stmt, from, to) : querySummary(stmt, from, to);
+
+        } catch (SQLException e) {
+            log.error("Get summary error: {}", e.getMessage(), e);
+            return PaymentSummary.EMPTY;
+        }
+    }
+
+    private static PaymentSummary querySummary(PreparedStatement stmt, OffsetDateTime from, OffsetDateTime to)
+            throws SQLException {
+        stmt.setObject(1, from);
+        stmt.setObject(2, to);
+
+        try (ResultSet rs = stmt.executeQuery()) {
+            if (rs.next()) {
+                return new PaymentSummary(
+                        new PaymentSummary.Summary(rs.getLong("default_count"), rs.getLong("default_cents")),
+                        new PaymentSummary.Summary(rs.getLong("fallback_count"), rs.getLong("fallback_cents"))
+                );
             }
+            return PaymentSummary.EMPTY;
         }
+    }
 
-        public void close() {
-            try {
-                preparedStatement.close();
-                preparedStatement = connection.prepareStatement(SQL_INSERT);
-            } catch (Exception e) {
-                log.error("Batch insert close error {}", e.getMessage(), e);
+    private static PaymentSummary queryRollupSummary(PreparedStatement stmt, OffsetDateTime from, OffsetDateTime to)
+            throws SQLException {
+        // [firstSecond, lastSecond) são os segundos inteiramente contidos em [from, to]
+        long firstSecond = from.toEpochSecond() + (from.getNano() > 0 ? 1 : 0);
+        long lastSecond = Math.floorDiv(to.toEpochSecond() * 1_000_000L + to.getNano() / 1_000 + 1, 1_000_000L);
+
+        var leadingEnd = atSecond(firstSecond);
+        var trailingStart = atSecond(lastSecond);
+        if (firstSecond >= lastSecond) {
+            firstSecond = lastSecond;
+            leadingEnd = from;
+            trailingStart = from;
+        }
+
+        stmt.setLong(1, firstSecond);
+        stmt.setLong(2, lastSecond);
+        stmt.setObject(3, from);
+        stmt.setObject(4, leadingEnd);
+        stmt.setObject(5, trailingStart);
+        stmt.setObject(6, to);
+
+        long[] totals = new long[4];
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                int field = rs.getBoolean("is_default") ? 0 : 2;
+                totals[field] = rs.getLong("total_requests");
+                totals[field + 1] = rs.getLong("total_cents");
             }
         }
+
+        return new PaymentSummary(
+                new PaymentSummary.Summary(totals[0], totals[1]),
+                new PaymentSummary.Summary(totals[2], totals[3]));
+    }
+
+    private static OffsetDateTime atSecond(long epochSecond) {
+        return OffsetDateTime.ofInstant(Instant.ofEpochSecond(epochSecond), ZoneOffset.UTC);
+    }
+
+    @Override
+    // TRUNCATE descarta os arquivos das partições de uma vez, sem varrer linha a linha como o DELETE
+    public void purge() {
+        String sql = rollupEnabled ? "TRUNCATE payments, payments_rollup" : "TRUNCATE payments";
+        if (summaryLane != null) {
+            summaryLane.purge(sql);
+            return;
+        }
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.executeUpdate();
+            conn.commit();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public int backlog() {
+        return queue.size();
+    }
+
+    @Override
+    public int backlogCapacity() {
+        return queue.capacity();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,91 @@
+package br.com.ccs.rinha.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+@Repository
+@ConditionalOnProperty(name = "PAYMENT_REPOSITORY", havingValue = "jdbc", matchIfMissing = true)
+public class JdbcProcessorHealthRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(JdbcProcessorHealthRepository.class);
+    private static final String SQL_CLAIM = """
+            UPDATE processor_health
+            SET checked_at = now()
+            WHERE processor = ? AND checked_at <= now() - (? * interval '1 millisecond')
+            """;
+    private static final String SQL_UPDATE = """
+            UPDATE processor_health
+            SET failing = ?, min_response_time = ?
+            WHERE processor = ?
+            """;
+    private static final String SQL_FIND_ALL = "SELECT processor, failing, min_response_time FROM processor_health";
+
+    private final DataSource dataSource;
+
+    public JdbcProcessorHealthRepository(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    // apenas uma réplica consegue o claim por intervalo, respeitando o rate limit do service-health
+    public boolean tryClaim(String processor, long intervalMillis) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(SQL_CLAIM)) {
+
+            stmt.setString(1, processor);
+            stmt.setLong(2, intervalMillis);
+            var claimed = stmt.executeUpdate() == 1;
+            conn.commit();
+            return claimed;
+
+        } catch (SQLException e) {
+            log.error("Claim health check error: {}", e.getMessage(), e);
+            return false;
+        }
+    }
+
+    public void update(String processor, boolean failing, int minResponseTime) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(SQL_UPDATE)) {
+
+            stmt.setBoolean(1, failing);
+            stmt.setInt(2, minResponseTime);
+            stmt.setString(3, processor);
+            stmt.executeUpdate();
+            conn.commit();
+
+        } catch (SQLException e) {
+            log.error("Update health error: {}", e.getMessage(), e);
+        }
+    }
+
+    public Map<String, ProcessorHealth> findAll() {
+        var result = new HashMap<String, ProcessorHealth>(4);
+
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(SQL_FIND_ALL);
+             ResultSet rs = stmt.executeQuery()) {
+
+            while (rs.next()) {
+                result.put(rs.getString("processor"),
+                        new ProcessorHealth(rs.getBoolean("failing"), rs.getInt("min_response_time")));
+            }
+
+        } catch (SQLException e) {
+            log.error("Find health error: {}", e.getMessage(), e);
+        }
+        return result;
+    }
+
+    public record ProcessorHealth(boolean failing, int minResponseTime) {
+    }
+}
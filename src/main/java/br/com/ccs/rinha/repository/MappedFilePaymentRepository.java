@@ -0,0 +1,336 @@
+package br.com.ccs.rinha.repository;
+
+import br.com.ccs.rinha.api.model.output.PaymentSummary;
+import br.com.ccs.rinha.monitor.PipelineMetrics;
+import br.com.ccs.rinha.store.IntBlockingQueue;
+import br.com.ccs.rinha.store.IntakeJournal;
+import br.com.ccs.rinha.store.PaymentStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+import static java.util.Objects.isNull;
+
+@Repository
+@ConditionalOnProperty(name = "PAYMENT_REPOSITORY", havingValue = "wal")
+public class MappedFilePaymentRepository implements PaymentRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(MappedFilePaymentRepository.class);
+
+    // msb, lsb, requestedAt em micros e (centavos << 1 | isDefault)
+    static final int RECORD_SIZE = 32;
+    private static final int BLOCK_RECORDS = 256;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final long RETRY_BASE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long RETRY_MAX_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final PaymentStore store;
+    private final IntakeJournal journal;
+    private final PipelineMetrics metrics;
+    private final Path directory;
+    private final int segmentRecords;
+    private final int batchMaxSize;
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private final Object lock = new Object();
+    IntBlockingQueue queue = new IntBlockingQueue(5000);
+
+    public MappedFilePaymentRepository(PaymentStore store,
+                                       IntakeJournal journal,
+                                       PipelineMetrics metrics,
+                                       @Value("${WAL_DIR:/tmp/rinha-wal}") String directory,
+                                       @Value("${WAL_SEGMENT_SIZE_MB:4}") int segmentSizeMb,
+                                       @Value("${REPOSITORY_BATCH_MAX_SIZE:500}") int batchMaxSize) throws IOException {
+        this.store = store;
+        this.journal = journal;
+        this.metrics = metrics;
+        this.directory = Path.of(directory);
+        this.segmentRecords = segmentSizeMb * 1024 * 1024 / RECORD_SIZE;
+        this.batchMaxSize = batchMaxSize;
+
+        log.info("WAL directory: {}", this.directory);
+        log.info("WAL segment size: {}MB ({} records)", segmentSizeMb, segmentRecords);
+
+        Files.createDirectories(this.directory);
+        recover();
+        startWriter();
+    }
+
+    private void recover() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            var paths = files.filter(p -> p.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .sorted()
+                    .toList();
+
+            for (Path path : paths) {
+                var segment = Segment.open(path, (int) (Files.size(path) / RECORD_SIZE));
+                segment.recover();
+                segments.add(segment);
+                log.info("WAL segment {} recovered with {} records", path.getFileName(), segment.count);
+            }
+        }
+
+        if (segments.isEmpty()) {
+            segments.add(Segment.open(segmentPath(0), segmentRecords));
+        }
+    }
+
+    private void startWriter() {
+        log.info("Starting wal-writer");
+        Thread.ofVirtual().name("wal-writer").start(() -> {
+            int[] batch = new int[batchMaxSize];
+            int size = 0;
+            int failures = 0;
+
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    if (size == 0) {
+                        batch[0] = queue.take();
+                        size = 1 + queue.drainTo(batch, 1, batchMaxSize - 1);
+                    }
+
+                    long start = System.nanoTime();
+                    if (failures == 0) {
+                        for (int i = 0; i < size; i++) {
+                            metrics.repositoryQueueWait.record(start - store.enqueuedAtNanos[batch[i]]);
+                        }
+                    }
+                    appendBatch(batch, size);
+                    journal.persisted(batch, size);
+                    store.releaseAll(batch, size);
+                    metrics.batchSize.record(size);
+                    metrics.commitLatency.record(System.nanoTime() - start);
+                    size = 0;
+                    failures = 0;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Exception e) {
+                    // o lote fica com o writer até entrar no WAL: liberar os slots perderia pagamentos já liquidados
+                    metrics.repositoryRetries.increment();
+                    long backoff = Math.min(RETRY_BASE_NANOS << Math.min(failures++, 16), RETRY_MAX_NANOS);
+                    log.error("Error appending batch of {} payments, retrying in {}ms", size, backoff / 1_000_000, e);
+                    LockSupport.parkNanos(backoff);
+                }
+            }
+        });
+        log.info("wal-writer started");
+    }
+
+    // group commit: um force() por lote em cada segmento tocado
+    void appendBatch(int[] batch, int size) throws IOException {
+        synchronized (lock) {
+            int segmentCount = segments.size();
+            var segment = segments.getLast();
+            int batchStart = segment.count;
+            int firstRecord = batchStart;
+
+            try {
+                for (int i = 0; i < size; i++) {
+                    if (segment.isFull()) {
+                        segment.force(firstRecord);
+                        segment = Segment.open(segmentPath(segments.size()), segmentRecords);
+                        segments.add(segment);
+                        firstRecord = 0;
+                    }
+                    segment.append(store, batch[i]);
+                }
+
+                segment.force(firstRecord);
+            } catch (IOException | RuntimeException e) {
+                // desfaz o lote inteiro: o retry regrava os mesmos registros nas mesmas posições em vez de duplicá-los
+                while (segments.size() > segmentCount) {
+                    segments.removeLast();
+                }
+                segments.getLast().count = batchStart;
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    // pagamento já liquidado no processor não pode ser descartado: fila cheia segura quem produz
+    public void saveAsync(int slot) {
+        store.enqueuedAtNanos[slot] = System.nanoTime();
+        try {
+            queue.put(slot);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            store.release(slot);
+            log.error("Interrupted while saving payment");
+        }
+    }
+
+    @Override
+    public boolean trySaveAsync(int slot) {
+        store.enqueuedAtNanos[slot] = System.nanoTime();
+        return queue.offer(slot);
+    }
+
+    @Override
+    public PaymentSummary getSummary(OffsetDateTime from, OffsetDateTime to) {
+
+        if (isNull(from)) {
+            from = OffsetDateTime.now().minusMinutes(5);
+        }
+
+        if (isNull(to)) {
+            to = OffsetDateTime.now();
+        }
+
+        long fromMicros = toMicros(from);
+        long toMicros = toMicros(to);
+        long[] totals = new long[4];
+
+        for (Segment segment : segments) {
+            segment.scan(fromMicros, toMicros, totals);
+        }
+
+        return new PaymentSummary(
+                new PaymentSummary.Summary(totals[0], totals[1]),
+                new PaymentSummary.Summary(totals[2], totals[3]));
+    }
+
+    @Override
+    public void purge() {
+        store.releaseAll(queue);
+        synchronized (lock) {
+            try {
+                for (Segment segment : segments) {
+                    Files.deleteIfExists(segment.path);
+                }
+                segments.clear();
+                segments.add(Segment.open(segmentPath(0), segmentRecords));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    @Override
+    public int backlog() {
+        return queue.size();
+    }
+
+    @Override
+    public int backlogCapacity() {
+        return queue.capacity();
+    }
+
+    private Path segmentPath(int index) {
+        return directory.resolve(SEGMENT_PREFIX + String.format("%06d", index) + SEGMENT_SUFFIX);
+    }
+
+    static long toMicros(OffsetDateTime dateTime) {
+        return dateTime.toEpochSecond() * 1_000_000L + dateTime.getNano() / 1_000;
+    }
+
+    private static final class Segment {
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private final int capacity;
+        private final long[] blockMin;
+        private final long[] blockMax;
+        private volatile int count;
+
+        private Segment(Path path, MappedByteBuffer buffer, int capacity) {
+            this.path = path;
+            this.buffer = buffer;
+            this.capacity = capacity;
+
+            int blocks = (capacity + BLOCK_RECORDS - 1) / BLOCK_RECORDS;
+            this.blockMin = new long[blocks];
+            this.blockMax = new long[blocks];
+            Arrays.fill(blockMin, Long.MAX_VALUE);
+            Arrays.fill(blockMax, Long.MIN_VALUE);
+        }
+
+        private static Segment open(Path path, int capacity) throws IOException {
+            try (var channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                var buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) capacity * RECORD_SIZE);
+                return new Segment(path, buffer, capacity);
+            }
+        }
+
+        private boolean isFull() {
+            return count == capacity;
+        }
+
+        // micros == 0 marca o fim dos registros gravados
+        private void recover() {
+            int recovered = 0;
+            while (recovered < capacity && buffer.getLong(recovered * RECORD_SIZE + 16) != 0) {
+                indexRecord(recovered, buffer.getLong(recovered * RECORD_SIZE + 16));
+                recovered++;
+            }
+            count = recovered;
+        }
+
+        private void append(PaymentStore store, int slot) {
+            int record = count;
+            int offset = record * RECORD_SIZE;
+            long micros = store.requestedAtMillis[slot] * 1_000L;
+
+            buffer.putLong(offset, store.correlationIdMsb[slot]);
+            buffer.putLong(offset + 8, store.correlationIdLsb[slot]);
+            buffer.putLong(offset + 24, store.amountCents[slot] << 1 | (store.isDefault[slot] ? 1 : 0));
+            buffer.putLong(offset + 16, micros);
+
+            indexRecord(record, micros);
+            count = record + 1;
+        }
+
+        private void indexRecord(int record, long micros) {
+            int block = record / BLOCK_RECORDS;
+            blockMin[block] = Math.min(blockMin[block], micros);
+            blockMax[block] = Math.max(blockMax[block], micros);
+        }
+
+        private void force(int fromRecord) {
+            buffer.force(fromRecord * RECORD_SIZE, (count - fromRecord) * RECORD_SIZE);
+        }
+
+        // índice esparso: só varre blocos cujo intervalo de tempo intersecta a consulta
+        private void scan(long fromMicros, long toMicros, long[] totals) {
+            int published = count;
+            int blocks = (published + BLOCK_RECORDS - 1) / BLOCK_RECORDS;
+
+            for (int block = 0; block < blocks; block++) {
+                if (blockMax[block] < fromMicros || blockMin[block] > toMicros) {
+                    continue;
+                }
+
+                int end = Math.min(published, (block + 1) * BLOCK_RECORDS);
+                for (int record = block * BLOCK_RECORDS; record < end; record++) {
+                    int offset = record * RECORD_SIZE;
+                    long micros = buffer.getLong(offset + 16);
+                    if (micros < fromMicros || micros > toMicros) {
+                        continue;
+                    }
+
+                    long amount = buffer.getLong(offset + 24);
+                    int field = (amount & 1) == 1 ? 0 : 2;
+                    totals[field]++;
+                    totals[field + 1] += amount >> 1;
+                }
+            }
+        }
+    }
+}
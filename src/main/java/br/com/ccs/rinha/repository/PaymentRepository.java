@@ -0,0 +1,22 @@
+package br.com.ccs.rinha.repository;
+
+import br.com.ccs.rinha.api.model.output.PaymentSummary;
+
+import java.time.OffsetDateTime;
+
+public interface PaymentRepository {
+
+    void saveAsync(int slot);
+
+    // sem bloquear: false com a fila cheia e o slot continua com quem chamou
+    boolean trySaveAsync(int slot);
+
+    PaymentSummary getSummary(OffsetDateTime from, OffsetDateTime to);
+
+    void purge();
+
+    // pagamentos liquidados aguardando persistência
+    int backlog();
+
+    int backlogCapacity();
+}
\ No newline at end of file
@@ -0,0 +1,87 @@
+package br.com.ccs.rinha.repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+// agrega o lote por (segundo, processor) e soma em payments_rollup na mesma transação do insert
+final class PaymentRollup {
+
+    static final String SQL_UPSERT = """
+            INSERT INTO payments_rollup (bucket_second, is_default, total_requests, total_cents)
+            VALUES (?, ?, ?, ?)
+            ON CONFLICT (bucket_second, is_default) DO UPDATE
+            SET total_requests = payments_rollup.total_requests + EXCLUDED.total_requests,
+                total_cents    = payments_rollup.total_cents + EXCLUDED.total_cents
+            """;
+
+    private final PreparedStatement stmt;
+    // segundo << 1 | isDefault; um lote costuma tocar poucos segundos, então busca linear basta
+    private long[] keys = new long[16];
+    private long[] requests = new long[16];
+    private long[] cents = new long[16];
+    private int size;
+
+    PaymentRollup(Connection conn) throws SQLException {
+        this.stmt = conn.prepareStatement(SQL_UPSERT);
+    }
+
+    void add(long requestedAtMillis, long amountCents, boolean isDefault) {
+        long key = Math.floorDiv(requestedAtMillis, 1000) << 1 | (isDefault ? 1 : 0);
+
+        for (int i = 0; i < size; i++) {
+            if (keys[i] == key) {
+                requests[i]++;
+                cents[i] += amountCents;
+                return;
+            }
+        }
+
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            requests = Arrays.copyOf(requests, size * 2);
+            cents = Arrays.copyOf(cents, size * 2);
+        }
+        keys[size] = key;
+        requests[size] = 1;
+        cents[size] = amountCents;
+        size++;
+    }
+
+    // linhas sempre na mesma ordem entre os workers: dois lotes concorrentes não entram em deadlock
+    void flush() throws SQLException {
+        if (size == 0) return;
+
+        sort();
+        for (int i = 0; i < size; i++) {
+            stmt.setLong(1, keys[i] >> 1);
+            stmt.setBoolean(2, (keys[i] & 1) == 1);
+            stmt.setLong(3, requests[i]);
+            stmt.setLong(4, cents[i]);
+            stmt.addBatch();
+        }
+        stmt.executeBatch();
+        size = 0;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    private void sort() {
+        for (int i = 1; i < size; i++) {
+            long key = keys[i], count = requests[i], amount = cents[i];
+            int j = i - 1;
+            while (j >= 0 && keys[j] > key) {
+                keys[j + 1] = keys[j];
+                requests[j + 1] = requests[j];
+                cents[j + 1] = cents[j];
+                j--;
+            }
+            keys[j + 1] = key;
+            requests[j + 1] = count;
+            cents[j + 1] = amount;
+        }
+    }
+}
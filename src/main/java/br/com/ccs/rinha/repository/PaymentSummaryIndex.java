@@ -0,0 +1,252 @@
+package br.com.ccs.rinha.repository;
+
+import br.com.ccs.rinha.api.model.output.PaymentSummary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.OffsetDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Janela deslizante dos últimos SUMMARY_INDEX_WINDOW_SECONDS em buckets absolutos de SUMMARY_INDEX_BUCKET_MS
+// (floorDiv do epoch). Um pagamento mais novo que o bucket mais recente avança a janela e zera os buckets que saem;
+// um mais velho que a janela não entra e marca até onde o índice perdeu dados. Só responde intervalos inteiros dentro
+// da janela, depois de tudo o que foi perdido e alinhados às bordas dos buckets; fora disso getSummary devolve null e
+// quem chama vai ao repositório.
+@Component
+public class PaymentSummaryIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentSummaryIndex.class);
+    private static final int STRIDE = 4;
+    private static final int DEFAULT_COUNT = 0;
+    private static final int DEFAULT_CENTS = 1;
+    private static final int FALLBACK_COUNT = 2;
+    private static final int FALLBACK_CENTS = 3;
+    private static final int REBUILD_THRESHOLD = 1024;
+
+    private final boolean enabled;
+    private final long bucketMillis;
+    private final int buckets;
+
+    private volatile Window window;
+
+    public PaymentSummaryIndex(@Value("${SUMMARY_INDEX_ENABLED:false}") boolean enabled,
+                               @Value("${SUMMARY_INDEX_BUCKET_MS:1}") long bucketMillis,
+                               @Value("${SUMMARY_INDEX_WINDOW_SECONDS:120}") long windowSeconds) {
+        this.enabled = enabled;
+        this.bucketMillis = bucketMillis;
+        this.buckets = (int) (windowSeconds * 1000 / bucketMillis);
+
+        log.info("Summary index enabled: {}", enabled);
+        log.info("Summary index bucket: {}ms window: {}s", bucketMillis, windowSeconds);
+        if (bucketMillis > 1) {
+            log.warn("Summary index only answers ranges aligned to {}ms buckets, others go to the repository", bucketMillis);
+        }
+
+        if (enabled) {
+            reset();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void add(long requestedAtMillis, long cents, boolean isDefault) {
+        if (!enabled) return;
+
+        var w = window;
+        long bucket = Math.floorDiv(requestedAtMillis, bucketMillis);
+        if (bucket > w.head) {
+            w.advance(bucket);
+        }
+
+        w.lock.readLock().lock();
+        try {
+            if (bucket <= w.head - buckets) {
+                w.lost.accumulateAndGet(bucket, Math::max);
+                return;
+            }
+            if (isDefault) {
+                w.add(position(bucket), DEFAULT_COUNT, DEFAULT_CENTS, cents);
+            } else {
+                w.add(position(bucket), FALLBACK_COUNT, FALLBACK_CENTS, cents);
+            }
+        } finally {
+            w.lock.readLock().unlock();
+        }
+    }
+
+    // checagem barata antes de chamar o peer; a resposta definitiva é o null de getSummary
+    public boolean covers(OffsetDateTime from, OffsetDateTime to) {
+        if (!enabled) return false;
+        var w = window;
+        return w.covers(fromBucket(from), toBucket(to));
+    }
+
+    // null quando o intervalo não está inteiro na janela ou não cai nas bordas dos buckets
+    public PaymentSummary getSummary(OffsetDateTime from, OffsetDateTime to) {
+        if (!enabled) return null;
+
+        long lo = fromBucket(from);
+        long hi = toBucket(to);
+        var w = window;
+
+        w.lock.readLock().lock();
+        try {
+            if (!w.covers(lo, hi)) {
+                return null;
+            }
+            hi = Math.min(hi, w.head);
+            if (lo > hi) {
+                return PaymentSummary.EMPTY;
+            }
+            // contagem e centavos são atômicos separados: um add concorrente pode aparecer só na contagem; só
+            // acontece com pagamento confirmado no mesmo instante da consulta, que ainda está em voo para o cliente
+            return new PaymentSummary(
+                    new PaymentSummary.Summary(w.range(lo, hi, DEFAULT_COUNT), w.range(lo, hi, DEFAULT_CENTS)),
+                    new PaymentSummary.Summary(w.range(lo, hi, FALLBACK_COUNT), w.range(lo, hi, FALLBACK_CENTS)));
+        } finally {
+            w.lock.readLock().unlock();
+        }
+    }
+
+    public void reset() {
+        if (!enabled) return;
+        window = new Window(Math.floorDiv(System.currentTimeMillis(), bucketMillis));
+    }
+
+    // Long.MIN_VALUE: início não alinhado ao bucket, nunca coberto
+    private long fromBucket(OffsetDateTime from) {
+        long millis = from.toInstant().toEpochMilli();
+        return Math.floorMod(millis, bucketMillis) == 0 ? Math.floorDiv(millis, bucketMillis) : Long.MIN_VALUE;
+    }
+
+    // Long.MAX_VALUE: fim (inclusivo) não alinhado ao bucket, nunca coberto
+    private long toBucket(OffsetDateTime to) {
+        long millis = to.toInstant().toEpochMilli();
+        return Math.floorMod(millis + 1, bucketMillis) == 0 ? Math.floorDiv(millis, bucketMillis) : Long.MAX_VALUE;
+    }
+
+    private int position(long bucket) {
+        return (int) Math.floorMod(bucket, (long) buckets);
+    }
+
+    // Fenwick tree sobre o anel de buckets, intercalando contagem e centavos por processor, prefix sum em O(log n).
+    // add e consulta dividem o read lock; só o avanço da janela, que zera buckets, pega o write lock.
+    private final class Window {
+        private final AtomicLongArray tree = new AtomicLongArray((buckets + 1) * STRIDE);
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        // bucket mais recente; a janela é (head - buckets, head]
+        private volatile long head;
+        // maior bucket de um pagamento que chegou depois de sair da janela
+        private final AtomicLong lost;
+
+        private Window(long head) {
+            this.head = head;
+            // o que foi pago antes do reset (ou antes de subir) não está garantido no índice
+            this.lost = new AtomicLong(head);
+        }
+
+        private boolean covers(long lo, long hi) {
+            return lo != Long.MIN_VALUE && hi != Long.MAX_VALUE && lo > head - buckets && lo > lost.get();
+        }
+
+        private void advance(long bucket) {
+            lock.writeLock().lock();
+            try {
+                if (bucket <= head) {
+                    return;
+                }
+                long first = head - buckets + 1;
+                long last = Math.min(bucket - buckets, head);
+                if (bucket - head >= buckets) {
+                    for (int i = 0; i < tree.length(); i++) {
+                        tree.set(i, 0);
+                    }
+                } else if (last - first < REBUILD_THRESHOLD) {
+                    for (long evicted = first; evicted <= last; evicted++) {
+                        clear(position(evicted));
+                    }
+                } else {
+                    // depois de uma pausa longa: desmonta a árvore em O(n), zera os buckets e remonta
+                    unbuild();
+                    for (long evicted = first; evicted <= last; evicted++) {
+                        for (int field = 0; field < STRIDE; field++) {
+                            tree.set((position(evicted) + 1) * STRIDE + field, 0);
+                        }
+                    }
+                    build();
+                }
+                head = bucket;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void clear(int position) {
+            for (int field = 0; field < STRIDE; field++) {
+                long value = prefix(position, field) - prefix(position - 1, field);
+                if (value != 0) {
+                    update(position, field, -value);
+                }
+            }
+        }
+
+        private void build() {
+            for (int i = 1; i <= buckets; i++) {
+                int parent = i + (i & -i);
+                if (parent <= buckets) {
+                    for (int field = 0; field < STRIDE; field++) {
+                        tree.getAndAdd(parent * STRIDE + field, tree.get(i * STRIDE + field));
+                    }
+                }
+            }
+        }
+
+        private void unbuild() {
+            for (int i = buckets; i >= 1; i--) {
+                int parent = i + (i & -i);
+                if (parent <= buckets) {
+                    for (int field = 0; field < STRIDE; field++) {
+                        tree.getAndAdd(parent * STRIDE + field, -tree.get(i * STRIDE + field));
+                    }
+                }
+            }
+        }
+
+        private void add(int position, int countField, int centsField, long cents) {
+            for (int i = position + 1; i <= buckets; i += i & -i) {
+                tree.getAndIncrement(i * STRIDE + countField);
+                tree.getAndAdd(i * STRIDE + centsField, cents);
+            }
+        }
+
+        private void update(int position, int field, long delta) {
+            for (int i = position + 1; i <= buckets; i += i & -i) {
+                tree.getAndAdd(i * STRIDE + field, delta);
+            }
+        }
+
+        private long prefix(int position, int field) {
+            long sum = 0;
+            for (int i = position + 1; i > 0; i -= i & -i) {
+                sum += tree.get(i * STRIDE + field);
+            }
+            return sum;
+        }
+
+        // [lo, hi] em buckets absolutos dentro da janela; no anel pode dar a volta
+        private long range(long lo, long hi, int field) {
+            int from = position(lo);
+            int to = position(hi);
+            if (from <= to) {
+                return prefix(to, field) - prefix(from - 1, field);
+            }
+            return prefix(buckets - 1, field) - prefix(from - 1, field) + prefix(to, field);
+        }
+    }
+}
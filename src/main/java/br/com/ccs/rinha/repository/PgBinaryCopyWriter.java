@@ -0,0 +1,141 @@
+package br.com.ccs.rinha.repository;
+
+import br.com.ccs.rinha.store.PaymentStore;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+final class PgBinaryCopyWriter {
+
+    static final String SQL_COPY = "COPY payments (correlation_id, amount, requested_at, is_default) FROM STDIN (FORMAT binary)";
+
+    private static final byte[] HEADER = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0, 0, 0, 0, 0, 0, 0, 0, 0};
+    private static final short FIELD_COUNT = 4;
+    private static final short NUMERIC_POS = 0x0000;
+    private static final short NUMERIC_NEG = 0x4000;
+    private static final long PG_EPOCH_MICROS = 946_684_800_000_000L;
+    private static final long[] POW10 = {1L, 10L, 100L, 1_000L};
+
+    private final CopyManager copyManager;
+    private final boolean amountCents;
+    private byte[] buffer = new byte[8192];
+    private short[] digits = new short[8];
+    private int position;
+
+    // amountCents: coluna amount BIGINT em centavos, gravada como int8 em vez de numeric
+    PgBinaryCopyWriter(Connection connection, boolean amountCents) throws SQLException {
+        this.copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+        this.amountCents = amountCents;
+    }
+
+    long copy(PaymentStore store, int[] slots, int count) throws SQLException {
+        position = 0;
+        writeBytes(HEADER);
+        for (int i = 0; i < count; i++) {
+            writeRow(store, slots[i]);
+        }
+        writeShort(-1);
+
+        CopyIn copyIn = copyManager.copyIn(SQL_COPY);
+        try {
+            copyIn.writeToCopy(buffer, 0, position);
+            return copyIn.endCopy();
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    private void writeRow(PaymentStore store, int slot) {
+        writeShort(FIELD_COUNT);
+
+        writeInt(16);
+        writeLong(store.correlationIdMsb[slot]);
+        writeLong(store.correlationIdLsb[slot]);
+
+        if (amountCents) {
+            writeInt(8);
+            writeLong(store.amountCents[slot]);
+        } else {
+            writeNumeric(store.amountCents[slot]);
+        }
+
+        writeInt(8);
+        writeLong(store.requestedAtMillis[slot] * 1_000L - PG_EPOCH_MICROS);
+
+        writeInt(1);
+        ensureCapacity(1);
+        buffer[position++] = (byte) (store.isDefault[slot] ? 1 : 0);
+    }
+
+    // numeric binário: ndigits, weight, sign, dscale e dígitos na base 10000 (centavos = escala 2)
+    private void writeNumeric(long cents) {
+        int scale = 2;
+        short sign = cents < 0 ? NUMERIC_NEG : NUMERIC_POS;
+        long unscaled = Math.abs(cents);
+
+        int fracGroups = (scale + 3) / 4;
+        unscaled = unscaled * POW10[fracGroups * 4 - scale];
+
+        int count = 0;
+        while (unscaled != 0) {
+            if (count == digits.length) {
+                digits = Arrays.copyOf(digits, count * 2);
+            }
+            digits[count++] = (short) (unscaled % 10_000);
+            unscaled /= 10_000;
+        }
+
+        int weight = count - fracGroups - 1;
+        int trailing = 0;
+        while (trailing < count && digits[trailing] == 0) {
+            trailing++;
+        }
+        int ndigits = count - trailing;
+
+        writeInt(8 + ndigits * 2);
+        writeShort(ndigits);
+        writeShort(ndigits == 0 ? 0 : weight);
+        writeShort(sign);
+        writeShort(scale);
+        for (int i = count - 1; i >= trailing; i--) {
+            writeShort(digits[i]);
+        }
+    }
+
+    private void writeBytes(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    private void writeShort(int value) {
+        ensureCapacity(2);
+        buffer[position++] = (byte) (value >>> 8);
+        buffer[position++] = (byte) value;
+    }
+
+    private void writeInt(int value) {
+        ensureCapacity(4);
+        buffer[position++] = (byte) (value >>> 24);
+        buffer[position++] = (byte) (value >>> 16);
+        buffer[position++] = (byte) (value >>> 8);
+        buffer[position++] = (byte) value;
+    }
+
+    private void writeLong(long value) {
+        writeInt((int) (value >>> 32));
+        writeInt((int) value);
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (position + bytes > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + bytes));
+        }
+    }
+}
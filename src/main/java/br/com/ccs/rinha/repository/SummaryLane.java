@@ -0,0 +1,181 @@
+package br.com.ccs.rinha.repository;
+
+import br.com.ccs.rinha.api.model.output.PaymentSummary;
+import br.com.ccs.rinha.monitor.PipelineMetrics;
+import org.postgresql.PGStatement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Faixa do resumo separada dos workers de escrita: uma conexão reservada em auto-commit (nenhuma transação
+// aberta segurando lock entre consultas), com o SELECT preparado no servidor já na primeira execução.
+// Pedidos concorrentes para o mesmo (from, to) esperam a consulta que já está rodando, e o resultado fica
+// em cache por REPOSITORY_SUMMARY_CACHE_MS. Lock em vez de synchronized porque quem espera a conexão é
+// virtual thread.
+final class SummaryLane {
+
+    private static final Logger log = LoggerFactory.getLogger(SummaryLane.class);
+    private static final int CACHE_SIZE = 64;
+
+    @FunctionalInterface
+    interface Query {
+        PaymentSummary execute(PreparedStatement stmt, OffsetDateTime from, OffsetDateTime to) throws SQLException;
+    }
+
+    private record Range(long fromMicros, long toMicros) {
+    }
+
+    private record Cached(PaymentSummary summary, long startedAt) {
+    }
+
+    private record Running(CompletableFuture<PaymentSummary> future, long startedAt) {
+    }
+
+    private final DataSource dataSource;
+    private final String sql;
+    private final Query query;
+    private final PipelineMetrics metrics;
+    private final long cacheNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ConcurrentHashMap<Range, Running> running = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Range, Cached> cache = new ConcurrentHashMap<>();
+
+    private Connection conn;
+    private PreparedStatement stmt;
+    // incrementado no purge: consulta que começou antes dele não entra no cache
+    private volatile long generation;
+
+    SummaryLane(DataSource dataSource, String sql, Query query, PipelineMetrics metrics, long cacheNanos) {
+        this.dataSource = dataSource;
+        this.sql = sql;
+        this.query = query;
+        this.metrics = metrics;
+        this.cacheNanos = cacheNanos;
+
+        lock.lock();
+        try {
+            open();
+        } catch (SQLException e) {
+            log.error("Summary lane connection error: {}", e.getMessage(), e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // notBefore: só serve cache ou consulta em andamento que começou depois desse instante (a barreira de
+    // flush do repositório); Long.MIN_VALUE aceita qualquer uma
+    PaymentSummary getSummary(OffsetDateTime from, OffsetDateTime to, long notBefore) {
+        var range = new Range(micros(from), micros(to));
+        long start = System.nanoTime();
+
+        var cached = cache.get(range);
+        if (cached != null && start - cached.startedAt < cacheNanos && fresh(cached.startedAt, notBefore)) {
+            metrics.summaryCacheHits.increment();
+            return cached.summary;
+        }
+
+        var mine = new Running(new CompletableFuture<>(), start);
+        var other = running.putIfAbsent(range, mine);
+        if (other != null && fresh(other.startedAt, notBefore)) {
+            metrics.summaryCoalesced.increment();
+            return other.future.join();
+        }
+
+        try {
+            long startedGeneration = generation;
+            var summary = execute(from, to);
+
+            if (summary == null) {
+                summary = PaymentSummary.EMPTY;
+            } else if (cacheNanos > 0 && startedGeneration == generation) {
+                if (cache.size() >= CACHE_SIZE) {
+                    cache.clear();
+                }
+                cache.merge(range, new Cached(summary, start),
+                        (old, fresh) -> fresh.startedAt - old.startedAt >= 0 ? fresh : old);
+            }
+
+            mine.future.complete(summary);
+            return summary;
+        } catch (RuntimeException e) {
+            mine.future.completeExceptionally(e);
+            throw e;
+        } finally {
+            running.remove(range, mine);
+        }
+    }
+
+    private static boolean fresh(long startedAt, long notBefore) {
+        return notBefore == Long.MIN_VALUE || startedAt - notBefore >= 0;
+    }
+
+    // roda na conexão da faixa para não disputar o pool com os workers
+    void purge(String statement) {
+        lock.lock();
+        try {
+            ensureOpen();
+            try (var purge = conn.prepareStatement(statement)) {
+                purge.executeUpdate();
+            }
+            generation++;
+            cache.clear();
+        } catch (SQLException e) {
+            close();
+            throw new RuntimeException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // null em erro: resumo vazio não pode ir para o cache
+    private PaymentSummary execute(OffsetDateTime from, OffsetDateTime to) {
+        lock.lock();
+        try {
+            ensureOpen();
+            return query.execute(stmt, from, to);
+        } catch (SQLException e) {
+            log.error("Get summary error: {}", e.getMessage(), e);
+            close();
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void ensureOpen() throws SQLException {
+        if (conn == null || conn.isClosed()) {
+            open();
+        }
+    }
+
+    private void open() throws SQLException {
+        conn = dataSource.getConnection();
+        conn.setAutoCommit(true);
+        stmt = conn.prepareStatement(sql);
+        stmt.unwrap(PGStatement.class).setPrepareThreshold(1);
+    }
+
+    private void close() {
+        try {
+            if (conn != null) {
+                conn.close();
+            }
+        } catch (SQLException e) {
+            log.warn("Summary lane close error: {}", e.getMessage());
+        }
+        conn = null;
+        stmt = null;
+    }
+
+    private static long micros(OffsetDateTime time) {
+        return time.toEpochSecond() * 1_000_000L + time.getNano() / 1_000;
+    }
+}
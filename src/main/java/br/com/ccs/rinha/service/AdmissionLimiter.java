@@ -0,0 +1,148 @@
+package br.com.ccs.rinha.service;
+
+import br.com.ccs.rinha.monitor.PipelineMetrics;
+import br.com.ccs.rinha.repository.PaymentRepository;
+import br.com.ccs.rinha.store.PaymentStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Controle de admissão: limita os pagamentos aceitos e ainda não liquidados com um limite AIMD
+// guiado pela latência dos processors, e recusa na hora quando store ou fila do repositório saturam.
+// Sobrecarga vira 429/503 explícito em vez de perda silenciosa.
+@Component
+public class AdmissionLimiter {
+
+    private static final Logger log = LoggerFactory.getLogger(AdmissionLimiter.class);
+
+    public enum Decision {
+        ACCEPTED(200), THROTTLED(429), SATURATED(503);
+
+        public final int status;
+
+        Decision(int status) {
+            this.status = status;
+        }
+    }
+
+    private final PaymentStore store;
+    private final PaymentRepository repository;
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double latencyTolerance;
+    private final double backoffRatio;
+    private final int saturationPercent;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile double limit;
+    private long shortNanos;
+    private long longNanos;
+    private long lastDecreaseAt;
+
+    public AdmissionLimiter(PaymentStore store,
+                            PaymentRepository repository,
+                            PipelineMetrics metrics,
+                            @Value("${ADMISSION_ENABLED:true}") boolean enabled,
+                            @Value("${ADMISSION_INITIAL_LIMIT:4000}") int initialLimit,
+                            @Value("${ADMISSION_MIN_LIMIT:1000}") int minLimit,
+                            @Value("${ADMISSION_MAX_LIMIT:8000}") int maxLimit,
+                            @Value("${ADMISSION_LATENCY_TOLERANCE:2.0}") double latencyTolerance,
+                            @Value("${ADMISSION_BACKOFF_RATIO:0.9}") double backoffRatio,
+                            @Value("${ADMISSION_SATURATION_PERCENT:90}") int saturationPercent) {
+        this.store = store;
+        this.repository = repository;
+        this.enabled = enabled;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTolerance = latencyTolerance;
+        this.backoffRatio = backoffRatio;
+        this.saturationPercent = saturationPercent;
+        this.limit = initialLimit;
+
+        metrics.gauge("rinha_store_available_slots", "Free slots in the payment store", store::available);
+        metrics.gauge("rinha_repository_queue_depth", "Settled payments waiting to be persisted", repository::backlog);
+        metrics.gauge("rinha_admission_limit", "Current adaptive admission limit", this::limit);
+        metrics.gauge("rinha_admission_in_flight", "Admitted payments not yet settled", this::inFlight);
+
+        log.info("Admission enabled: {}", enabled);
+        log.info("Admission limit initial: {} min: {} max: {}", initialLimit, minLimit, maxLimit);
+        log.info("Admission latency tolerance: {} backoff ratio: {}", latencyTolerance, backoffRatio);
+        log.info("Admission saturation: {}%", saturationPercent);
+    }
+
+    public Decision tryAcquire() {
+        if (!enabled) {
+            return Decision.ACCEPTED;
+        }
+
+        if (isSaturated()) {
+            return Decision.SATURATED;
+        }
+
+        if (inFlight.incrementAndGet() > limit) {
+            inFlight.decrementAndGet();
+            return Decision.THROTTLED;
+        }
+        return Decision.ACCEPTED;
+    }
+
+    // replay do IntakeJournal: o pagamento já foi aceito antes do restart, então entra sem passar pelo limite
+    public void acquire() {
+        if (enabled) {
+            inFlight.incrementAndGet();
+        }
+    }
+
+    // o pagamento saiu do pipeline do processor: liquidado ou descartado
+    public void release() {
+        if (enabled) {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    // AIMD por gradiente: compara a média curta de latência com a longa. +1 a cada janela de sucessos
+    // com o limite em uso; corte multiplicativo (no máximo uma vez por latência observada) em falha ou
+    // quando a média curta passa de tolerance x média longa. Comparar amostra a amostra com a mínima
+    // derrubava o limite só com o jitter normal dos processors.
+    public synchronized void onSample(boolean success, long latencyNanos) {
+        if (!enabled) return;
+
+        if (success) {
+            if (longNanos == 0) {
+                shortNanos = latencyNanos;
+                longNanos = latencyNanos;
+            } else {
+                shortNanos += (latencyNanos - shortNanos) >> 4;
+                longNanos += (latencyNanos - longNanos) >> 8;
+            }
+        }
+
+        double current = limit;
+        if (!success || shortNanos > longNanos * latencyTolerance) {
+            long now = System.nanoTime();
+            if (now - lastDecreaseAt >= latencyNanos) {
+                lastDecreaseAt = now;
+                limit = Math.max(minLimit, current * backoffRatio);
+            }
+        } else if (inFlight.get() * 2 >= current) {
+            limit = Math.min(maxLimit, current + 1 / current);
+        }
+    }
+
+    public int limit() {
+        return (int) limit;
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    private boolean isSaturated() {
+        return store.available() * 100 < store.capacity() * (100 - saturationPercent)
+                || repository.backlog() * 100 >= repository.backlogCapacity() * saturationPercent;
+    }
+}
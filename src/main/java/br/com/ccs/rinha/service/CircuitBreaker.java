@@ -0,0 +1,176 @@
+package br.com.ccs.rinha.service;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+// closed -> open quando a taxa de falhas (ou chamadas lentas) da janela passa do limite;
+// open -> half-open depois de openMillis, liberando uma única chamada de prova;
+// half-open -> closed se a prova der certo, senão volta para open.
+// tryAcquire devolve uma permissão que volta em record: só o resultado da prova decide o half-open, os das chamadas
+// que começaram antes (ainda closed) chegam atrasados e são ignorados.
+public final class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    public static final long REJECTED = -1;
+    public static final long PERMITTED = 0;
+
+    // o p95 só é pedido por quem faz hedge; recalculado no máximo a cada intervalo e só se a janela mudou
+    private static final long P95_REFRESH_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final String name;
+    private final int minCalls;
+    private final int failureRatePercent;
+    private final long slowCallNanos;
+    private final long openNanos;
+
+    // janela deslizante circular de resultados e latências
+    private final boolean[] failures;
+    private final long[] latencies;
+    private final long[] sorted;
+    private int next;
+    private int count;
+    private int failed;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean probing;
+    private long probe;
+    private long p95Nanos;
+    private long p95At;
+    private boolean p95Stale;
+
+    public CircuitBreaker(String name, int windowSize, int minCalls, int failureRatePercent,
+                          long slowCallNanos, long openNanos) {
+        this.name = name;
+        this.minCalls = minCalls;
+        this.failureRatePercent = failureRatePercent;
+        this.slowCallNanos = slowCallNanos;
+        this.openNanos = openNanos;
+        this.failures = new boolean[windowSize];
+        this.latencies = new long[windowSize];
+        this.sorted = new long[windowSize];
+    }
+
+    // REJECTED, PERMITTED ou, no half-open, o número da prova
+    public synchronized long tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return PERMITTED;
+            case OPEN:
+                if (System.nanoTime() - openedAt < openNanos) {
+                    return REJECTED;
+                }
+                state = State.HALF_OPEN;
+                probing = true;
+                return ++probe;
+            default:
+                if (probing) {
+                    return REJECTED;
+                }
+                probing = true;
+                return ++probe;
+        }
+    }
+
+    public synchronized void record(long permit, boolean success, long latencyNanos) {
+        boolean failure = !success || (slowCallNanos > 0 && latencyNanos > slowCallNanos);
+
+        // aberto, a janela é descartada de qualquer jeito; no half-open só a prova em curso conta
+        if (state == State.OPEN || (state == State.HALF_OPEN && permit != probe)) {
+            return;
+        }
+
+        if (state == State.HALF_OPEN) {
+            probing = false;
+            if (failure) {
+                open();
+            } else {
+                state = State.CLOSED;
+                reset();
+                add(false, success, latencyNanos);
+            }
+            return;
+        }
+
+        add(failure, success, latencyNanos);
+
+        if (state == State.CLOSED && count >= minCalls && failed * 100 >= count * failureRatePercent) {
+            open();
+        }
+    }
+
+    // permissão devolvida sem amostra: a chamada não chegou ao processor; no half-open libera a prova
+    public synchronized void cancel(long permit) {
+        if (state == State.HALF_OPEN && permit == probe) {
+            probing = false;
+        }
+    }
+
+    // latência p95 das chamadas que responderam (lentas inclusive) da janela; 0 enquanto não há amostras suficientes
+    public synchronized long p95Nanos() {
+        long now = System.nanoTime();
+        if (p95Stale && now - p95At >= P95_REFRESH_NANOS) {
+            updateP95();
+            p95Stale = false;
+            p95At = now;
+        }
+        return p95Nanos;
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+        reset();
+    }
+
+    private void reset() {
+        next = 0;
+        count = 0;
+        failed = 0;
+        p95Nanos = 0;
+        p95Stale = false;
+    }
+
+    // a lenta conta como falha para o breaker mas a latência entra na amostra do p95; erro não tem latência útil
+    private void add(boolean failure, boolean success, long latencyNanos) {
+        if (count == failures.length) {
+            if (failures[next]) failed--;
+        } else {
+            count++;
+        }
+
+        failures[next] = failure;
+        latencies[next] = success ? latencyNanos : -1;
+        if (failure) failed++;
+        next = (next + 1) % failures.length;
+        p95Stale = true;
+    }
+
+    private void updateP95() {
+        int samples = 0;
+        for (int i = 0; i < count; i++) {
+            if (latencies[i] >= 0) {
+                sorted[samples++] = latencies[i];
+            }
+        }
+
+        if (samples < minCalls) {
+            p95Nanos = 0;
+            return;
+        }
+
+        Arrays.sort(sorted, 0, samples);
+        p95Nanos = sorted[(int) Math.ceil(samples * 0.95) - 1];
+    }
+}
@@ -0,0 +1,148 @@
+package br.com.ccs.rinha.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Janela de requisições em voo para um processor, ajustada no estilo TCP Vegas: a diferença entre a
+// latência de cada resposta e a menor já vista estima quantas requisições estão enfileiradas no
+// processor (limit x (1 - min/rtt)). Fila estimada abaixo de alpha cresce a janela, acima de beta
+// encolhe, e falha encolhe. Os passos são de 1/limit por resposta, ou seja, ~1 por RTT como no Vegas.
+// Lock em vez de synchronized porque quem espera vaga é virtual thread.
+public final class ConcurrencyWindow {
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double alpha;
+    private final double beta;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+
+    private double limit;
+    private int inFlight;
+    private long minRttNanos;
+    private long lastDecreaseAt;
+
+    public ConcurrencyWindow(String name, int initialLimit, int minLimit, int maxLimit, double alpha, double beta) {
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.alpha = alpha;
+        this.beta = beta;
+        this.limit = Math.clamp(initialLimit, minLimit, maxLimit);
+    }
+
+    public void acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            while (inFlight >= (int) limit) {
+                available.await();
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (inFlight >= (int) limit) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = available.awaitNanos(nanos);
+            }
+            inFlight++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean tryAcquire() {
+        lock.lock();
+        try {
+            if (inFlight >= (int) limit) {
+                return false;
+            }
+            inFlight++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void release() {
+        lock.lock();
+        try {
+            inFlight--;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void onSample(boolean success, long rttNanos) {
+        lock.lock();
+        try {
+            double current = limit;
+
+            // falha conta como perda: no máximo um corte por latência observada, como o Vegas por RTT
+            if (!success) {
+                long now = System.nanoTime();
+                if (now - lastDecreaseAt >= rttNanos) {
+                    lastDecreaseAt = now;
+                    limit = Math.max(minLimit, current - 1);
+                }
+                return;
+            }
+
+            // a mínima desce na hora e sobe devagar (~4000 respostas): se o processor ficou mais lento de vez,
+            // a mínima antiga faria toda resposta parecer fila e a janela colaria no mínimo; reaprender de uma
+            // vez com a janela cheia tomaria a fila por latência base e a janela nunca encolheria
+            if (minRttNanos == 0 || rttNanos < minRttNanos) {
+                minRttNanos = rttNanos;
+            } else {
+                minRttNanos += (rttNanos - minRttNanos) >> 12;
+            }
+
+            double queued = current * (1 - (double) minRttNanos / rttNanos);
+            if (queued > beta) {
+                limit = Math.max(minLimit, current - 1 / current);
+            } else if (queued < alpha && inFlight * 2 >= current) {
+                // só cresce com a janela em uso; ociosa ela não diz nada sobre o processor
+                limit = Math.min(maxLimit, current + 1 / current);
+                if ((int) limit > (int) current) {
+                    available.signal();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int limit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public String name() {
+        return name;
+    }
+}
@@ -1,58 +1,159 @@
 package br.com.ccs.rinha.service;
 
-import br.com.ccs.rinha.api.model.input.PaymentRequest;
-import br.com.ccs.rinha.repository.JdbcPaymentRepository;
+import br.com.ccs.rinha.api.codec.PaymentJsonCodec;
+import br.com.ccs.rinha.monitor.PipelineMetrics;
+import br.com.ccs.rinha.repository.PaymentRepository;
+import br.com.ccs.rinha.repository.PaymentSummaryIndex;
+import br.com.ccs.rinha.service.PaymentProcessorHealthService.ProcessorTarget;
+import br.com.ccs.rinha.service.PipelinedProcessorClient.Outcome;
+import br.com.ccs.rinha.store.CorrelationIdSet;
+import br.com.ccs.rinha.store.IntBlockingQueue;
+import br.com.ccs.rinha.store.IntakeJournal;
+import br.com.ccs.rinha.store.PaymentStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
+import java.nio.ByteBuffer;
 import java.time.Duration;
-import java.time.OffsetDateTime;
-import java.time.ZoneOffset;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class PaymentProcessorClientServiceBlocking {
 
     private static final Logger log = LoggerFactory.getLogger(PaymentProcessorClientServiceBlocking.class);
+    private static final long ROUTE_RECHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
 
-    private final JdbcPaymentRepository repository;
+    private final PaymentStore store;
+    private final CorrelationIdSet correlationIds;
+    private final IntakeJournal journal;
+    private final PaymentRepository repository;
+    private final PaymentSummaryIndex summaryIndex;
+    private final PaymentProcessorHealthService healthService;
+    private final ProcessorCircuitBreakers breakers;
+    private final ProcessorConcurrencyWindows windows;
+    private final AdmissionLimiter admission;
+    private final PipelineMetrics metrics;
     private final String defaultUrl;
     private final String fallbackUrl;
     private final WebClient webClient;
-    private final ArrayBlockingQueue<PaymentRequest> queue;
+    private final PipelinedProcessorClient defaultClient;
+    private final PipelinedProcessorClient fallbackClient;
+    private final IntBlockingQueue queue;
     private final int retries;
     private final int timeOut;
-
+    private final boolean hedging;
+    private final long hedgingMinDelayNanos;
+    private final long backoffBaseMillis;
+    private final long backoffMaxMillis;
+    private final ScheduledExecutorService requeueScheduler;
+    private final ExecutorService hedgeExecutor;
+    private final ExecutorService dispatchExecutor;
 
     public PaymentProcessorClientServiceBlocking(
-            JdbcPaymentRepository paymentRepository,
+            PaymentStore store,
+            CorrelationIdSet correlationIds,
+            IntakeJournal journal,
+            PaymentRepository paymentRepository,
+            PaymentSummaryIndex summaryIndex,
+            PaymentProcessorHealthService healthService,
+            ProcessorCircuitBreakers breakers,
+            ProcessorConcurrencyWindows windows,
+            AdmissionLimiter admission,
+            PipelineMetrics metrics,
             WebClient webClient,
             @Value("${payment-processor.default.url}") String defaultUrl,
-            @Value("${payment-processor.fallback.url}") String fallbackUrl) {
+            @Value("${payment-processor.fallback.url}") String fallbackUrl,
+            @Value("${PROCESSOR_CLIENT:webclient}") String processorClient,
+            @Value("${PROCESSOR_CLIENT_CONNECTIONS:4}") int connections,
+            @Value("${PROCESSOR_CLIENT_PIPELINE_DEPTH:16}") int pipelineDepth,
+            @Value("${PROCESSOR_HEDGING_ENABLED:false}") boolean hedging,
+            @Value("${PROCESSOR_HEDGING_MIN_DELAY_MS:20}") long hedgingMinDelayMillis,
+            @Value("${REQUEUE_BACKOFF_BASE_MS:20}") long backoffBaseMillis,
+            @Value("${REQUEUE_BACKOFF_MAX_MS:1000}") long backoffMaxMillis) {
 
+        this.store = store;
+        this.correlationIds = correlationIds;
+        this.journal = journal;
         this.repository = paymentRepository;
+        this.summaryIndex = summaryIndex;
+        this.healthService = healthService;
+        this.breakers = breakers;
+        this.windows = windows;
+        this.admission = admission;
+        this.metrics = metrics;
         this.defaultUrl = defaultUrl.concat("/payments");
         this.fallbackUrl = fallbackUrl.concat("/payments");
         this.webClient = webClient;
-        this.queue = new ArrayBlockingQueue<>(10000, false);
+
+        if (processorClient.equals("pipelined")) {
+            this.defaultClient = new PipelinedProcessorClient("default-processor", defaultUrl, connections, pipelineDepth);
+            this.fallbackClient = new PipelinedProcessorClient("fallback-processor", fallbackUrl, connections, pipelineDepth);
+        } else {
+            this.defaultClient = null;
+            this.fallbackClient = null;
+        }
+        this.queue = new IntBlockingQueue(10000);
+        metrics.gauge("rinha_processor_queue_depth", "Payments waiting in the processor queue", queue::size);
+        this.hedging = hedging;
+        this.hedgingMinDelayNanos = TimeUnit.MILLISECONDS.toNanos(hedgingMinDelayMillis);
+        this.backoffBaseMillis = backoffBaseMillis;
+        this.backoffMaxMillis = backoffMaxMillis;
+        this.requeueScheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("payment-requeue").factory());
+        this.hedgeExecutor = hedging ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("payment-hedge-", 0).factory()) : null;
+        this.dispatchExecutor = windows.isEnabled() ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("payment-processor-", 0).factory()) : null;
 
         this.retries = Integer.parseInt(System.getenv("PAYMENT_PROCESSOR_MAX_RETRIES"));
         this.timeOut = Integer.parseInt(System.getenv("PAYMENT_PROCESSOR_REQUEST_TIMEOUT"));
         var workers = Integer.parseInt(System.getenv("PAYMENT_PROCESSOR_WORKERS"));
 
-        for (int i = 0; i < workers; i++) {
-            startProcessQueue(i);
+        if (windows.isEnabled()) {
+            startDispatcher();
+        } else {
+            for (int i = 0; i < workers; i++) {
+                startProcessQueue(i);
+            }
         }
 
         log.info("Default service URL: {}", this.defaultUrl);
         log.info("Fallback service URL: {}", this.fallbackUrl);
         log.info("Request timeout: {}", timeOut);
         log.info("Max retries: {}", retries);
-        log.info("Workers: {}", workers);
+        log.info("Workers: {}", windows.isEnabled() ? "adaptive window" : workers);
+        log.info("Processor client: {}", processorClient);
+        if (defaultClient != null) {
+            log.info("Processor client connections: {} pipeline depth: {}", connections, pipelineDepth);
+        }
+        log.info("Hedging enabled: {} min delay: {}ms", hedging, hedgingMinDelayMillis);
+        log.info("Requeue backoff base: {}ms max: {}ms", backoffBaseMillis, backoffMaxMillis);
+
+        journal.replay(new IntakeJournal.Replay() {
+            @Override
+            public void unsent(int slot) {
+                admission.acquire();
+                reenqueue(slot);
+            }
+
+            @Override
+            public void paid(int slot) {
+                summaryIndex.add(store.requestedAtMillis[slot], store.amountCents[slot], store.isDefault[slot]);
+                repository.saveAsync(slot);
+            }
+        });
     }
 
     private void startProcessQueue(int wokerIndex) {
@@ -60,7 +161,9 @@ public class PaymentProcessorClientServiceBlocking {
         Thread.ofVirtual().name("payment-processor" + wokerIndex).start(() -> {
             while (!Thread.currentThread().isInterrupted()) {
                 try {
-                    processWithRetry(queue.take());
+                    int slot = queue.take();
+                    metrics.processorQueueWait.record(System.nanoTime() - store.enqueuedAtNanos[slot]);
+                    processWithRetry(slot, null);
                 } catch (InterruptedException e) {
                     log.error("worker: {} has error: {}", Thread.currentThread().getName(), e.getMessage(), e);
                     Thread.currentThread().interrupt();
@@ -71,58 +174,342 @@ public class PaymentProcessorClientServiceBlocking {
         log.info("payment-processor-worker-{} started", wokerIndex);
     }
 
-    public void processPayment(PaymentRequest paymentRequest) {
-        var accepted = queue.offer(paymentRequest);
+    // com a janela ligada um único despachante tira da fila e abre uma virtual thread por pagamento assim
+    // que a janela do processor da rota tem vaga; quantos vão em paralelo passa a ser decisão da janela.
+    // A vaga reservada vale só para a primeira chamada àquele processor: as demais tentativas e o hedge
+    // ocupam a janela do processor que de fato chamam, esperando na virtual thread do próprio pagamento.
+    // A reserva é deste despacho e não do slot: o slot volta ao store no save e pode ser de outro pagamento
+    // antes de o despacho terminar
+    private void startDispatcher() {
+        log.info("Starting payment-processor-dispatcher");
+        Thread.ofVirtual().name("payment-processor-dispatcher").start(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    int slot = queue.take();
+                    var reserved = new AtomicReference<>(reserve());
+                    metrics.processorQueueWait.record(System.nanoTime() - store.enqueuedAtNanos[slot]);
+                    dispatchExecutor.execute(() -> {
+                        try {
+                            processWithRetry(slot, reserved);
+                        } finally {
+                            // a vaga que nenhuma chamada usou (rota mudou, breaker aberto) volta para a janela
+                            var unused = reserved.getAndSet(null);
+                            if (unused != null) {
+                                windows.of(unused).release();
+                            }
+                        }
+                    });
+                } catch (InterruptedException e) {
+                    log.error("dispatcher: {} has error: {}", Thread.currentThread().getName(), e.getMessage(), e);
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+    }
+
+    // espera vaga na janela do processor da rota reavaliando a rota a cada fatia: a janela cheia de um
+    // processor que ficou lento não segura a fila depois que a rota muda para o outro
+    private ProcessorTarget reserve() throws InterruptedException {
+        while (true) {
+            var target = healthService.route();
+            if (windows.of(target).tryAcquire(ROUTE_RECHECK_NANOS, TimeUnit.NANOSECONDS)) {
+                return target;
+            }
+        }
+    }
+
+    // um correlationId já aceito é confirmado de novo sem reprocessar; fora isso quem decide é a admissão
+    public AdmissionLimiter.Decision processPayment(int slot) {
+        if (!correlationIds.acquire(store.correlationIdMsb[slot], store.correlationIdLsb[slot])) {
+            metrics.ingressDuplicates.increment();
+            store.release(slot);
+            return AdmissionLimiter.Decision.ACCEPTED;
+        }
+
+        var decision = admission.tryAcquire();
+        if (decision == AdmissionLimiter.Decision.ACCEPTED) {
+            journal.accepted(slot);
+        }
+        if (decision == AdmissionLimiter.Decision.ACCEPTED && !enqueue(slot)) {
+            decision = AdmissionLimiter.Decision.SATURATED;
+        } else if (decision != AdmissionLimiter.Decision.ACCEPTED) {
+            correlationIds.release(store.correlationIdMsb[slot], store.correlationIdLsb[slot]);
+            store.release(slot);
+        }
+
+        metrics.ingress[decision.ordinal()].increment();
+        return decision;
+    }
+
+    private boolean enqueue(int slot) {
+        store.enqueuedAtNanos[slot] = System.nanoTime();
+        var accepted = queue.offer(slot);
         if (!accepted) {
+            journal.discarded(slot);
+            admission.release();
+            correlationIds.release(store.correlationIdMsb[slot], store.correlationIdLsb[slot]);
+            store.release(slot);
             log.error("Payment rejected by queue");
         }
+        return accepted;
+    }
+
+    // o corpo não depende do processor, então é renderizado uma vez por rodada de tentativas; o requestedAt é o do
+    // primeiro envio em todas as rodadas, e no replay vem do journal
+    private void processWithRetry(int slot, AtomicReference<ProcessorTarget> reserved) {
+        if (store.requestedAtMillis[slot] == 0) {
+            store.requestedAtMillis[slot] = System.currentTimeMillis();
+            journal.dispatched(slot);
+        }
+        ByteBuffer payload = PaymentJsonCodec.payload(store, slot);
+
+        if (tryProcessors(slot, payload, reserved)) {
+            admission.release();
+        } else {
+            requeue(slot);
+        }
     }
 
-    private void processWithRetry(PaymentRequest paymentRequest) {
-        paymentRequest.requestedAt = OffsetDateTime.now(ZoneOffset.UTC);
+    private boolean tryProcessors(int slot, ByteBuffer payload, AtomicReference<ProcessorTarget> reserved) {
         for (int i = 0; i < retries; i++) {
-            if (Boolean.TRUE.equals(postToDefault(paymentRequest))) {
-                saveAsync(paymentRequest);
-                return;
+            if (healthService.route() == ProcessorTarget.FALLBACK) {
+                if (attempt(slot, payload, reserved, ProcessorTarget.FALLBACK)) {
+                    return true;
+                }
+                continue;
             }
 
-            if (Boolean.TRUE.equals(postToFallback(paymentRequest))) {
-                saveAsync(paymentRequest);
-                return;
+            if (attempt(slot, payload, reserved, ProcessorTarget.DEFAULT)) {
+                return true;
+            }
+
+            if (!healthService.isFallbackFailing() && attempt(slot, payload, reserved, ProcessorTarget.FALLBACK)) {
+                return true;
             }
         }
-        queue.offer(paymentRequest);
+        return false;
     }
 
+    // com os dois processors falhando o pagamento volta para a fila só depois de um backoff exponencial
+    private void requeue(int slot) {
+        metrics.requeues.increment();
+        int attempt = Math.min(store.attempts[slot]++, 16);
+        long delay = Math.min(backoffBaseMillis << attempt, backoffMaxMillis);
+        requeueScheduler.schedule(() -> reenqueue(slot), delay, TimeUnit.MILLISECONDS);
+    }
 
-    private Boolean postToDefault(PaymentRequest paymentRequest) {
-        paymentRequest.setDefaultTrue();
+    // o pagamento já foi respondido com 200: fila cheia não descarta, o slot fica no agendador e tenta de novo
+    private void reenqueue(int slot) {
+        store.enqueuedAtNanos[slot] = System.nanoTime();
+        if (!queue.offer(slot)) {
+            metrics.requeuesDeferred.increment();
+            requeueScheduler.schedule(() -> reenqueue(slot), backoffBaseMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private boolean attempt(int slot, ByteBuffer payload, AtomicReference<ProcessorTarget> reserved,
+                            ProcessorTarget target) {
+        long permit = breakers.tryAcquire(target);
+        if (permit == CircuitBreaker.REJECTED) {
+            return false;
+        }
+
+        if (hedging && target == ProcessorTarget.DEFAULT) {
+            return hedged(slot, payload, reserved, permit);
+        }
+
+        if (call(target, permit, payload, reserved)) {
+            save(slot, target);
+            return true;
+        }
+        return false;
+    }
+
+    // depois do p95 do default dispara o mesmo pagamento no fallback; o primeiro sucesso libera o worker.
+    // se os dois processarem, os dois são registrados para o resumo bater com o de cada processor.
+    // A perna perdedora pode terminar depois que o slot foi entregue ao repositório e reutilizado, então as
+    // pernas não tocam o slot: enviam uma cópia do corpo e usam a reserva deste despacho
+    private boolean hedged(int slot, ByteBuffer payload, AtomicReference<ProcessorTarget> reserved, long permit) {
+        long delay = Math.max(breakers.of(ProcessorTarget.DEFAULT).p95Nanos(), hedgingMinDelayNanos);
+        ByteBuffer body = copyOf(payload);
+        var primary = CompletableFuture.supplyAsync(
+                () -> call(ProcessorTarget.DEFAULT, permit, body, reserved), hedgeExecutor);
+
+        try {
+            if (primary.get(delay, TimeUnit.NANOSECONDS)) {
+                save(slot, ProcessorTarget.DEFAULT);
+                return true;
+            }
+            return false;
+        } catch (TimeoutException e) {
+            // segue para o hedge
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return await(primary, slot, ProcessorTarget.DEFAULT);
+        } catch (ExecutionException e) {
+            return false;
+        }
+
+        long fallbackPermit = healthService.isFallbackFailing()
+                ? CircuitBreaker.REJECTED
+                : breakers.tryAcquire(ProcessorTarget.FALLBACK);
+        if (fallbackPermit == CircuitBreaker.REJECTED) {
+            return await(primary, slot, ProcessorTarget.DEFAULT);
+        }
+
+        metrics.hedges.increment();
+        var secondary = CompletableFuture.supplyAsync(
+                () -> call(ProcessorTarget.FALLBACK, fallbackPermit, body, reserved), hedgeExecutor);
+
+        // cópia tirada antes de qualquer save: depois do primeiro o slot pode ser liberado e reutilizado
+        long msb = store.correlationIdMsb[slot];
+        long lsb = store.correlationIdLsb[slot];
+        long cents = store.amountCents[slot];
+        long requestedAt = store.requestedAtMillis[slot];
+
+        var outcome = new CompletableFuture<Boolean>();
+        var owned = new AtomicBoolean();
+        var pending = new AtomicInteger(2);
+
+        for (var target : new ProcessorTarget[]{ProcessorTarget.DEFAULT, ProcessorTarget.FALLBACK}) {
+            var leg = target == ProcessorTarget.DEFAULT ? primary : secondary;
+            leg.whenComplete((success, error) -> {
+                if (Boolean.TRUE.equals(success)) {
+                    if (owned.compareAndSet(false, true)) {
+                        save(slot, target);
+                    } else {
+                        saveCopy(msb, lsb, cents, requestedAt, target);
+                    }
+                    outcome.complete(true);
+                }
+                if (pending.decrementAndGet() == 0) {
+                    outcome.complete(false);
+                }
+            });
+        }
+
+        return outcome.join();
+    }
+
+    private boolean await(CompletableFuture<Boolean> leg, int slot, ProcessorTarget target) {
+        if (Boolean.TRUE.equals(leg.exceptionally(e -> false).join())) {
+            save(slot, target);
+            return true;
+        }
+        return false;
+    }
+
+    private static ByteBuffer copyOf(ByteBuffer payload) {
+        var bytes = new byte[payload.remaining()];
+        payload.duplicate().get(bytes);
+        return ByteBuffer.wrap(bytes);
+    }
+
+    private boolean call(ProcessorTarget target, long permit, ByteBuffer payload, AtomicReference<ProcessorTarget> reserved) {
+        var window = windows.isEnabled() ? windows.of(target) : null;
+        if (window != null && !enter(target, window, reserved)) {
+            breakers.cancel(target, permit);
+            return false;
+        }
+        try {
+            return send(target, permit, payload);
+        } finally {
+            if (window != null) window.release();
+        }
+    }
+
+    // a vaga reservada pelo despachante se for deste processor, senão espera uma nesta virtual thread
+    private boolean enter(ProcessorTarget target, ConcurrencyWindow window, AtomicReference<ProcessorTarget> reserved) {
+        if (reserved.compareAndSet(target, null)) {
+            return true;
+        }
+        try {
+            window.acquire();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private boolean send(ProcessorTarget target, long permit, ByteBuffer payload) {
+        long start = System.nanoTime();
+        var outcome = target == ProcessorTarget.DEFAULT
+                ? postToDefault(payload)
+                : postToFallback(payload);
+        long latency = System.nanoTime() - start;
+        if (outcome == Outcome.NOT_SENT) {
+            // não chegou ao processor: fica fora do breaker, da janela e da admissão, o pagamento volta para retry
+            breakers.cancel(target, permit);
+            metrics.processorNotSent[target.ordinal()].increment();
+            return false;
+        }
+        boolean success = outcome == Outcome.SUCCEEDED;
+        breakers.record(target, permit, success, latency);
+        windows.onSample(target, success, latency);
+        admission.onSample(success, latency);
+        metrics.processorLatency[target.ordinal()].record(latency);
+        (success ? metrics.processorSuccesses : metrics.processorFailures)[target.ordinal()].increment();
+        return success;
+    }
+
+    private Outcome postToDefault(ByteBuffer payload) {
+        if (defaultClient != null) {
+            return defaultClient.post(payload, timeOut);
+        }
 
         return webClient.post()
                 .uri(defaultUrl)
-                .bodyValue(paymentRequest.getJson())
+                .bodyValue(payload)
                 .exchangeToMono(clientResponse ->
                         Mono.just(clientResponse.statusCode().is2xxSuccessful()))
                 .timeout(Duration.ofMillis(timeOut))
                 .onErrorReturn(Boolean.FALSE)
+                .map(Outcome::of)
                 .block();
     }
 
-    private Boolean postToFallback(PaymentRequest paymentRequest) {
-        paymentRequest.setDefaultFalse();
+    private Outcome postToFallback(ByteBuffer payload) {
+        if (fallbackClient != null) {
+            return fallbackClient.post(payload, timeOut);
+        }
 
         return webClient.post()
                 .uri(fallbackUrl)
-                .bodyValue(paymentRequest.getJson())
+                .bodyValue(payload)
                 .exchangeToMono(clientResponse ->
                         Mono.just(clientResponse.statusCode().is2xxSuccessful())
                 )
                 .timeout(Duration.ofMillis(timeOut))
                 .onErrorReturn(Boolean.FALSE)
+                .map(Outcome::of)
                 .block();
     }
 
-    private void saveAsync(PaymentRequest request) {
-        repository.saveAsync(request);
+    // cada liquidação é registrada uma única vez por processor
+    private void save(int slot, ProcessorTarget target) {
+        store.isDefault[slot] = target == ProcessorTarget.DEFAULT;
+        if (!correlationIds.settle(store.correlationIdMsb[slot], store.correlationIdLsb[slot], store.isDefault[slot])) {
+            journal.discarded(slot);
+            store.release(slot);
+            return;
+        }
+        journal.paid(slot);
+        summaryIndex.add(store.requestedAtMillis[slot], store.amountCents[slot], store.isDefault[slot]);
+        repository.saveAsync(slot);
+    }
+
+    private void saveCopy(long msb, long lsb, long cents, long requestedAt, ProcessorTarget target) {
+        int copy = store.allocate();
+        if (copy == IntBlockingQueue.EMPTY) {
+            log.error("Hedged payment processed twice but store is full");
+            return;
+        }
+
+        store.correlationIdMsb[copy] = msb;
+        store.correlationIdLsb[copy] = lsb;
+        store.amountCents[copy] = cents;
+        store.requestedAtMillis[copy] = requestedAt;
+        save(copy, target);
     }
-}
\ No newline at end of file
+}
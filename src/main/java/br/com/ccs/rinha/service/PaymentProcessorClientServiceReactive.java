@@ -1,113 +1,275 @@
 package br.com.ccs.rinha.service;
 
-import br.com.ccs.rinha.api.model.input.PaymentRequest;
-import br.com.ccs.rinha.repository.JdbcPaymentRepository;
+import br.com.ccs.rinha.api.codec.PaymentJsonCodec;
+import br.com.ccs.rinha.monitor.PipelineMetrics;
+import br.com.ccs.rinha.repository.PaymentRepository;
+import br.com.ccs.rinha.repository.PaymentSummaryIndex;
+import br.com.ccs.rinha.service.PaymentProcessorHealthService.ProcessorTarget;
+import br.com.ccs.rinha.store.CorrelationIdSet;
+import br.com.ccs.rinha.store.IntBlockingQueue;
+import br.com.ccs.rinha.store.IntakeJournal;
+import br.com.ccs.rinha.store.PaymentStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
+import java.nio.ByteBuffer;
 import java.time.Duration;
-import java.time.OffsetDateTime;
-import java.time.ZoneOffset;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
-//@Service
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
 public class PaymentProcessorClientServiceReactive {
 
     private static final Logger log = LoggerFactory.getLogger(PaymentProcessorClientServiceReactive.class);
+    private static final Duration REQUEUE_RETRY = Duration.ofMillis(20);
 
-    private final JdbcPaymentRepository repository;
+    private final PaymentStore store;
+    private final CorrelationIdSet correlationIds;
+    private final IntakeJournal journal;
+    private final AdmissionLimiter admission;
+    private final ProcessorConcurrencyWindows windows;
+    private final PipelineMetrics metrics;
+    private final PaymentRepository repository;
+    private final PaymentSummaryIndex summaryIndex;
+    private final PaymentProcessorHealthService healthService;
     private final String defaultUrl;
     private final String fallbackUrl;
     private final WebClient webClient;
-    private final ArrayBlockingQueue<PaymentRequest> queue;
+    private final IntBlockingQueue queue;
     private final int retries;
     private final Duration timeOut;
+    private final int concurrency;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger wip = new AtomicInteger();
+    private final ExecutorService saveOverflow;
 
     public PaymentProcessorClientServiceReactive(
-            JdbcPaymentRepository paymentRepository,
+            PaymentStore store,
+            CorrelationIdSet correlationIds,
+            IntakeJournal journal,
+            AdmissionLimiter admission,
+            ProcessorConcurrencyWindows windows,
+            PipelineMetrics metrics,
+            PaymentRepository paymentRepository,
+            PaymentSummaryIndex summaryIndex,
+            PaymentProcessorHealthService healthService,
             WebClient webClient,
             @Value("${payment-processor.default.url}") String defaultUrl,
-            @Value("${payment-processor.fallback.url}") String fallbackUrl) {
+            @Value("${payment-processor.fallback.url}") String fallbackUrl,
+            @Value("${PAYMENT_PROCESSOR_CONCURRENCY:${PAYMENT_PROCESSOR_WORKERS:1}}") int concurrency) {
 
+        this.store = store;
+        this.correlationIds = correlationIds;
+        this.journal = journal;
+        this.admission = admission;
+        this.windows = windows;
+        this.metrics = metrics;
         this.repository = paymentRepository;
-
+        this.summaryIndex = summaryIndex;
+        this.healthService = healthService;
         this.defaultUrl = defaultUrl.concat("/payments");
         this.fallbackUrl = fallbackUrl.concat("/payments");
         this.webClient = webClient;
-        this.queue = new ArrayBlockingQueue<>(10000, false);
+        this.queue = new IntBlockingQueue(10000);
+        metrics.gauge("rinha_processor_queue_depth", "Payments waiting in the processor queue", queue::size);
         this.retries = Integer.parseInt(System.getenv("PAYMENT_PROCESSOR_MAX_RETRIES"));
         this.timeOut = Duration.ofMillis(Integer.parseInt(System.getenv("PAYMENT_PROCESSOR_REQUEST_TIMEOUT")));
-        var workers = Integer.parseInt(System.getenv("PAYMENT_PROCESSOR_WORKERS"));
-
-        for (int i = 0; i < workers; i++) {
-            startProcessQueue(i);
-        }
+        this.concurrency = concurrency;
+        this.saveOverflow = Executors.newSingleThreadExecutor(Thread.ofVirtual().name("payment-save-overflow").factory());
 
         log.info("Default service URL: {}", this.defaultUrl);
         log.info("Fallback service URL: {}", this.fallbackUrl);
         log.info("Request timeout: {}", timeOut);
         log.info("Max retries: {}", retries);
-        log.info("Workers: {}", workers);
+        log.info("Concurrency: {}", windows.isEnabled() ? "adaptive window" : concurrency);
+
+        journal.replay(new IntakeJournal.Replay() {
+            @Override
+            public void unsent(int slot) {
+                admission.acquire();
+                requeue(slot);
+            }
+
+            @Override
+            public void paid(int slot) {
+                summaryIndex.add(store.requestedAtMillis[slot], store.amountCents[slot], store.isDefault[slot]);
+                repository.saveAsync(slot);
+            }
+        });
+    }
+
+    // um correlationId já aceito é confirmado de novo sem reprocessar; fora isso quem decide é a admissão
+    public AdmissionLimiter.Decision processPayment(int slot) {
+        if (!correlationIds.acquire(store.correlationIdMsb[slot], store.correlationIdLsb[slot])) {
+            metrics.ingressDuplicates.increment();
+            store.release(slot);
+            return AdmissionLimiter.Decision.ACCEPTED;
+        }
+
+        var decision = admission.tryAcquire();
+        if (decision == AdmissionLimiter.Decision.ACCEPTED) {
+            journal.accepted(slot);
+        }
+        if (decision == AdmissionLimiter.Decision.ACCEPTED && !enqueue(slot)) {
+            decision = AdmissionLimiter.Decision.SATURATED;
+        } else if (decision != AdmissionLimiter.Decision.ACCEPTED) {
+            correlationIds.release(store.correlationIdMsb[slot], store.correlationIdLsb[slot]);
+            store.release(slot);
+        }
+
+        metrics.ingress[decision.ordinal()].increment();
+        return decision;
     }
 
-    public void processPayment(PaymentRequest paymentRequest) {
-        var accepted = queue.offer(paymentRequest);
+    private boolean enqueue(int slot) {
+        store.enqueuedAtNanos[slot] = System.nanoTime();
+        var accepted = queue.offer(slot);
         if (!accepted) {
+            journal.discarded(slot);
+            admission.release();
+            correlationIds.release(store.correlationIdMsb[slot], store.correlationIdLsb[slot]);
+            store.release(slot);
             log.error("Payment rejected by queue");
+            return false;
         }
+        drain();
+        return true;
     }
 
-    private void startProcessQueue(int wokerIndex) {
-        Thread.ofVirtual().name("payment-processor" + wokerIndex).start(() -> {
-            while (!Thread.currentThread().isInterrupted()) {
-                try {
-                    processWithRetryReactive(queue.take());
-                } catch (InterruptedException e) {
-                    log.error("worker: {} has error: {}", Thread.currentThread().getName(), e.getMessage(), e);
-                    Thread.currentThread().interrupt();
+    // bomba sem bloqueio: só quem ganha o wip inicia envios, limitado a concurrency em voo ou, com a
+    // janela ligada, à janela do processor da rota; cada envio concluído libera a vaga e chama drain de novo.
+    // A vaga reservada aqui vale só para a primeira chamada àquele processor: as demais ocupam a janela do
+    // processor que de fato chamam
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+
+        int missed = 1;
+        do {
+            while (true) {
+                var target = windows.isEnabled() ? healthService.route() : null;
+                if (target == null ? inFlight.get() >= concurrency : !windows.of(target).tryAcquire()) {
+                    break;
+                }
+                int slot = queue.poll();
+                if (slot == IntBlockingQueue.EMPTY) {
+                    if (target != null) windows.of(target).release();
+                    break;
                 }
+                inFlight.incrementAndGet();
+                metrics.processorQueueWait.record(System.nanoTime() - store.enqueuedAtNanos[slot]);
+                send(slot, new AtomicReference<>(target));
             }
-        });
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
     }
 
-    private void processWithRetryReactive(PaymentRequest paymentRequest) {
-        paymentRequest.requestedAt = OffsetDateTime.now(ZoneOffset.UTC);
-        AtomicInteger attempts = new AtomicInteger();
+    private void send(int slot, AtomicReference<ProcessorTarget> reserved) {
+        // o requestedAt é o do primeiro envio em todas as rodadas, e no replay vem do journal
+        if (store.requestedAtMillis[slot] == 0) {
+            store.requestedAtMillis[slot] = System.currentTimeMillis();
+            journal.dispatched(slot);
+        }
+        ByteBuffer payload = PaymentJsonCodec.payload(store, slot);
 
-        Mono.defer(() -> trySend(paymentRequest, attempts.getAndIncrement()))
-                .repeatWhenEmpty(repeat -> repeat.take(retries))
+        Mono.defer(() -> attempt(slot, payload, reserved))
+                .filter(Boolean::booleanValue)
+                .repeatWhenEmpty(repeat -> repeat.take(Math.max(retries - 1, 0)))
+                .defaultIfEmpty(Boolean.FALSE)
+                .doFinally(signal -> {
+                    var unused = reserved.getAndSet(null);
+                    if (unused != null) windows.of(unused).release();
+                    inFlight.decrementAndGet();
+                    drain();
+                })
                 .subscribe(success -> {
-                    if (Boolean.TRUE.equals(success)) {
-                        saveAsync(paymentRequest);
+                    if (success) {
+                        admission.release();
+                        saveAsync(slot);
                     } else {
-                        queue.offer(paymentRequest);
+                        metrics.requeues.increment();
+                        requeue(slot);
                     }
                 }, error -> {
                     log.error("Unexpected error on process payment", error);
-                    queue.offer(paymentRequest);
+                    requeue(slot);
                 });
     }
 
-    private Mono<Boolean> trySend(PaymentRequest request, int attempt) {
-        return postToDefault(request)
+    // o pagamento já foi respondido com 200: com a fila cheia ele não é descartado, espera um pouco fora do
+    // event loop e tenta de novo
+    private void requeue(int slot) {
+        store.enqueuedAtNanos[slot] = System.nanoTime();
+        if (queue.offer(slot)) {
+            drain();
+            return;
+        }
+        metrics.requeuesDeferred.increment();
+        Mono.delay(REQUEUE_RETRY).subscribe(tick -> requeue(slot));
+    }
+
+    private Mono<Boolean> attempt(int slot, ByteBuffer payload, AtomicReference<ProcessorTarget> reserved) {
+        if (healthService.route() == ProcessorTarget.FALLBACK) {
+            return call(ProcessorTarget.FALLBACK, slot, payload, reserved);
+        }
+
+        return call(ProcessorTarget.DEFAULT, slot, payload, reserved)
                 .flatMap(success -> {
-                    if (Boolean.TRUE.equals(success)) return Mono.just(true);
-                    return postToFallback(request);
+                    if (success || healthService.isFallbackFailing()) return Mono.just(success);
+                    return call(ProcessorTarget.FALLBACK, slot, payload, reserved);
                 });
     }
 
+    private Mono<Boolean> call(ProcessorTarget target, int slot, ByteBuffer payload,
+                               AtomicReference<ProcessorTarget> reserved) {
+        var post = target == ProcessorTarget.DEFAULT ? postToDefault(slot, payload) : postToFallback(slot, payload);
+        return windowed(target, reserved, timed(target, post));
+    }
+
+    // a chamada ocupa a janela do processor que ela chama: a vaga reservada pelo drain se for dele, senão uma
+    // livre na hora; sem vaga a chamada não sai e a tentativa conta como sem sucesso, o event loop não espera
+    private Mono<Boolean> windowed(ProcessorTarget target, AtomicReference<ProcessorTarget> reserved, Mono<Boolean> call) {
+        if (!windows.isEnabled()) {
+            return call;
+        }
+        return Mono.defer(() -> {
+            var window = windows.of(target);
+            if (!reserved.compareAndSet(target, null) && !window.tryAcquire()) {
+                return Mono.just(false);
+            }
+            return call.doFinally(signal -> window.release());
+        });
+    }
 
-    private Mono<Boolean> postToDefault(PaymentRequest paymentRequest) {
-        paymentRequest.setDefaultTrue();
+    private Mono<Boolean> timed(ProcessorTarget target, Mono<Boolean> call) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return call.doOnNext(success -> {
+                long latency = System.nanoTime() - start;
+                admission.onSample(success, latency);
+                windows.onSample(target, success, latency);
+                metrics.processorLatency[target.ordinal()].record(latency);
+                (success ? metrics.processorSuccesses : metrics.processorFailures)[target.ordinal()].increment();
+            });
+        });
+    }
+
+    private Mono<Boolean> postToDefault(int slot, ByteBuffer payload) {
+        store.isDefault[slot] = true;
 
         return webClient.post()
                 .uri(defaultUrl)
-                .bodyValue(paymentRequest.getJson())
+                .bodyValue(payload)
                 .retrieve()
                 .onStatus(HttpStatusCode::isError, response -> Mono.error(new RuntimeException("Erro HTTP")))
                 .toBodilessEntity()
@@ -116,12 +278,12 @@ public class PaymentProcessorClientServiceReactive {
                 .onErrorReturn(false);
     }
 
-    private Mono<Boolean> postToFallback(PaymentRequest paymentRequest) {
-        paymentRequest.setDefaultFalse();
+    private Mono<Boolean> postToFallback(int slot, ByteBuffer payload) {
+        store.isDefault[slot] = false;
 
         return webClient.post()
                 .uri(fallbackUrl)
-                .bodyValue(paymentRequest.getJson())
+                .bodyValue(payload)
                 .retrieve()
                 .onStatus(HttpStatusCode::isError, response -> Mono.error(new RuntimeException("Erro HTTP")))
                 .toBodilessEntity()
@@ -130,7 +292,18 @@ public class PaymentProcessorClientServiceReactive {
                 .onErrorReturn(false);
     }
 
-    private void saveAsync(PaymentRequest request) {
-        repository.saveAsync(request);
+    private void saveAsync(int slot) {
+        if (!correlationIds.settle(store.correlationIdMsb[slot], store.correlationIdLsb[slot], store.isDefault[slot])) {
+            journal.discarded(slot);
+            store.release(slot);
+            return;
+        }
+        journal.paid(slot);
+        summaryIndex.add(store.requestedAtMillis[slot], store.amountCents[slot], store.isDefault[slot]);
+        // roda no event loop do Netty, que não pode estacionar: com a fila do repositório cheia o slot vai para
+        // uma única virtual thread que espera vaga no put, na ordem em que chegaram
+        if (!repository.trySaveAsync(slot)) {
+            saveOverflow.execute(() -> repository.saveAsync(slot));
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,170 @@
+package br.com.ccs.rinha.service;
+
+import br.com.ccs.rinha.repository.JdbcProcessorHealthRepository;
+import br.com.ccs.rinha.repository.JdbcProcessorHealthRepository.ProcessorHealth;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aot.hint.annotation.RegisterReflectionForBinding;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+@Service
+@RegisterReflectionForBinding(PaymentProcessorHealthService.ServiceHealth.class)
+public class PaymentProcessorHealthService {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentProcessorHealthService.class);
+    private static final String DEFAULT = "default";
+    private static final String FALLBACK = "fallback";
+    private static final ProcessorHealth UNKNOWN = new ProcessorHealth(false, 0);
+
+    private final JdbcProcessorHealthRepository repository;
+    private final WebClient webClient;
+    private final String defaultHealthUrl;
+    private final String fallbackHealthUrl;
+    private final boolean enabled;
+    private final long pollInterval;
+    private final long rateLimit;
+    private final double slowFactor;
+    private final int latencyThreshold;
+
+    private volatile ProcessorHealth defaultHealth = UNKNOWN;
+    private volatile ProcessorHealth fallbackHealth = UNKNOWN;
+    private long lastLocalPoll;
+
+    public PaymentProcessorHealthService(
+            ObjectProvider<JdbcProcessorHealthRepository> repository,
+            WebClient webClient,
+            @Value("${payment-processor.default.url}") String defaultUrl,
+            @Value("${payment-processor.fallback.url}") String fallbackUrl,
+            @Value("${HEALTH_CHECK_ENABLED:true}") boolean enabled,
+            @Value("${HEALTH_CHECK_POLL_INTERVAL:1000}") long pollInterval,
+            @Value("${HEALTH_CHECK_RATE_LIMIT:5000}") long rateLimit,
+            @Value("${HEALTH_CHECK_SLOW_FACTOR:3}") double slowFactor,
+            @Value("${HEALTH_CHECK_LATENCY_THRESHOLD:500}") int latencyThreshold) {
+
+        this.repository = repository.getIfAvailable();
+        this.webClient = webClient;
+        this.defaultHealthUrl = defaultUrl.concat("/payments/service-health");
+        this.fallbackHealthUrl = fallbackUrl.concat("/payments/service-health");
+        this.enabled = enabled;
+        this.pollInterval = pollInterval;
+        this.rateLimit = rateLimit;
+        this.slowFactor = slowFactor;
+        this.latencyThreshold = latencyThreshold;
+
+        log.info("Health check enabled: {}", enabled);
+        log.info("Health check poll interval: {}", pollInterval);
+        log.info("Health check rate limit: {}", rateLimit);
+        log.info("Health check slow factor: {}", slowFactor);
+        log.info("Health check latency threshold: {}", latencyThreshold);
+        log.info("Health check shared between instances: {}", this.repository != null);
+
+        if (enabled) {
+            startMonitor();
+        }
+    }
+
+    private void startMonitor() {
+        Thread.ofVirtual().name("processor-health-monitor").start(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    if (repository != null) {
+                        pollShared();
+                    } else {
+                        pollLocal();
+                    }
+
+                    Thread.sleep(pollInterval);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Exception e) {
+                    log.error("Health monitor error: {}", e.getMessage(), e);
+                }
+            }
+        });
+    }
+
+    private void pollShared() {
+        if (repository.tryClaim(DEFAULT, rateLimit)) {
+            var health = fetch(DEFAULT, defaultHealthUrl);
+            if (health != null) repository.update(DEFAULT, health.failing(), health.minResponseTime());
+        }
+
+        if (repository.tryClaim(FALLBACK, rateLimit)) {
+            var health = fetch(FALLBACK, fallbackHealthUrl);
+            if (health != null) repository.update(FALLBACK, health.failing(), health.minResponseTime());
+        }
+
+        var health = repository.findAll();
+        defaultHealth = health.getOrDefault(DEFAULT, defaultHealth);
+        fallbackHealth = health.getOrDefault(FALLBACK, fallbackHealth);
+    }
+
+    // sem banco compartilhado cada instância consulta sozinha, limitada ao rate limit local
+    private void pollLocal() {
+        long now = System.currentTimeMillis();
+        if (now - lastLocalPoll < rateLimit) {
+            return;
+        }
+        lastLocalPoll = now;
+
+        var health = fetch(DEFAULT, defaultHealthUrl);
+        if (health != null) defaultHealth = new ProcessorHealth(health.failing(), health.minResponseTime());
+
+        health = fetch(FALLBACK, fallbackHealthUrl);
+        if (health != null) fallbackHealth = new ProcessorHealth(health.failing(), health.minResponseTime());
+    }
+
+    private ServiceHealth fetch(String processor, String url) {
+        var health = webClient.get()
+                .uri(url)
+                .retrieve()
+                .bodyToMono(ServiceHealth.class)
+                .timeout(Duration.ofMillis(rateLimit))
+                .onErrorResume(e -> Mono.empty())
+                .block();
+
+        if (health != null) {
+            log.info("Processor {} failing: {} minResponseTime: {}", processor, health.failing(), health.minResponseTime());
+        }
+        return health;
+    }
+
+    public ProcessorTarget route() {
+        if (!enabled) {
+            return ProcessorTarget.DEFAULT;
+        }
+
+        var d = defaultHealth;
+        var f = fallbackHealth;
+
+        // default é mais barato, só desvia se estiver falhando ou muito mais lento que o fallback
+        if (!d.failing() && (f.failing()
+                || d.minResponseTime() <= latencyThreshold
+                || d.minResponseTime() <= f.minResponseTime() * slowFactor)) {
+            return ProcessorTarget.DEFAULT;
+        }
+
+        if (!f.failing()) {
+            return ProcessorTarget.FALLBACK;
+        }
+
+        return ProcessorTarget.DEFAULT;
+    }
+
+    public boolean isFallbackFailing() {
+        return enabled && fallbackHealth.failing();
+    }
+
+    public enum ProcessorTarget {
+        DEFAULT, FALLBACK
+    }
+
+    public record ServiceHealth(boolean failing, int minResponseTime) {
+    }
+}
@@ -0,0 +1,76 @@
+package br.com.ccs.rinha.service;
+
+import br.com.ccs.rinha.api.model.output.PaymentSummary;
+import br.com.ccs.rinha.monitor.PipelineMetrics;
+import br.com.ccs.rinha.repository.PaymentRepository;
+import br.com.ccs.rinha.repository.PaymentSummaryIndex;
+import br.com.ccs.rinha.store.CorrelationIdSet;
+import br.com.ccs.rinha.store.IntakeJournal;
+import org.springframework.stereotype.Service;
+
+import java.time.OffsetDateTime;
+
+import static java.util.Objects.isNull;
+
+@Service
+public class PaymentSummaryService {
+
+    private final PaymentRepository repository;
+    private final PaymentSummaryIndex summaryIndex;
+    private final PeerSummaryClient peerSummaryClient;
+    private final CorrelationIdSet correlationIds;
+    private final IntakeJournal journal;
+    private final PipelineMetrics metrics;
+
+    public PaymentSummaryService(PaymentRepository repository,
+                                 PaymentSummaryIndex summaryIndex,
+                                 PeerSummaryClient peerSummaryClient,
+                                 CorrelationIdSet correlationIds,
+                                 IntakeJournal journal,
+                                 PipelineMetrics metrics) {
+        this.repository = repository;
+        this.summaryIndex = summaryIndex;
+        this.peerSummaryClient = peerSummaryClient;
+        this.correlationIds = correlationIds;
+        this.journal = journal;
+        this.metrics = metrics;
+        metrics.gauge("rinha_correlation_ids", "Correlation ids kept for dedupe until the next purge", correlationIds::size);
+    }
+
+    // índice local + peer quando ambos respondem, senão o repositório (bloqueante)
+    public PaymentSummary getSummary(OffsetDateTime from, OffsetDateTime to) {
+        long start = System.nanoTime();
+        try {
+            return summary(from, to);
+        } finally {
+            metrics.summaryLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    private PaymentSummary summary(OffsetDateTime from, OffsetDateTime to) {
+        var rangeFrom = isNull(from) ? OffsetDateTime.now().minusMinutes(5) : from;
+        var rangeTo = isNull(to) ? OffsetDateTime.now() : to;
+
+        if (summaryIndex.covers(rangeFrom, rangeTo)) {
+            var peer = peerSummaryClient.getSummary(rangeFrom, rangeTo);
+            var local = peer == null ? null : summaryIndex.getSummary(rangeFrom, rangeTo);
+            if (local != null) {
+                return local.plus(peer);
+            }
+        }
+
+        return repository.getSummary(from, to);
+    }
+
+    // null quando o índice não cobre o intervalo
+    public PaymentSummary getLocalSummary(OffsetDateTime from, OffsetDateTime to) {
+        return summaryIndex.getSummary(from, to);
+    }
+
+    public void purge() {
+        repository.purge();
+        summaryIndex.reset();
+        correlationIds.clear();
+        journal.clear();
+    }
+}
@@ -0,0 +1,57 @@
+package br.com.ccs.rinha.service;
+
+import br.com.ccs.rinha.api.model.output.PaymentSummary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aot.hint.annotation.RegisterReflectionForBinding;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+
+@Service
+@RegisterReflectionForBinding(PaymentSummary.class)
+public class PeerSummaryClient {
+
+    private static final Logger log = LoggerFactory.getLogger(PeerSummaryClient.class);
+
+    private final WebClient webClient;
+    private final String peerUrl;
+    private final Duration timeOut;
+
+    public PeerSummaryClient(WebClient webClient,
+                             @Value("${PEER_URL:}") String peerUrl,
+                             @Value("${PEER_SUMMARY_TIMEOUT:500}") int timeOut) {
+        this.webClient = webClient;
+        this.peerUrl = peerUrl.isBlank() ? null : peerUrl.concat("/internal/payments-summary?from={from}&to={to}");
+        this.timeOut = Duration.ofMillis(timeOut);
+
+        log.info("Peer summary URL: {}", this.peerUrl);
+        log.info("Peer summary timeout: {}", timeOut);
+    }
+
+    // sem peer configurado a instância é a única fonte; null indica que o peer não respondeu
+    public PaymentSummary getSummary(OffsetDateTime from, OffsetDateTime to) {
+        return getSummaryAsync(from, to).block();
+    }
+
+    // vazio quando o peer não respondeu
+    public Mono<PaymentSummary> getSummaryAsync(OffsetDateTime from, OffsetDateTime to) {
+        if (peerUrl == null) {
+            return Mono.just(PaymentSummary.EMPTY);
+        }
+
+        return webClient.get()
+                .uri(peerUrl, from, to)
+                .retrieve()
+                .bodyToMono(PaymentSummary.class)
+                .timeout(timeOut)
+                .onErrorResume(e -> {
+                    log.error("Peer summary error: {}", e.getMessage());
+                    return Mono.empty();
+                });
+    }
+}
@@ -0,0 +1,439 @@
+package br.com.ccs.rinha.service;
+
+import br.com.ccs.rinha.api.codec.PaymentJsonCodec;
+import br.com.ccs.rinha.store.MpmcBlockingQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+// Cliente HTTP/1.1 para POST /payments de um payment processor: poucas conexões keep-alive, requisições
+// pré-codificadas escritas direto no socket e até pipelineDepth em voo por conexão, respostas casadas em ordem.
+// Cada conexão tem um writer que junta as requisições pendentes num único write e um reader que consome as respostas.
+final class PipelinedProcessorClient {
+
+    private static final Logger log = LoggerFactory.getLogger(PipelinedProcessorClient.class);
+    private static final byte[] HEADER_END = "\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final int FAILED = -1;
+    private static final int NOT_WRITTEN = -2;
+    private static final long RECONNECT_BACKOFF_MILLIS = 100;
+    private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+
+    private final String name;
+    private final InetSocketAddress address;
+    private final byte[] requestHead;
+    private final int pipelineDepth;
+    private final MpmcBlockingQueue<Exchange> submissions;
+
+    PipelinedProcessorClient(String name, String baseUrl, int connections, int pipelineDepth) {
+        var uri = URI.create(baseUrl);
+        int port = uri.getPort() == -1 ? 80 : uri.getPort();
+
+        this.name = name;
+        this.address = InetSocketAddress.createUnresolved(uri.getHost(), port);
+        this.pipelineDepth = pipelineDepth;
+        this.submissions = new MpmcBlockingQueue<>(connections * pipelineDepth * 4);
+        this.requestHead = ("POST /payments HTTP/1.1\r\n"
+                + "Host: " + uri.getHost() + ":" + port + "\r\n"
+                + "Content-Type: application/json\r\n"
+                + "Content-Length: ").getBytes(StandardCharsets.US_ASCII);
+
+        for (int i = 0; i < connections; i++) {
+            Thread.ofVirtual().name(name + "-writer-" + i).start(this::writeLoop);
+        }
+    }
+
+    // NOT_SENT: o pedido nem saiu daqui (fila local cheia ou desistência antes do write), não diz nada do processor
+    enum Outcome {
+        SUCCEEDED, FAILED, NOT_SENT;
+
+        static Outcome of(boolean success) {
+            return success ? SUCCEEDED : FAILED;
+        }
+
+        private static Outcome of(int status) {
+            if (status == NOT_WRITTEN) {
+                return NOT_SENT;
+            }
+            return of(status >= 200 && status < 300);
+        }
+    }
+
+    // bloqueia a virtual thread chamadora até a resposta ou o timeout
+    Outcome post(ByteBuffer payload, long timeoutMillis) {
+        var exchange = new Exchange(payload, Thread.currentThread());
+        if (!submissions.offer(exchange)) {
+            return Outcome.NOT_SENT;
+        }
+        return Outcome.of(exchange.await(TimeUnit.MILLISECONDS.toNanos(timeoutMillis)));
+    }
+
+    private void writeLoop() {
+        Connection connection = null;
+        List<Exchange> batch = new ArrayList<>(pipelineDepth);
+
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(submissions.take());
+
+                if (connection == null || connection.closed) {
+                    connection = connect();
+                }
+
+                connection.permits.acquire();
+                while (batch.size() < pipelineDepth && connection.permits.tryAcquire()) {
+                    var next = submissions.poll();
+                    if (next == null) {
+                        connection.permits.release();
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                connection.send(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                log.error("{} connection error: {}", name, e.getMessage());
+                if (connection != null) {
+                    connection.close();
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(RECONNECT_BACKOFF_MILLIS));
+            } finally {
+                // o que não chegou a ser escrito falha aqui; o que foi escrito é resolvido pelo reader
+                for (Exchange exchange : batch) {
+                    exchange.failIfNotSent();
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    private Connection connect() throws IOException {
+        var channel = SocketChannel.open();
+        try {
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            channel.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+            channel.socket().connect(new InetSocketAddress(address.getHostString(), address.getPort()), CONNECT_TIMEOUT_MILLIS);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+
+        var connection = new Connection(channel);
+        Thread.ofVirtual().name(name + "-reader").start(connection::readLoop);
+        return connection;
+    }
+
+    private final class Connection {
+        private final SocketChannel channel;
+        private final Semaphore permits = new Semaphore(pipelineDepth);
+        private final ConcurrentLinkedQueue<Exchange> inFlight = new ConcurrentLinkedQueue<>();
+        private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(16 * 1024);
+        private final byte[] lengthScratch = new byte[20];
+        private final ResponseReader reader;
+        private volatile boolean closed;
+
+        private Connection(SocketChannel channel) {
+            this.channel = channel;
+            this.reader = new ResponseReader(channel);
+        }
+
+        // entra na fila de respostas antes do write, assim o reader sempre encontra a requisição correspondente
+        private void send(List<Exchange> batch) throws IOException {
+            writeBuffer.clear();
+            for (Exchange exchange : batch) {
+                if (!exchange.markSent()) {
+                    permits.release();
+                    continue;
+                }
+
+                // leitura absoluta: o mesmo corpo pode estar indo para os dois processors (hedge)
+                ByteBuffer payload = exchange.payload;
+                int length = payload.remaining();
+                int lengthDigits = PaymentJsonCodec.writeLong(lengthScratch, 0, length);
+                int size = requestHead.length + lengthDigits + HEADER_END.length + length;
+                if (writeBuffer.remaining() < size) {
+                    flush();
+                }
+
+                writeBuffer.put(requestHead)
+                        .put(lengthScratch, 0, lengthDigits)
+                        .put(HEADER_END)
+                        .put(payload.array(), payload.arrayOffset() + payload.position(), length);
+                inFlight.add(exchange);
+            }
+
+            if (closed) {
+                throw new IOException("connection closed");
+            }
+            flush();
+        }
+
+        private void flush() throws IOException {
+            writeBuffer.flip();
+            while (writeBuffer.hasRemaining()) {
+                channel.write(writeBuffer);
+            }
+            writeBuffer.clear();
+        }
+
+        private void readLoop() {
+            try {
+                while (!closed) {
+                    int status = reader.readResponse();
+                    var exchange = inFlight.poll();
+                    if (reader.closeRequested) {
+                        // fecha antes de entregar: o próximo envio de quem recebe esta resposta já abre outra conexão
+                        close();
+                    }
+                    permits.release();
+                    if (exchange != null) {
+                        exchange.complete(status);
+                    }
+                    if (reader.closeRequested) {
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                if (!closed) {
+                    log.error("{} read error: {}", name, e.getMessage());
+                }
+            } finally {
+                close();
+            }
+        }
+
+        // idempotente, mas sempre esvazia inFlight: o writer pode ter enfileirado depois do reader fechar
+        private void close() {
+            if (!closed) {
+                closed = true;
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    log.error("{} close error: {}", name, e.getMessage());
+                }
+                permits.release(pipelineDepth);
+            }
+
+            for (var exchange = inFlight.poll(); exchange != null; exchange = inFlight.poll()) {
+                exchange.complete(FAILED);
+            }
+        }
+    }
+
+    // lê respostas HTTP/1.1 em sequência; só o status interessa, o corpo é descartado
+    static final class ResponseReader {
+        private final ReadableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(8 * 1024);
+        private final byte[] data = buffer.array();
+        private int start;
+        boolean closeRequested;
+
+        ResponseReader(ReadableByteChannel channel) {
+            this.channel = channel;
+            buffer.limit(0);
+        }
+
+        int readResponse() throws IOException {
+            int headerEnd;
+            while ((headerEnd = indexOf(HEADER_END)) < 0) {
+                fill();
+            }
+
+            if (headerEnd - start < 12) {
+                throw new IOException("invalid status line");
+            }
+            int status = (data[start + 9] - '0') * 100 + (data[start + 10] - '0') * 10 + (data[start + 11] - '0');
+
+            long contentLength = 0;
+            boolean chunked = false;
+            closeRequested = false;
+
+            int line = lineEnd(start) + 2;
+            while (line < headerEnd) {
+                int end = lineEnd(line);
+                if (startsWithIgnoreCase(line, end, "content-length:")) {
+                    contentLength = Long.parseLong(value(line, end, "content-length:"));
+                } else if (startsWithIgnoreCase(line, end, "transfer-encoding:")) {
+                    chunked = value(line, end, "transfer-encoding:").equalsIgnoreCase("chunked");
+                } else if (startsWithIgnoreCase(line, end, "connection:")) {
+                    closeRequested = value(line, end, "connection:").equalsIgnoreCase("close");
+                }
+                line = end + 2;
+            }
+            start = headerEnd + HEADER_END.length;
+
+            if (chunked) {
+                skipChunked();
+            } else {
+                skip(contentLength);
+            }
+            return status;
+        }
+
+        private void skipChunked() throws IOException {
+            while (true) {
+                int end;
+                while ((end = indexOf(HEADER_END, 2)) < 0) {
+                    fill();
+                }
+                String sizeLine = new String(data, start, end - start, StandardCharsets.US_ASCII);
+                int extension = sizeLine.indexOf(';');
+                long size = Long.parseLong((extension < 0 ? sizeLine : sizeLine.substring(0, extension)).trim(), 16);
+                start = end + 2;
+
+                if (size == 0) {
+                    // trailers até a linha vazia
+                    while (true) {
+                        while ((end = indexOf(HEADER_END, 2)) < 0) {
+                            fill();
+                        }
+                        boolean empty = end == start;
+                        start = end + 2;
+                        if (empty) {
+                            return;
+                        }
+                    }
+                }
+                skip(size + 2);
+            }
+        }
+
+        private void skip(long bytes) throws IOException {
+            while (bytes > 0) {
+                if (start == buffer.limit()) {
+                    fill();
+                }
+                int n = (int) Math.min(bytes, buffer.limit() - start);
+                start += n;
+                bytes -= n;
+            }
+        }
+
+        // compacta o que ainda não foi consumido e lê mais do socket (bloqueante na virtual thread)
+        private void fill() throws IOException {
+            int pending = buffer.limit() - start;
+            if (pending == data.length) {
+                throw new IOException("response header too large");
+            }
+            System.arraycopy(data, start, data, 0, pending);
+            start = 0;
+            buffer.limit(data.length).position(pending);
+            int read = channel.read(buffer);
+            buffer.limit(buffer.position());
+            if (read < 0) {
+                throw new EOFException("connection closed by processor");
+            }
+        }
+
+        private int indexOf(byte[] needle) {
+            return indexOf(needle, needle.length);
+        }
+
+        private int indexOf(byte[] needle, int length) {
+            int last = buffer.limit() - length;
+            for (int i = start; i <= last; i++) {
+                int j = 0;
+                while (j < length && data[i + j] == needle[j]) {
+                    j++;
+                }
+                if (j == length) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private int lineEnd(int from) {
+            int i = from;
+            while (data[i] != '\r') {
+                i++;
+            }
+            return i;
+        }
+
+        private boolean startsWithIgnoreCase(int from, int end, String prefix) {
+            if (end - from < prefix.length()) {
+                return false;
+            }
+            for (int i = 0; i < prefix.length(); i++) {
+                if (Character.toLowerCase(data[from + i]) != prefix.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private String value(int from, int end, String prefix) {
+            return new String(data, from + prefix.length(), end - from - prefix.length(), StandardCharsets.US_ASCII).trim();
+        }
+    }
+
+    private static final class Exchange {
+        private static final int NEW = 0;
+        private static final int SENT = 1;
+        private static final int DONE = 2;
+        private static final int ABANDONED = 3;
+        private static final AtomicIntegerFieldUpdater<Exchange> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Exchange.class, "state");
+
+        private final ByteBuffer payload;
+        private final Thread waiter;
+        private volatile int state;
+        private volatile int status;
+
+        private Exchange(ByteBuffer payload, Thread waiter) {
+            this.payload = payload;
+            this.waiter = waiter;
+        }
+
+        // só é escrita se o chamador ainda não desistiu; desistência antes do envio é um retry seguro
+        private boolean markSent() {
+            return STATE.compareAndSet(this, NEW, SENT);
+        }
+
+        private void failIfNotSent() {
+            if (STATE.compareAndSet(this, NEW, DONE)) {
+                status = FAILED;
+                LockSupport.unpark(waiter);
+            }
+        }
+
+        private void complete(int status) {
+            this.status = status;
+            STATE.set(this, DONE);
+            LockSupport.unpark(waiter);
+        }
+
+        private int await(long timeoutNanos) {
+            long deadline = System.nanoTime() + timeoutNanos;
+            while (state != DONE) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    if (STATE.compareAndSet(this, NEW, ABANDONED)) {
+                        return NOT_WRITTEN;
+                    }
+                    return state == DONE ? status : FAILED;
+                }
+                LockSupport.parkNanos(this, remaining);
+            }
+            return status;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package br.com.ccs.rinha.service;
+
+import br.com.ccs.rinha.service.PaymentProcessorHealthService.ProcessorTarget;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+@Component
+public class ProcessorCircuitBreakers {
+
+    private static final Logger log = LoggerFactory.getLogger(ProcessorCircuitBreakers.class);
+
+    private final boolean enabled;
+    private final CircuitBreaker defaultBreaker;
+    private final CircuitBreaker fallbackBreaker;
+
+    public ProcessorCircuitBreakers(@Value("${CIRCUIT_BREAKER_ENABLED:true}") boolean enabled,
+                                    @Value("${CIRCUIT_BREAKER_WINDOW:50}") int window,
+                                    @Value("${CIRCUIT_BREAKER_MIN_CALLS:10}") int minCalls,
+                                    @Value("${CIRCUIT_BREAKER_FAILURE_RATE:50}") int failureRate,
+                                    @Value("${CIRCUIT_BREAKER_SLOW_CALL_MS:0}") long slowCallMs,
+                                    @Value("${CIRCUIT_BREAKER_OPEN_MS:1000}") long openMs) {
+        this.enabled = enabled;
+
+        long slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallMs);
+        long openNanos = TimeUnit.MILLISECONDS.toNanos(openMs);
+        this.defaultBreaker = new CircuitBreaker("default", window, minCalls, failureRate, slowCallNanos, openNanos);
+        this.fallbackBreaker = new CircuitBreaker("fallback", window, minCalls, failureRate, slowCallNanos, openNanos);
+
+        log.info("Circuit breaker enabled: {}", enabled);
+        log.info("Circuit breaker window: {} min calls: {} failure rate: {}%", window, minCalls, failureRate);
+        log.info("Circuit breaker slow call: {}ms open: {}ms", slowCallMs, openMs);
+    }
+
+    public CircuitBreaker of(ProcessorTarget target) {
+        return target == ProcessorTarget.DEFAULT ? defaultBreaker : fallbackBreaker;
+    }
+
+    // CircuitBreaker.REJECTED ou a permissão que volta em record
+    public long tryAcquire(ProcessorTarget target) {
+        return enabled ? of(target).tryAcquire() : CircuitBreaker.PERMITTED;
+    }
+
+    public void record(ProcessorTarget target, long permit, boolean success, long latencyNanos) {
+        if (enabled) {
+            of(target).record(permit, success, latencyNanos);
+        }
+    }
+
+    public void cancel(ProcessorTarget target, long permit) {
+        if (enabled) {
+            of(target).cancel(permit);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package br.com.ccs.rinha.service;
+
+import br.com.ccs.rinha.monitor.PipelineMetrics;
+import br.com.ccs.rinha.service.PaymentProcessorHealthService.ProcessorTarget;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+public class ProcessorConcurrencyWindows {
+
+    private static final Logger log = LoggerFactory.getLogger(ProcessorConcurrencyWindows.class);
+
+    private final boolean enabled;
+    private final ConcurrencyWindow defaultWindow;
+    private final ConcurrencyWindow fallbackWindow;
+
+    public ProcessorConcurrencyWindows(PipelineMetrics metrics,
+                                       @Value("${PROCESSOR_WINDOW_ENABLED:false}") boolean enabled,
+                                       @Value("${PROCESSOR_WINDOW_INITIAL:8}") int initialLimit,
+                                       @Value("${PROCESSOR_WINDOW_MIN:1}") int minLimit,
+                                       @Value("${PROCESSOR_WINDOW_MAX:64}") int maxLimit,
+                                       @Value("${PROCESSOR_WINDOW_ALPHA:2}") double alpha,
+                                       @Value("${PROCESSOR_WINDOW_BETA:4}") double beta) {
+        this.enabled = enabled;
+        this.defaultWindow = new ConcurrencyWindow("default", initialLimit, minLimit, maxLimit, alpha, beta);
+        this.fallbackWindow = new ConcurrencyWindow("fallback", initialLimit, minLimit, maxLimit, alpha, beta);
+
+        if (enabled) {
+            for (var target : ProcessorTarget.values()) {
+                metrics.gauge("rinha_processor_window_limit", "Adaptive in-flight window per processor",
+                        target, of(target)::limit);
+            }
+            for (var target : ProcessorTarget.values()) {
+                metrics.gauge("rinha_processor_window_in_flight", "Requests in flight per processor window",
+                        target, of(target)::inFlight);
+            }
+        }
+
+        log.info("Processor window enabled: {}", enabled);
+        log.info("Processor window initial: {} min: {} max: {}", initialLimit, minLimit, maxLimit);
+        log.info("Processor window alpha: {} beta: {}", alpha, beta);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public ConcurrencyWindow of(ProcessorTarget target) {
+        return target == ProcessorTarget.DEFAULT ? defaultWindow : fallbackWindow;
+    }
+
+    public void onSample(ProcessorTarget target, boolean success, long latencyNanos) {
+        if (enabled) {
+            of(target).onSample(success, latencyNanos);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package br.com.ccs.rinha.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Conjunto de correlationIds em endereçamento aberto (sondagem linear) sobre dois long[], sem boxing.
+// Cada id guarda bits de estado: em processamento e liquidado em cada processor, o que permite
+// aceitar um pagamento uma única vez e persistir cada liquidação uma única vez.
+// Particionado em stripes com lock próprio; as seções críticas não bloqueiam.
+// Id liquidado nunca sai antes do /purge-payments (esquecê-lo reabriria a cobrança dupla): a memória cresce com o número
+// de pagamentos da rodada, ~34 a 68 bytes por id com carga entre 1/4 e 1/2, e só volta à capacidade inicial no clear().
+@Component
+public class CorrelationIdSet {
+
+    private static final Logger log = LoggerFactory.getLogger(CorrelationIdSet.class);
+
+    private static final byte IN_FLIGHT = 1;
+    private static final byte SETTLED_DEFAULT = 2;
+    private static final byte SETTLED_FALLBACK = 4;
+    private static final int STRIPES = 64;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final int stripeCapacity;
+
+    public CorrelationIdSet(@Value("${CORRELATION_ID_SET_CAPACITY:32768}") int capacity) {
+        this.stripeCapacity = Integer.highestOneBit(Math.max(capacity / STRIPES, 8) - 1) << 1;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(stripeCapacity);
+        }
+
+        log.info("Correlation id set initial capacity: {}", stripeCapacity * STRIPES);
+    }
+
+    // false quando o id já foi aceito antes
+    public boolean acquire(long msb, long lsb) {
+        long hash = hash(msb, lsb);
+        var stripe = stripeOf(hash);
+        synchronized (stripe) {
+            return stripe.add(msb, lsb, hash, IN_FLIGHT);
+        }
+    }
+
+    // false quando o id já foi liquidado neste processor
+    public boolean settle(long msb, long lsb, boolean isDefault) {
+        long hash = hash(msb, lsb);
+        var stripe = stripeOf(hash);
+        synchronized (stripe) {
+            return stripe.add(msb, lsb, hash, isDefault ? SETTLED_DEFAULT : SETTLED_FALLBACK);
+        }
+    }
+
+    // pagamento descartado sem liquidação: o cliente pode reenviar o mesmo id
+    public void release(long msb, long lsb) {
+        long hash = hash(msb, lsb);
+        var stripe = stripeOf(hash);
+        synchronized (stripe) {
+            stripe.removeInFlight(msb, lsb, hash);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (var stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size;
+            }
+        }
+        return size;
+    }
+
+    public void clear() {
+        for (var stripe : stripes) {
+            synchronized (stripe) {
+                stripe.reset(stripeCapacity);
+            }
+        }
+    }
+
+    private Stripe stripeOf(long hash) {
+        return stripes[(int) (hash >>> 58)];
+    }
+
+    // finalizador do murmur3: uuid v4 já é aleatório, mas ids de cliente não precisam ser
+    static long hash(long msb, long lsb) {
+        long h = msb * 31 + lsb;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static final class Stripe {
+        private long[] msbs;
+        private long[] lsbs;
+        private byte[] states;
+        private int mask;
+        private int size;
+
+        private Stripe(int capacity) {
+            reset(capacity);
+        }
+
+        private void reset(int capacity) {
+            msbs = new long[capacity];
+            lsbs = new long[capacity];
+            states = new byte[capacity];
+            mask = capacity - 1;
+            size = 0;
+        }
+
+        // estado vazio é 0, então o id nulo não precisa de tratamento especial
+        private boolean add(long msb, long lsb, long hash, byte bit) {
+            int i = (int) hash & mask;
+            while (states[i] != 0) {
+                if (msbs[i] == msb && lsbs[i] == lsb) {
+                    if ((states[i] & bit) != 0) {
+                        return false;
+                    }
+                    states[i] |= bit;
+                    return true;
+                }
+                i = (i + 1) & mask;
+            }
+
+            msbs[i] = msb;
+            lsbs[i] = lsb;
+            states[i] = bit;
+            if (++size > (mask + 1) >> 1) {
+                grow();
+            }
+            return true;
+        }
+
+        private void removeInFlight(long msb, long lsb, long hash) {
+            int i = (int) hash & mask;
+            while (states[i] != 0) {
+                if (msbs[i] == msb && lsbs[i] == lsb) {
+                    if (states[i] == IN_FLIGHT) {
+                        delete(i);
+                    }
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+        }
+
+        // remoção com deslocamento para trás: mantém as cadeias de sondagem sem tombstones
+        private void delete(int hole) {
+            int i = hole;
+            int j = hole;
+            while (true) {
+                j = (j + 1) & mask;
+                if (states[j] == 0) {
+                    break;
+                }
+                int home = (int) hash(msbs[j], lsbs[j]) & mask;
+                boolean movable = i <= j ? (home <= i || home > j) : (home <= i && home > j);
+                if (movable) {
+                    msbs[i] = msbs[j];
+                    lsbs[i] = lsbs[j];
+                    states[i] = states[j];
+                    i = j;
+                }
+            }
+            states[i] = 0;
+            size--;
+        }
+
+        private void grow() {
+            long[] oldMsbs = msbs;
+            long[] oldLsbs = lsbs;
+            byte[] oldStates = states;
+
+            msbs = new long[oldMsbs.length << 1];
+            lsbs = new long[oldLsbs.length << 1];
+            states = new byte[oldStates.length << 1];
+            mask = states.length - 1;
+
+            for (int k = 0; k < oldStates.length; k++) {
+                if (oldStates[k] == 0) continue;
+                int i = (int) hash(oldMsbs[k], oldLsbs[k]) & mask;
+                while (states[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                msbs[i] = oldMsbs[k];
+                lsbs[i] = oldLsbs[k];
+                states[i] = oldStates[k];
+            }
+        }
+    }
+}
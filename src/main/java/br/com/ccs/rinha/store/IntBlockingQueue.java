@@ -0,0 +1,205 @@
+package br.com.ccs.rinha.store;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+// Fila circular MPMC limitada de int (algoritmo de Vyukov): cada célula tem um número de sequência
+// e produtores/consumidores só disputam um CAS no respectivo contador, sem lock.
+// A capacidade é arredondada para a próxima potência de 2.
+public final class IntBlockingQueue {
+
+    public static final int EMPTY = -1;
+
+    // contadores a 128 bytes de distância para não dividirem linha de cache
+    private static final int ENQUEUE = 8;
+    private static final int DEQUEUE = 24;
+    private static final long FULL_BACKOFF_NANOS = 50_000;
+
+    private final int[] items;
+    private final AtomicLongArray sequences;
+    private final AtomicLongArray positions = new AtomicLongArray(32);
+    private final int mask;
+    private final ParkingWaiters waiters;
+
+    public IntBlockingQueue(int capacity) {
+        this(capacity, ParkingWaiters.DEFAULT_SPINS, ParkingWaiters.DEFAULT_YIELDS);
+    }
+
+    // spins/yields: voltas de espera ativa antes de estacionar um consumidor com a fila vazia
+    public IntBlockingQueue(int capacity, int spins, int yields) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        this.items = new int[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        this.waiters = new ParkingWaiters(spins, yields);
+
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    public boolean offer(int value) {
+        long pos = positions.get(ENQUEUE);
+        int index;
+
+        while (true) {
+            index = (int) pos & mask;
+            long diff = sequences.getAcquire(index) - pos;
+
+            if (diff == 0) {
+                if (positions.compareAndSet(ENQUEUE, pos, pos + 1)) {
+                    break;
+                }
+                pos = positions.get(ENQUEUE);
+            } else if (diff < 0) {
+                return false;
+            } else {
+                pos = positions.get(ENQUEUE);
+            }
+        }
+
+        items[index] = value;
+        sequences.setRelease(index, pos + 1);
+        waiters.signal();
+        return true;
+    }
+
+    public int poll() {
+        long pos = positions.get(DEQUEUE);
+        int index;
+
+        while (true) {
+            index = (int) pos & mask;
+            long diff = sequences.getAcquire(index) - (pos + 1);
+
+            if (diff == 0) {
+                if (positions.compareAndSet(DEQUEUE, pos, pos + 1)) {
+                    break;
+                }
+                pos = positions.get(DEQUEUE);
+            } else if (diff < 0) {
+                return EMPTY;
+            } else {
+                pos = positions.get(DEQUEUE);
+            }
+        }
+
+        int value = items[index];
+        sequences.setRelease(index, pos + mask + 1);
+        return value;
+    }
+
+    // fila cheia: backoff com parkNanos até abrir vaga, propagando a pressão para quem produz
+    public void put(int value) throws InterruptedException {
+        while (!offer(value)) {
+            LockSupport.parkNanos(this, FULL_BACKOFF_NANOS);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    public int take() throws InterruptedException {
+        return await(false, 0, false);
+    }
+
+    public int poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return await(true, unit.toNanos(timeout), false);
+    }
+
+    // como take/poll, mas voltam com EMPTY quando acordados sem item (wakeWaiters ou wakeup espúrio):
+    // o consumidor republica o próprio estado antes de voltar a esperar
+    public int takeOrWake() throws InterruptedException {
+        return await(false, 0, true);
+    }
+
+    public int pollOrWake(long timeout, TimeUnit unit) throws InterruptedException {
+        return await(true, unit.toNanos(timeout), true);
+    }
+
+    // acorda todos os consumidores estacionados; quem não usa as variantes OrWake volta a esperar
+    public void wakeWaiters() {
+        waiters.signalAll();
+    }
+
+    // backoff e depois park; o registro em waiters antes da reconferência evita wakeup perdido
+    private int await(boolean timed, long nanos, boolean wakeable) throws InterruptedException {
+        long deadline = System.nanoTime() + nanos;
+
+        while (true) {
+            for (int round = 0; round < waiters.rounds(); round++) {
+                int value = poll();
+                if (value != EMPTY) {
+                    return value;
+                }
+                waiters.backoff(round);
+            }
+
+            waiters.enlist();
+            int value = poll();
+            if (value != EMPTY) {
+                waiters.leave();
+                return value;
+            }
+
+            if (timed) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    waiters.leave();
+                    return EMPTY;
+                }
+                LockSupport.parkNanos(this, remaining);
+            } else {
+                LockSupport.park(this);
+            }
+            boolean signaled = !waiters.delist();
+
+            if (Thread.interrupted()) {
+                if (signaled) {
+                    waiters.signal();
+                }
+                throw new InterruptedException();
+            }
+
+            if (wakeable) {
+                value = poll();
+                if (value == EMPTY && signaled) {
+                    waiters.signal();
+                }
+                return value;
+            }
+        }
+    }
+
+    public int drainTo(int[] target, int offset, int max) {
+        int n = 0;
+        while (n < max) {
+            int value = poll();
+            if (value == EMPTY) {
+                break;
+            }
+            target[offset + n++] = value;
+        }
+        return n;
+    }
+
+    // posições absolutas: quantos itens já entraram e já saíram desde que a fila foi criada
+    public long enqueued() {
+        return positions.get(ENQUEUE);
+    }
+
+    public long dequeued() {
+        return positions.get(DEQUEUE);
+    }
+
+    public int size() {
+        long dequeue = positions.get(DEQUEUE);
+        long enqueue = positions.get(ENQUEUE);
+        return (int) Math.max(0, Math.min(enqueue - dequeue, items.length));
+    }
+
+    public int capacity() {
+        return items.length;
+    }
+}
@@ -0,0 +1,466 @@
+package br.com.ccs.rinha.store;
+
+import br.com.ccs.rinha.monitor.PipelineMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+// Diário de entrada append-only em segmentos mapeados: ACCEPTED na admissão, DISPATCHED no primeiro envio ao processor
+// (com o requestedAt), PAID quando o processor confirma e PERSISTED depois do commit no repositório. No restart o que
+// ficou aberto volta para a fila do processor (aceito e não pago, com o requestedAt já enviado se houver) ou para o
+// repositório (pago e não persistido), com os ids registrados no CorrelationIdSet.
+// Cada segmento conta os registros ainda abertos e só é apagado quando zera e todos os anteriores já foram apagados:
+// assim o registro que fecha um pagamento nunca some antes do que o abriu.
+@Component
+public class IntakeJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(IntakeJournal.class);
+
+    // msb, lsb, valor (receivedAt ou requestedAt em millis), centavos e tipo, o tipo gravado por último. Os centavos
+    // têm o próprio long: empacotados com o tipo perderiam os bits altos de valores grandes
+    static final int RECORD_SIZE = 40;
+    private static final int TYPE_OFFSET = 32;
+    static final int ACCEPTED = 1;
+    static final int PAID_DEFAULT = 2;
+    static final int PAID_FALLBACK = 3;
+    static final int PERSISTED_DEFAULT = 4;
+    static final int PERSISTED_FALLBACK = 5;
+    static final int DISCARDED = 6;
+    static final int DISPATCHED = 7;
+    // o prefixo muda junto com o layout: segmento de 32 bytes por registro não é lido como se fosse deste
+    private static final String SEGMENT_PREFIX = "journal-v2-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final long REPLAY_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final PaymentStore store;
+    private final CorrelationIdSet correlationIds;
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentRecords;
+    private final Map<Integer, Segment> segments = new ConcurrentHashMap<>();
+    private final Object lock = new Object();
+    private final List<Entry> pendingReplay = new ArrayList<>();
+
+    private volatile Segment active;
+    private volatile int oldest;
+
+    public IntakeJournal(PaymentStore store,
+                         CorrelationIdSet correlationIds,
+                         PipelineMetrics metrics,
+                         @Value("${INTAKE_JOURNAL_ENABLED:false}") boolean enabled,
+                         @Value("${INTAKE_JOURNAL_DIR:/tmp/rinha-journal}") String directory,
+                         @Value("${INTAKE_JOURNAL_SEGMENT_SIZE_MB:4}") int segmentSizeMb,
+                         @Value("${INTAKE_JOURNAL_FLUSH_MS:10}") long flushMillis) throws IOException {
+        this.store = store;
+        this.correlationIds = correlationIds;
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        this.segmentRecords = segmentSizeMb * 1024 * 1024 / RECORD_SIZE;
+
+        log.info("Intake journal enabled: {}", enabled);
+        if (!enabled) {
+            return;
+        }
+
+        log.info("Intake journal directory: {}", this.directory);
+        log.info("Intake journal segment size: {}MB ({} records) flush: {}ms", segmentSizeMb, segmentRecords, flushMillis);
+
+        Files.createDirectories(this.directory);
+        recover();
+        metrics.gauge("rinha_journal_segments", "Intake journal segments on disk", segments::size);
+
+        if (flushMillis > 0) {
+            startFlusher(flushMillis);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void accepted(int slot) {
+        if (!enabled) return;
+        store.journalSegment[slot] = append(store.correlationIdMsb[slot], store.correlationIdLsb[slot],
+                store.receivedAtMillis[slot], store.amountCents[slot], ACCEPTED, true);
+    }
+
+    // o requestedAt é carimbado uma vez só: o replay reenvia com o mesmo valor que o processor pode já ter visto
+    public void dispatched(int slot) {
+        if (!enabled) return;
+        int previous = store.journalSegment[slot];
+        store.journalSegment[slot] = append(store.correlationIdMsb[slot], store.correlationIdLsb[slot],
+                store.requestedAtMillis[slot], store.amountCents[slot], DISPATCHED, true);
+        resolve(previous);
+    }
+
+    // o PAID carrega tudo que o repositório precisa e assume o lugar do ACCEPTED (ou de nada, na cópia do hedge)
+    public void paid(int slot) {
+        if (!enabled) return;
+        int previous = store.journalSegment[slot];
+        store.journalSegment[slot] = append(store.correlationIdMsb[slot], store.correlationIdLsb[slot],
+                store.requestedAtMillis[slot], store.amountCents[slot],
+                store.isDefault[slot] ? PAID_DEFAULT : PAID_FALLBACK, true);
+        resolve(previous);
+    }
+
+    public void persisted(int[] slots, int count) {
+        if (!enabled) return;
+        for (int i = 0; i < count; i++) {
+            int slot = slots[i];
+            append(store.correlationIdMsb[slot], store.correlationIdLsb[slot], 0, 0,
+                    store.isDefault[slot] ? PERSISTED_DEFAULT : PERSISTED_FALLBACK, false);
+            resolve(store.journalSegment[slot]);
+            store.journalSegment[slot] = -1;
+        }
+    }
+
+    // pagamento recusado depois do ACCEPTED ou já liquidado por outra tentativa: não deve voltar no replay
+    public void discarded(int slot) {
+        if (!enabled || store.journalSegment[slot] < 0) return;
+        append(store.correlationIdMsb[slot], store.correlationIdLsb[slot], 0, 0, DISCARDED, false);
+        resolve(store.journalSegment[slot]);
+        store.journalSegment[slot] = -1;
+    }
+
+    // devolve ao pipeline o que ficou aberto no último restart; chamado uma vez pelo serviço do processor.
+    // Roda numa virtual thread própria: com o store cheio espera o pipeline liberar slots em vez de descartar
+    // o resto, que continuaria aberto nos segmentos para sempre
+    public void replay(Replay handler) {
+        if (!enabled) return;
+
+        List<Entry> entries;
+        synchronized (pendingReplay) {
+            entries = new ArrayList<>(pendingReplay);
+            pendingReplay.clear();
+        }
+        if (entries.isEmpty()) return;
+
+        Thread.ofVirtual().name("journal-replay").start(() -> replay(handler, entries));
+    }
+
+    private void replay(Replay handler, List<Entry> entries) {
+        int unsent = 0;
+        int paid = 0;
+        boolean waited = false;
+        for (var entry : entries) {
+            int slot = store.allocate();
+            if (slot == IntBlockingQueue.EMPTY) {
+                if (!waited) {
+                    log.warn("Payment store full while replaying the intake journal, {} payments left, waiting for slots",
+                            entries.size() - unsent - paid);
+                    waited = true;
+                }
+                while ((slot = store.allocate()) == IntBlockingQueue.EMPTY) {
+                    LockSupport.parkNanos(REPLAY_WAIT_NANOS);
+                }
+            }
+
+            store.correlationIdMsb[slot] = entry.msb;
+            store.correlationIdLsb[slot] = entry.lsb;
+            store.amountCents[slot] = entry.cents;
+            store.journalSegment[slot] = entry.segment;
+
+            if (entry.paid) {
+                store.requestedAtMillis[slot] = entry.millis;
+                store.isDefault[slot] = entry.isDefault;
+                handler.paid(slot);
+                paid++;
+            } else {
+                store.receivedAtMillis[slot] = entry.millis;
+                if (entry.dispatched) {
+                    store.requestedAtMillis[slot] = entry.millis;
+                }
+                handler.unsent(slot);
+                unsent++;
+            }
+        }
+
+        log.info("Intake journal replayed {} unsent and {} paid but not persisted payments", unsent, paid);
+    }
+
+    public void clear() {
+        if (!enabled) return;
+        synchronized (lock) {
+            for (var segment : segments.values()) {
+                segment.delete();
+            }
+            segments.clear();
+            oldest = active.sequence + 1;
+            active = openSegment(oldest);
+        }
+    }
+
+    private int append(long msb, long lsb, long value, long cents, int type, boolean opens) {
+        while (true) {
+            var segment = active;
+            // a contagem sobe antes da reserva: o segmento não é apagado com uma escrita em andamento
+            segment.open.incrementAndGet();
+            int record = segment.next.getAndIncrement();
+            if (record < segment.capacity) {
+                segment.write(record, msb, lsb, value, cents, type);
+                if (!opens) {
+                    resolve(segment.sequence);
+                }
+                return segment.sequence;
+            }
+            segment.open.decrementAndGet();
+            rotate(segment);
+        }
+    }
+
+    private void resolve(int sequence) {
+        if (sequence < 0) return;
+        var segment = segments.get(sequence);
+        if (segment != null && segment.open.decrementAndGet() == 0 && segment.sequence == oldest && segment != active) {
+            truncate();
+        }
+    }
+
+    private void rotate(Segment full) {
+        synchronized (lock) {
+            if (active == full) {
+                active = openSegment(full.sequence + 1);
+            }
+        }
+        truncate();
+    }
+
+    // apaga segmentos resolvidos a partir do mais antigo, nunca o ativo
+    private void truncate() {
+        synchronized (lock) {
+            while (true) {
+                var segment = segments.get(oldest);
+                if (segment == null || segment == active || segment.open.get() != 0) {
+                    return;
+                }
+                segments.remove(oldest);
+                segment.delete();
+                oldest++;
+            }
+        }
+    }
+
+    private void startFlusher(long flushMillis) {
+        Thread.ofVirtual().name("journal-flusher").start(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(flushMillis);
+                    for (var segment : segments.values()) {
+                        segment.flush();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Exception e) {
+                    log.error("Error flushing intake journal", e);
+                }
+            }
+        });
+    }
+
+    // reconstrói o estado de cada id na ordem dos segmentos e deixa em pendingReplay o que não foi concluído
+    private void recover() throws IOException {
+        List<Path> paths;
+        try (Stream<Path> files = Files.list(directory)) {
+            paths = files.filter(p -> p.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .sorted()
+                    .toList();
+        }
+
+        var states = new LinkedHashMap<Key, State>();
+        int next = 0;
+        for (var path : paths) {
+            var segment = Segment.open(path, sequenceOf(path), (int) (Files.size(path) / RECORD_SIZE));
+            segments.put(segment.sequence, segment);
+            segment.scan(states);
+            next = segment.sequence + 1;
+        }
+
+        if (!paths.isEmpty()) {
+            oldest = sequenceOf(paths.getFirst());
+        }
+
+        for (var e : states.entrySet()) {
+            var key = e.getKey();
+            var state = e.getValue();
+
+            // o dedupe da entrada olha o bit de aceite, então id já pago também precisa dele
+            boolean paid = state.paidDefault != null || state.paidFallback != null;
+            if (paid || state.accepted && !state.discarded) {
+                correlationIds.acquire(key.msb, key.lsb);
+            }
+            for (var settlement : new Entry[]{state.paidDefault, state.paidFallback}) {
+                if (settlement == null) continue;
+                correlationIds.settle(key.msb, key.lsb, settlement.isDefault);
+                if (!(settlement.isDefault ? state.persistedDefault : state.persistedFallback)) {
+                    pendingReplay.add(settlement);
+                    segments.get(settlement.segment).open.incrementAndGet();
+                }
+            }
+            if (state.accepted && !state.discarded && !paid) {
+                pendingReplay.add(state.acceptedEntry);
+                segments.get(state.acceptedEntry.segment).open.incrementAndGet();
+            }
+        }
+
+        active = openSegment(next);
+        truncate();
+
+        log.info("Intake journal recovered {} ids from {} segments, {} to replay", states.size(), paths.size(), pendingReplay.size());
+    }
+
+    private Segment openSegment(int sequence) {
+        try {
+            var segment = Segment.open(directory.resolve(SEGMENT_PREFIX + String.format("%08d", sequence) + SEGMENT_SUFFIX),
+                    sequence, segmentRecords);
+            segments.put(sequence, segment);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int sequenceOf(Path path) {
+        var name = path.getFileName().toString();
+        return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    public interface Replay {
+        // aceito e nunca confirmado por um processor: volta para a fila
+        void unsent(int slot);
+
+        // confirmado pelo processor (isDefault e requestedAt preenchidos) e não persistido
+        void paid(int slot);
+    }
+
+    private record Key(long msb, long lsb) {
+    }
+
+    // millis: requestedAt quando paid ou dispatched, senão receivedAt
+    private record Entry(long msb, long lsb, long cents, long millis, boolean paid, boolean isDefault,
+                         boolean dispatched, int segment) {
+    }
+
+    private static final class State {
+        private boolean accepted;
+        private boolean discarded;
+        private boolean persistedDefault;
+        private boolean persistedFallback;
+        private Entry acceptedEntry;
+        private Entry paidDefault;
+        private Entry paidFallback;
+    }
+
+    private static final class Segment {
+        private final Path path;
+        private final int sequence;
+        private final MappedByteBuffer buffer;
+        private final int capacity;
+        private final AtomicInteger next = new AtomicInteger();
+        private final AtomicInteger open = new AtomicInteger();
+        // registros [0, flushed) escritos e forçados para o disco
+        private int flushed;
+
+        private Segment(Path path, int sequence, MappedByteBuffer buffer, int capacity) {
+            this.path = path;
+            this.sequence = sequence;
+            this.buffer = buffer;
+            this.capacity = capacity;
+        }
+
+        private static Segment open(Path path, int sequence, int capacity) throws IOException {
+            try (var channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                var buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) capacity * RECORD_SIZE);
+                return new Segment(path, sequence, buffer, capacity);
+            }
+        }
+
+        private void write(int record, long msb, long lsb, long value, long cents, int type) {
+            int offset = record * RECORD_SIZE;
+            buffer.putLong(offset, msb);
+            buffer.putLong(offset + 8, lsb);
+            buffer.putLong(offset + 16, value);
+            buffer.putLong(offset + 24, cents);
+            buffer.putLong(offset + TYPE_OFFSET, type);
+        }
+
+        // segmento recuperado nunca recebe escrita nova: marca como cheio
+        private void scan(Map<Key, State> states) {
+            next.set(capacity);
+            flushed = capacity;
+            for (int record = 0; record < capacity; record++) {
+                int offset = record * RECORD_SIZE;
+                long type = buffer.getLong(offset + TYPE_OFFSET);
+                // tipo 0: reservado e não escrito (ou fim do segmento); as escritas concorrentes deixam buracos
+                if (type == 0) continue;
+
+                long msb = buffer.getLong(offset);
+                long lsb = buffer.getLong(offset + 8);
+                long value = buffer.getLong(offset + 16);
+                long cents = buffer.getLong(offset + 24);
+                var state = states.computeIfAbsent(new Key(msb, lsb), k -> new State());
+
+                switch ((int) type) {
+                    case ACCEPTED -> {
+                        // id descartado e reenviado pelo cliente: vale o aceite mais recente
+                        state.accepted = true;
+                        state.discarded = false;
+                        state.acceptedEntry = new Entry(msb, lsb, cents, value, false, false, false, sequence);
+                    }
+                    // substitui o ACCEPTED do mesmo aceite, cujo segmento pode já ter sido apagado
+                    case DISPATCHED -> {
+                        state.accepted = true;
+                        state.discarded = false;
+                        state.acceptedEntry = new Entry(msb, lsb, cents, value, false, false, true, sequence);
+                    }
+                    case PAID_DEFAULT -> state.paidDefault = new Entry(msb, lsb, cents, value, true, true, false, sequence);
+                    case PAID_FALLBACK -> state.paidFallback = new Entry(msb, lsb, cents, value, true, false, false, sequence);
+                    case PERSISTED_DEFAULT -> state.persistedDefault = true;
+                    case PERSISTED_FALLBACK -> state.persistedFallback = true;
+                    case DISCARDED -> state.discarded = true;
+                    default -> log.warn("Unknown intake journal record type {} in {}", type, path.getFileName());
+                }
+            }
+        }
+
+        // só avança sobre registros já escritos (tipo != 0): um reservado e ainda não escrito seria forçado zerado
+        // e não voltaria a ser forçado depois; ele e o que vem depois dele ficam para a próxima volta
+        private void flush() {
+            int reserved = Math.min(next.get(), capacity);
+            int written = flushed;
+            while (written < reserved && buffer.getLong(written * RECORD_SIZE + TYPE_OFFSET) != 0) {
+                written++;
+            }
+            if (written > flushed) {
+                buffer.force(flushed * RECORD_SIZE, (written - flushed) * RECORD_SIZE);
+                flushed = written;
+            }
+        }
+
+        private void delete() {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.error("Error deleting intake journal segment {}", path.getFileName(), e);
+            }
+        }
+    }
+}
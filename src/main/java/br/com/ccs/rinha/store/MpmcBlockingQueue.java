@@ -0,0 +1,279 @@
+package br.com.ccs.rinha.store;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+// Versão genérica da IntBlockingQueue para quem exige BlockingQueue, como o ThreadPoolExecutor.
+// Produtor bloqueado em fila cheia faz backoff com parkNanos: no caminho de pagamento só se usa offer.
+public final class MpmcBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+    private static final int ENQUEUE = 8;
+    private static final int DEQUEUE = 24;
+    private static final long FULL_BACKOFF_NANOS = 50_000;
+
+    private final AtomicReferenceArray<E> items;
+    private final AtomicLongArray sequences;
+    private final AtomicLongArray positions = new AtomicLongArray(32);
+    private final int mask;
+    private final ParkingWaiters waiters;
+
+    public MpmcBlockingQueue(int capacity) {
+        this(capacity, ParkingWaiters.DEFAULT_SPINS, ParkingWaiters.DEFAULT_YIELDS);
+    }
+
+    // spins/yields: voltas de espera ativa antes de estacionar um consumidor com a fila vazia
+    public MpmcBlockingQueue(int capacity, int spins, int yields) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        this.items = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        this.waiters = new ParkingWaiters(spins, yields);
+
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    @Override
+    public boolean offer(E e) {
+        Objects.requireNonNull(e);
+        long pos = positions.get(ENQUEUE);
+        int index;
+
+        while (true) {
+            index = (int) pos & mask;
+            long diff = sequences.getAcquire(index) - pos;
+
+            if (diff == 0) {
+                if (positions.compareAndSet(ENQUEUE, pos, pos + 1)) {
+                    break;
+                }
+                pos = positions.get(ENQUEUE);
+            } else if (diff < 0) {
+                return false;
+            } else {
+                pos = positions.get(ENQUEUE);
+            }
+        }
+
+        items.setPlain(index, e);
+        sequences.setRelease(index, pos + 1);
+        waiters.signal();
+        return true;
+    }
+
+    // célula esvaziada por remove(Object) é consumida e pulada
+    @Override
+    public E poll() {
+        while (true) {
+            long pos = positions.get(DEQUEUE);
+            int index;
+
+            while (true) {
+                index = (int) pos & mask;
+                long diff = sequences.getAcquire(index) - (pos + 1);
+
+                if (diff == 0) {
+                    if (positions.compareAndSet(DEQUEUE, pos, pos + 1)) {
+                        break;
+                    }
+                    pos = positions.get(DEQUEUE);
+                } else if (diff < 0) {
+                    return null;
+                } else {
+                    pos = positions.get(DEQUEUE);
+                }
+            }
+
+            E value = items.getAndSet(index, null);
+            sequences.setRelease(index, pos + mask + 1);
+            if (value != null) {
+                return value;
+            }
+        }
+    }
+
+    @Override
+    public E peek() {
+        long tail = positions.get(ENQUEUE);
+        for (long pos = positions.get(DEQUEUE); pos < tail; pos++) {
+            int index = (int) pos & mask;
+            E value = items.get(index);
+            if (sequences.getAcquire(index) == pos + 1 && value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        return await(false, 0);
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return await(true, unit.toNanos(timeout));
+    }
+
+    private E await(boolean timed, long nanos) throws InterruptedException {
+        long deadline = System.nanoTime() + nanos;
+
+        while (true) {
+            for (int round = 0; round < waiters.rounds(); round++) {
+                E value = poll();
+                if (value != null) {
+                    return value;
+                }
+                waiters.backoff(round);
+            }
+
+            waiters.enlist();
+            E value = poll();
+            if (value != null) {
+                waiters.leave();
+                return value;
+            }
+
+            if (timed) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    waiters.leave();
+                    return null;
+                }
+                LockSupport.parkNanos(this, remaining);
+            } else {
+                LockSupport.park(this);
+            }
+            boolean signaled = !waiters.delist();
+
+            if (Thread.interrupted()) {
+                if (signaled) {
+                    waiters.signal();
+                }
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        while (!offer(e)) {
+            LockSupport.parkNanos(this, FULL_BACKOFF_NANOS);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!offer(e)) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            LockSupport.parkNanos(this, Math.min(remaining, FULL_BACKOFF_NANOS));
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+        return true;
+    }
+
+    // size() conta célula esvaziada por remove até o poll passar por ela; vazio é não ter item vivo, senão o
+    // ThreadPoolExecutor em shutdown acharia a fila com tarefa e estacionaria o worker no take para sempre
+    @Override
+    public boolean isEmpty() {
+        return peek() == null;
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return mask + 1 - size();
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        int n = 0;
+        while (n < maxElements) {
+            E value = poll();
+            if (value == null) {
+                break;
+            }
+            c.add(value);
+            n++;
+        }
+        return n;
+    }
+
+    @Override
+    public int size() {
+        long dequeue = positions.get(DEQUEUE);
+        long enqueue = positions.get(ENQUEUE);
+        return (int) Math.max(0, Math.min(enqueue - dequeue, mask + 1));
+    }
+
+    // remove do meio do anel esvaziando a célula; o poll a consome depois como se fosse um item. Disputa com o
+    // poll pelo mesmo item no getAndSet/compareAndSet: só um dos dois fica com ele. Usado pelo
+    // ThreadPoolExecutor em remove(Runnable), purge() e no shutdownNow
+    @Override
+    public boolean remove(Object o) {
+        if (o == null) {
+            return false;
+        }
+        long tail = positions.get(ENQUEUE);
+        for (long pos = positions.get(DEQUEUE); pos < tail; pos++) {
+            int index = (int) pos & mask;
+            E value = items.get(index);
+            if (value != null && sequences.getAcquire(index) == pos + 1 && o.equals(value)
+                    && items.compareAndSet(index, value, null)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // snapshot fracamente consistente; remoção só pela cabeça da fila
+    @Override
+    public Iterator<E> iterator() {
+        var snapshot = new ArrayList<E>(size());
+        long head = positions.get(DEQUEUE);
+        long tail = positions.get(ENQUEUE);
+
+        for (long pos = head; pos < tail; pos++) {
+            int index = (int) pos & mask;
+            E value = items.get(index);
+            if (sequences.getAcquire(index) == pos + 1 && value != null) {
+                snapshot.add(value);
+            }
+        }
+
+        var iterator = snapshot.iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public E next() {
+                return iterator.next();
+            }
+        };
+    }
+}
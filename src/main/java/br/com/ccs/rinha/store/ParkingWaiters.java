@@ -0,0 +1,81 @@
+package br.com.ccs.rinha.store;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+// Consumidores estacionados de uma fila lock-free. Com virtual threads o park desmonta a carrier,
+// então a espera não segura CPU; o produtor só paga o unpark quando há alguém esperando.
+final class ParkingWaiters {
+
+    // com 0.6 de CPU cada volta vazia custa caro: poucas voltas por padrão, ajustáveis por QUEUE_SPINS/QUEUE_YIELDS
+    static final int DEFAULT_SPINS = env("QUEUE_SPINS", 8);
+    static final int DEFAULT_YIELDS = env("QUEUE_YIELDS", 2);
+
+    private final ConcurrentLinkedQueue<Thread> parked = new ConcurrentLinkedQueue<>();
+    private final int spins;
+    private final int yields;
+
+    ParkingWaiters(int spins, int yields) {
+        this.spins = spins;
+        this.yields = yields;
+    }
+
+    private static int env(String name, int fallback) {
+        var value = System.getenv(name);
+        return value == null ? fallback : Integer.parseInt(value);
+    }
+
+    // o consumidor se registra e só então reconfere a fila; o produtor publica o item e só então olha a lista.
+    // É o padrão de Dekker: cada lado grava e depois lê o que o outro gravou, e gravação release seguida de
+    // leitura não é barreira StoreLoad (nem no x86). Sem o fullFence dos dois lados o consumidor pode não ver
+    // o item e o produtor não ver o consumidor, que estaciona com item na fila
+    void enlist() {
+        parked.offer(Thread.currentThread());
+        VarHandle.fullFence();
+    }
+
+    // false quando um produtor já tirou esta thread da lista para acordá-la
+    boolean delist() {
+        return parked.remove(Thread.currentThread());
+    }
+
+    // spin curto e depois yield antes de estacionar: com pouca CPU o yield deixa o produtor acumular
+    // itens em vez de pagar um unpark por mensagem
+    int rounds() {
+        return spins + yields;
+    }
+
+    void backoff(int round) {
+        if (round < spins) {
+            Thread.onSpinWait();
+        } else {
+            Thread.yield();
+        }
+    }
+
+    void signal() {
+        VarHandle.fullFence();
+        if (parked.isEmpty()) {
+            return;
+        }
+        var thread = parked.poll();
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    void signalAll() {
+        Thread thread;
+        while ((thread = parked.poll()) != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    // saiu sem consumir o item do sinal recebido: repassa para o próximo
+    void leave() {
+        if (!delist()) {
+            signal();
+        }
+    }
+}
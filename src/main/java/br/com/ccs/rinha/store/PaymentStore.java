@@ -0,0 +1,107 @@
+package br.com.ccs.rinha.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+// Pagamentos em struct-of-arrays: as filas trafegam apenas o índice do slot.
+// O slot é alocado na ingestão e devolvido depois de persistido (ou descartado).
+@Component
+public class PaymentStore {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentStore.class);
+    // maior corpo possível: 17 + 36 (uuid) + 11 + 21 (amount) + 16 + 24 (timestamp) + 2
+    public static final int PAYLOAD_SIZE = 128;
+
+    public final long[] correlationIdMsb;
+    public final long[] correlationIdLsb;
+    public final long[] amountCents;
+    // carimbado uma única vez, no primeiro envio ao processor; 0 enquanto o pagamento não saiu
+    public final long[] requestedAtMillis;
+    public final long[] receivedAtMillis;
+    // instante em que o slot entrou na fila atual, para medir espera
+    public final long[] enqueuedAtNanos;
+    public final boolean[] isDefault;
+    public final int[] attempts;
+    // segmento do IntakeJournal com o registro ainda aberto do slot, -1 sem registro
+    public final int[] journalSegment;
+    // corpo do POST ao processor renderizado na região do slot (PAYLOAD_SIZE bytes), reaproveitada entre pagamentos
+    public final byte[] payload;
+
+    private final IntBlockingQueue free;
+
+    public PaymentStore(@Value("${PAYMENT_STORE_CAPACITY:16384}") int capacity) {
+        this.correlationIdMsb = new long[capacity];
+        this.correlationIdLsb = new long[capacity];
+        this.amountCents = new long[capacity];
+        this.requestedAtMillis = new long[capacity];
+        this.receivedAtMillis = new long[capacity];
+        this.enqueuedAtNanos = new long[capacity];
+        this.isDefault = new boolean[capacity];
+        this.attempts = new int[capacity];
+        this.journalSegment = new int[capacity];
+        this.payload = new byte[capacity * PAYLOAD_SIZE];
+        this.free = new IntBlockingQueue(capacity);
+
+        for (int slot = 0; slot < capacity; slot++) {
+            free.offer(slot);
+        }
+
+        log.info("Payment store capacity: {}", capacity);
+    }
+
+    // IntBlockingQueue.EMPTY quando todos os slots estão em uso
+    public int allocate() {
+        int slot = free.poll();
+        if (slot != IntBlockingQueue.EMPTY) {
+            attempts[slot] = 0;
+            requestedAtMillis[slot] = 0;
+            journalSegment[slot] = -1;
+        }
+        return slot;
+    }
+
+    public void release(int slot) {
+        free.offer(slot);
+    }
+
+    public int available() {
+        return free.size();
+    }
+
+    public int capacity() {
+        return amountCents.length;
+    }
+
+    // devolve para a fila livre todos os slots pendentes em uma fila descartada
+    public void releaseAll(IntBlockingQueue queue) {
+        for (int slot = queue.poll(); slot != IntBlockingQueue.EMPTY; slot = queue.poll()) {
+            release(slot);
+        }
+    }
+
+    public void releaseAll(int[] slots, int count) {
+        for (int i = 0; i < count; i++) {
+            release(slots[i]);
+        }
+    }
+
+    public UUID correlationId(int slot) {
+        return new UUID(correlationIdMsb[slot], correlationIdLsb[slot]);
+    }
+
+    public BigDecimal amount(int slot) {
+        return BigDecimal.valueOf(amountCents[slot], 2);
+    }
+
+    public OffsetDateTime requestedAt(int slot) {
+        return OffsetDateTime.ofInstant(Instant.ofEpochMilli(requestedAtMillis[slot]), ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,68 @@
+package br.com.ccs.rinha.api.codec;
+
+import br.com.ccs.rinha.api.model.output.PaymentSummary;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CentsJsonTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @ParameterizedTest
+    @CsvSource({
+            "0, 0.00",
+            "1, 0.01",
+            "9, 0.09",
+            "10, 0.10",
+            "99, 0.99",
+            "100, 1.00",
+            "1990, 19.90",
+            "-1, -0.01",
+            "-99, -0.99",
+            "-1990, -19.90",
+            "123456789012345, 1234567890123.45"})
+    void writesCentsWithTwoDecimals(long cents, String expected) throws Exception {
+        var summary = new PaymentSummary(new PaymentSummary.Summary(1, cents), PaymentSummary.Summary.EMPTY);
+
+        var json = mapper.writeValueAsString(summary);
+
+        assertThat(json).isEqualTo("{\"default\":{\"totalRequests\":1,\"totalAmount\":" + expected + "},"
+                + "\"fallback\":{\"totalRequests\":0,\"totalAmount\":0.00}}");
+        // o ingress sem Spring MVC escreve o mesmo JSON que o Jackson
+        assertThat(new String(PaymentJsonCodec.summary(summary), StandardCharsets.US_ASCII)).isEqualTo(json);
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "0, 0",
+            "0.00, 0",
+            "0.004, 0",
+            "0.005, 1",
+            "19.9, 1990",
+            "19.90, 1990",
+            "-0.005, -1",
+            "-19.90, -1990",
+            "1e2, 10000"})
+    void readsPeerAmountsWithHalfUp(String amount, long cents) throws Exception {
+        var json = "{\"default\":{\"totalRequests\":3,\"totalAmount\":" + amount + "},"
+                + "\"fallback\":{\"totalRequests\":0,\"totalAmount\":0}}";
+
+        var summary = mapper.readValue(json, PaymentSummary.class);
+
+        assertThat(summary._default()).isEqualTo(new PaymentSummary.Summary(3, cents));
+        assertThat(summary.fallback()).isEqualTo(PaymentSummary.Summary.EMPTY);
+    }
+
+    @Test
+    void roundTripsThroughJson() throws Exception {
+        var summary = new PaymentSummary(new PaymentSummary.Summary(7, 13_93), new PaymentSummary.Summary(2, -5));
+
+        assertThat(mapper.readValue(mapper.writeValueAsString(summary), PaymentSummary.class)).isEqualTo(summary);
+    }
+}
@@ -0,0 +1,121 @@
+package br.com.ccs.rinha.api.codec;
+
+import br.com.ccs.rinha.store.PaymentStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PaymentJsonCodecTest {
+
+    private static final UUID ID = UUID.fromString("4a7901b8-7d26-4d9d-aa19-4dc1c7cf60b3");
+
+    private final PaymentStore store = new PaymentStore(4);
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "19.90", "0", "0.0", "0.00", "0.01", "0.004", "0.005", "0.015", "0.995", "1", "1.1", "1.994", "1.995",
+            "99999999.99", "99999999.994", "-99999999.99", "-0.004", "-0.005", "-19.905", "-1", "1e2", "1E2",
+            "1.005e0", "2.5e-3", "1.23456e3", "-4.445e1", "9.999999999e7", "\"19.90\"", "\"0.125\""})
+    void parsesAmountLikeBigDecimalHalfUp(String amount) {
+        parse(amount);
+
+        assertThat(store.amountCents[0]).isEqualTo(expectedCents(amount));
+    }
+
+    @Test
+    void parsesRandomAmountsLikeBigDecimalHalfUp() {
+        var random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            var amount = BigDecimal.valueOf(random.nextLong(10_000_000_000L), random.nextInt(6)).toPlainString();
+            long expected = expectedCents(amount);
+            if (expected > PaymentJsonCodec.MAX_AMOUNT_CENTS) {
+                assertThatThrownBy(() -> parse(amount)).as(amount).isInstanceOf(IllegalArgumentException.class);
+                continue;
+            }
+            parse(amount);
+
+            assertThat(store.amountCents[0]).as(amount).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void parsesCorrelationIdAndIgnoresUnknownFields() {
+        var json = "{ \"extra\": {\"a\": [1, 2]}, \"amount\": 10.5, \"correlationId\": \"" + ID + "\" }";
+        var bytes = json.getBytes(StandardCharsets.US_ASCII);
+
+        PaymentJsonCodec.parse(bytes, 0, bytes.length, store, 1);
+
+        assertThat(store.correlationId(1)).isEqualTo(ID);
+        assertThat(store.amountCents[1]).isEqualTo(1050);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "{}", "{\"amount\":1}", "{\"correlationId\":\"x\",\"amount\":1}", "[1]"})
+    void rejectsInvalidPayloads(String json) {
+        var bytes = json.getBytes(StandardCharsets.US_ASCII);
+
+        assertThatThrownBy(() -> PaymentJsonCodec.parse(bytes, 0, bytes.length, store, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rendersProcessorPayloadWithTwoDecimals() {
+        store.correlationIdMsb[2] = ID.getMostSignificantBits();
+        store.correlationIdLsb[2] = ID.getLeastSignificantBits();
+        store.amountCents[2] = 1990;
+        store.requestedAtMillis[2] = 1_752_000_000_123L;
+
+        var payload = StandardCharsets.US_ASCII.decode(PaymentJsonCodec.payload(store, 2)).toString();
+
+        assertThat(payload).isEqualTo("{\"correlationId\":\"" + ID
+                + "\",\"amount\":19.90,\"requestedAt\":\"2025-07-08T18:40:00.123Z\"}");
+    }
+
+    @Test
+    void rendersPayloadInsideTheSlotRegion() {
+        store.correlationIdMsb[1] = -1;
+        store.correlationIdLsb[1] = -1;
+        store.amountCents[1] = Long.MIN_VALUE + 1;
+        store.requestedAtMillis[1] = 253_402_300_799_999L;
+        store.amountCents[2] = 1;
+
+        var widest = PaymentJsonCodec.payload(store, 1);
+        var next = PaymentJsonCodec.payload(store, 2);
+
+        assertThat(widest.remaining()).isLessThanOrEqualTo(PaymentStore.PAYLOAD_SIZE);
+        assertThat(widest.position()).isEqualTo(PaymentStore.PAYLOAD_SIZE);
+        assertThat(StandardCharsets.US_ASCII.decode(widest).toString())
+                .contains("\"amount\":-92233720368547758.07,").endsWith("\"9999-12-31T23:59:59.999Z\"}");
+        assertThat(next.array()).isSameAs(store.payload);
+    }
+
+    // o que não cabe no DECIMAL(10,2) de payments vira 400 na entrada, não erro no banco depois de pago
+    @ParameterizedTest
+    @ValueSource(strings = {"1e30", "-1e30", "1e999999999", "92233720368547758.08", "-92233720368547758.08", "1e17",
+            "100000000", "-100000000", "99999999.995", "123456789012345.67", "1234567890123456", "1e8"})
+    void rejectsAmountsOutsideTheColumnRangeAsInvalidInput(String amount) {
+        assertThatThrownBy(() -> parse(amount)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private void parse(String amount) {
+        var bytes = ("{\"correlationId\":\"" + ID + "\",\"amount\":" + amount + "}").getBytes(StandardCharsets.US_ASCII);
+        PaymentJsonCodec.parse(bytes, 0, bytes.length, store, 0);
+    }
+
+    // o comportamento anterior: BigDecimal do Jackson arredondado para duas casas
+    private static long expectedCents(String amount) {
+        return new BigDecimal(amount.replace("\"", ""))
+                .setScale(2, RoundingMode.HALF_UP)
+                .unscaledValue()
+                .longValueExact();
+    }
+}
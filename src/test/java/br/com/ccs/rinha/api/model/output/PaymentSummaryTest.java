@@ -0,0 +1,59 @@
+package br.com.ccs.rinha.api.model.output;
+
+import br.com.ccs.rinha.api.codec.PaymentJsonCodec;
+import br.com.ccs.rinha.store.PaymentStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PaymentSummaryTest {
+
+    // totais em centavos somados pagamento a pagamento contra a soma em BigDecimal de antes, no JSON final
+    @Test
+    void summedTotalsMatchBigDecimalSum() throws Exception {
+        var store = new PaymentStore(1);
+        var random = new Random(7);
+        var summary = PaymentSummary.EMPTY;
+        var expectedDefault = BigDecimal.ZERO.setScale(2);
+        var expectedFallback = BigDecimal.ZERO.setScale(2);
+
+        for (int i = 0; i < 50_000; i++) {
+            var amount = BigDecimal.valueOf(random.nextLong(100_000_000L), random.nextInt(5));
+            var json = "{\"correlationId\":\"" + UUID.randomUUID() + "\",\"amount\":" + amount.toPlainString() + "}";
+            var bytes = json.getBytes(StandardCharsets.US_ASCII);
+            PaymentJsonCodec.parse(bytes, 0, bytes.length, store, 0);
+
+            var rounded = amount.setScale(2, RoundingMode.HALF_UP);
+            var payment = new PaymentSummary.Summary(1, store.amountCents[0]);
+            if (random.nextBoolean()) {
+                summary = summary.plus(new PaymentSummary(payment, PaymentSummary.Summary.EMPTY));
+                expectedDefault = expectedDefault.add(rounded);
+            } else {
+                summary = summary.plus(new PaymentSummary(PaymentSummary.Summary.EMPTY, payment));
+                expectedFallback = expectedFallback.add(rounded);
+            }
+        }
+
+        var node = new ObjectMapper().readTree(PaymentJsonCodec.summary(summary));
+        assertThat(node.at("/default/totalAmount").decimalValue()).isEqualTo(expectedDefault);
+        assertThat(node.at("/fallback/totalAmount").decimalValue()).isEqualTo(expectedFallback);
+        assertThat(node.at("/default/totalRequests").asLong() + node.at("/fallback/totalRequests").asLong())
+                .isEqualTo(50_000);
+    }
+
+    @Test
+    void plusAddsCountsAndCentsPerProcessor() {
+        var a = new PaymentSummary(new PaymentSummary.Summary(1, 1990), new PaymentSummary.Summary(2, 5));
+        var b = new PaymentSummary(new PaymentSummary.Summary(3, 10), PaymentSummary.Summary.EMPTY);
+
+        assertThat(a.plus(b)).isEqualTo(
+                new PaymentSummary(new PaymentSummary.Summary(4, 2000), new PaymentSummary.Summary(2, 5)));
+    }
+}
@@ -0,0 +1,30 @@
+package br.com.ccs.rinha.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JdbcPaymentRepositoryTest {
+
+    // só erro de dado isola linhas; conexão, serialização e shutdown continuam no retry do lote
+    @Test
+    void onlyDataErrorsAreIsolated() {
+        assertThat(JdbcPaymentRepository.isDataError(new BatchUpdateException("overflow", "22003", new int[0]))).isTrue();
+        assertThat(JdbcPaymentRepository.isDataError(new SQLException("not null", "23502"))).isTrue();
+        assertThat(JdbcPaymentRepository.isDataError(new SQLException("broken pipe", "08006"))).isFalse();
+        assertThat(JdbcPaymentRepository.isDataError(new SQLException("serialization", "40001"))).isFalse();
+        assertThat(JdbcPaymentRepository.isDataError(new SQLException("admin shutdown", "57P01"))).isFalse();
+        assertThat(JdbcPaymentRepository.isDataError(new SQLTransientConnectionException("pool timeout"))).isFalse();
+    }
+
+    @Test
+    void stateComesFromTheCauseWhenTheWrapperHasNone() {
+        var wrapped = new SQLException("batch aborted", null, new SQLException("overflow", "22003"));
+
+        assertThat(JdbcPaymentRepository.isDataError(wrapped)).isTrue();
+    }
+}
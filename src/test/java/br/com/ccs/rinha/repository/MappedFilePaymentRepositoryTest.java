@@ -0,0 +1,81 @@
+package br.com.ccs.rinha.repository;
+
+import br.com.ccs.rinha.monitor.PipelineMetrics;
+import br.com.ccs.rinha.store.CorrelationIdSet;
+import br.com.ccs.rinha.store.IntakeJournal;
+import br.com.ccs.rinha.store.PaymentStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MappedFilePaymentRepositoryTest {
+
+    private static final long REQUESTED_AT = 1_752_000_000_000L;
+    private static final OffsetDateTime FROM = OffsetDateTime.ofInstant(Instant.ofEpochMilli(REQUESTED_AT - 1000), ZoneOffset.UTC);
+    private static final OffsetDateTime TO = OffsetDateTime.ofInstant(Instant.ofEpochMilli(REQUESTED_AT + 1000), ZoneOffset.UTC);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void summaryDecodesNegativeAmounts() throws Exception {
+        var store = new PaymentStore(4);
+        var repository = repository(store);
+
+        repository.appendBatch(new int[]{payment(store, -1990, true), payment(store, 500, false)}, 2);
+
+        var summary = repository.getSummary(FROM, TO);
+        assertThat(summary._default().totalCents()).isEqualTo(-1990);
+        assertThat(summary.fallback().totalCents()).isEqualTo(500);
+    }
+
+    // lote que falha ao abrir o próximo segmento é desfeito: o retry não duplica o que já tinha gravado
+    @Test
+    void failedBatchIsUndoneSoTheRetryDoesNotDuplicateRecords() throws Exception {
+        var store = new PaymentStore(4);
+        var repository = repository(store);
+        int slot = payment(store, 100, true);
+        int segmentRecords = 1024 * 1024 / MappedFilePaymentRepository.RECORD_SIZE;
+        int[] batch = new int[segmentRecords - 1];
+        Arrays.fill(batch, slot);
+        repository.appendBatch(batch, batch.length);
+
+        try (var files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+        assertThatThrownBy(() -> repository.appendBatch(new int[]{slot, slot}, 2)).isInstanceOf(NoSuchFileException.class);
+        assertThat(repository.getSummary(FROM, TO)._default().totalRequests()).isEqualTo(segmentRecords - 1);
+
+        Files.createDirectories(directory);
+        repository.appendBatch(new int[]{slot, slot}, 2);
+        assertThat(repository.getSummary(FROM, TO)._default().totalRequests()).isEqualTo(segmentRecords + 1);
+    }
+
+    private MappedFilePaymentRepository repository(PaymentStore store) throws Exception {
+        var journal = new IntakeJournal(store, new CorrelationIdSet(64), new PipelineMetrics(), false, "", 0, 0);
+        return new MappedFilePaymentRepository(store, journal, new PipelineMetrics(), directory.toString(), 1, 500);
+    }
+
+    private static int payment(PaymentStore store, long cents, boolean isDefault) {
+        int slot = store.allocate();
+        store.correlationIdMsb[slot] = slot + 1;
+        store.correlationIdLsb[slot] = slot + 1;
+        store.amountCents[slot] = cents;
+        store.requestedAtMillis[slot] = REQUESTED_AT;
+        store.isDefault[slot] = isDefault;
+        return slot;
+    }
+}
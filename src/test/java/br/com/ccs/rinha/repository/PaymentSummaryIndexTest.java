@@ -0,0 +1,135 @@
+package br.com.ccs.rinha.repository;
+
+import br.com.ccs.rinha.api.model.output.PaymentSummary;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PaymentSummaryIndexTest {
+
+    private record Payment(long at, long cents, boolean isDefault) {
+    }
+
+    @Test
+    void answersRangesInsideTheWindow() {
+        var index = new PaymentSummaryIndex(true, 1, 1);
+        long now = System.currentTimeMillis() + 10;
+
+        index.add(now, 1990, true);
+        index.add(now + 1, 500, false);
+        index.add(now + 2, 10, true);
+
+        assertThat(index.getSummary(at(now), at(now + 1))).isEqualTo(
+                new PaymentSummary(new PaymentSummary.Summary(1, 1990), new PaymentSummary.Summary(1, 500)));
+        assertThat(index.getSummary(at(now), at(now + 60_000))).isEqualTo(
+                new PaymentSummary(new PaymentSummary.Summary(2, 2000), new PaymentSummary.Summary(1, 500)));
+    }
+
+    @Test
+    void slidesInsteadOfGivingUpAfterTheWindow() {
+        var index = new PaymentSummaryIndex(true, 1, 1);
+        long now = System.currentTimeMillis() + 10;
+
+        index.add(now, 100, true);
+        index.add(now + 5_000, 200, true);
+        index.add(now + 5_400, 300, false);
+
+        // o começo saiu da janela: repositório
+        assertThat(index.getSummary(at(now), at(now + 6_000))).isNull();
+        assertThat(index.covers(at(now + 4_500), at(now + 6_000))).isTrue();
+        assertThat(index.getSummary(at(now + 4_500), at(now + 6_000))).isEqualTo(
+                new PaymentSummary(new PaymentSummary.Summary(1, 200), new PaymentSummary.Summary(1, 300)));
+    }
+
+    @Test
+    void latePaymentOutsideTheWindowOnlyBlocksRangesThatContainIt() {
+        var index = new PaymentSummaryIndex(true, 1, 1);
+        long now = System.currentTimeMillis() + 10;
+
+        index.add(now + 5_000, 200, true);
+        index.add(now + 3_000, 999, true);
+        index.add(now + 5_100, 300, true);
+
+        assertThat(index.getSummary(at(now + 4_200), at(now + 5_200))).isEqualTo(
+                new PaymentSummary(new PaymentSummary.Summary(2, 500), PaymentSummary.Summary.EMPTY));
+        assertThat(index.getSummary(at(now + 2_000), at(now + 5_200))).isNull();
+    }
+
+    @Test
+    void rangesBeforeTheResetGoToTheRepository() {
+        var index = new PaymentSummaryIndex(true, 1, 120);
+        long now = System.currentTimeMillis();
+
+        assertThat(index.getSummary(at(now - 60_000), at(now + 1_000))).isNull();
+    }
+
+    @Test
+    void largerBucketsOnlyAnswerAlignedRanges() {
+        var index = new PaymentSummaryIndex(true, 10, 1);
+        long base = (System.currentTimeMillis() / 10 + 2) * 10;
+
+        index.add(base + 3, 100, true);
+        index.add(base + 12, 200, true);
+
+        assertThat(index.getSummary(at(base), at(base + 9))).isEqualTo(
+                new PaymentSummary(new PaymentSummary.Summary(1, 100), PaymentSummary.Summary.EMPTY));
+        assertThat(index.getSummary(at(base + 5), at(base + 19))).isNull();
+        assertThat(index.getSummary(at(base), at(base + 15))).isNull();
+    }
+
+    // eviction bucket a bucket e remontagem da árvore depois de uma pausa longa, contra a soma direta
+    @Test
+    void matchesBruteForceWhileSliding() {
+        var index = new PaymentSummaryIndex(true, 1, 5);
+        var random = new Random(11);
+        var payments = new ArrayList<Payment>();
+        long start = System.currentTimeMillis();
+        long lost = start;
+        long head = start + 10;
+
+        for (int i = 0; i < 20_000; i++) {
+            long step = random.nextInt(100) == 0 ? 1_000 + random.nextInt(3_000) : random.nextInt(3);
+            head += step;
+            // atrasados dentro da janela também entram
+            long at = head - random.nextInt(50);
+            var payment = new Payment(at, random.nextInt(100_000), random.nextBoolean());
+            index.add(payment.at, payment.cents, payment.isDefault);
+            if (at <= head - 5_000) {
+                lost = Math.max(lost, at);
+            } else {
+                payments.add(payment);
+            }
+
+            // só depois que qualquer from já passou do reset, que o teste não sabe em qual ms caiu
+            if (i % 97 == 0 && head - 6_200 > start) {
+                long to = head - random.nextInt(100);
+                long from = to - random.nextInt(6_000);
+                var expected = from > head - 5_000 && from > lost ? sum(payments, from, to) : null;
+                assertThat(index.getSummary(at(from), at(to))).as("[%d, %d]", from, to).isEqualTo(expected);
+            }
+        }
+    }
+
+    private static PaymentSummary sum(Iterable<Payment> payments, long from, long to) {
+        long[] totals = new long[4];
+        for (var payment : payments) {
+            if (payment.at >= from && payment.at <= to) {
+                int field = payment.isDefault ? 0 : 2;
+                totals[field]++;
+                totals[field + 1] += payment.cents;
+            }
+        }
+        return new PaymentSummary(new PaymentSummary.Summary(totals[0], totals[1]),
+                new PaymentSummary.Summary(totals[2], totals[3]));
+    }
+
+    private static OffsetDateTime at(long epochMillis) {
+        return OffsetDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,186 @@
+package br.com.ccs.rinha.service;
+
+import br.com.ccs.rinha.api.model.output.PaymentSummary;
+import br.com.ccs.rinha.monitor.PipelineMetrics;
+import br.com.ccs.rinha.repository.PaymentRepository;
+import br.com.ccs.rinha.service.AdmissionLimiter.Decision;
+import br.com.ccs.rinha.store.PaymentStore;
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdmissionLimiterTest {
+
+    // latências em segundos: o corte vale uma vez por latência e o teste nunca fica parado tanto tempo
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final PaymentStore store = new PaymentStore(100);
+    private final Backlog repository = new Backlog(100);
+
+    @Test
+    void throttlesAboveTheLimitUntilAPaymentLeaves() {
+        var limiter = limiter(3);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(limiter.tryAcquire()).isEqualTo(Decision.ACCEPTED);
+        }
+        assertThat(limiter.tryAcquire()).isEqualTo(Decision.THROTTLED);
+        assertThat(limiter.inFlight()).isEqualTo(3);
+
+        limiter.release();
+        assertThat(limiter.tryAcquire()).isEqualTo(Decision.ACCEPTED);
+    }
+
+    // menos de 10% do store livre satura; exatamente 10% ainda aceita
+    @Test
+    void saturatesWhenTheStoreHasLessThanTenPercentFree() {
+        var limiter = limiter(20);
+        for (int i = 0; i < 90; i++) {
+            store.allocate();
+        }
+        assertThat(limiter.tryAcquire()).isEqualTo(Decision.ACCEPTED);
+
+        store.allocate();
+        assertThat(limiter.tryAcquire()).isEqualTo(Decision.SATURATED);
+        assertThat(limiter.inFlight()).isEqualTo(1);
+    }
+
+    @Test
+    void saturatesWhenTheRepositoryBacklogReachesNinetyPercent() {
+        var limiter = limiter(20);
+        repository.backlog = 89;
+        assertThat(limiter.tryAcquire()).isEqualTo(Decision.ACCEPTED);
+
+        repository.backlog = 90;
+        assertThat(limiter.tryAcquire()).isEqualTo(Decision.SATURATED);
+
+        repository.backlog = 0;
+        assertThat(limiter.tryAcquire()).isEqualTo(Decision.ACCEPTED);
+    }
+
+    // saturação tem prioridade: nem um limite folgado aceita com o repositório cheio
+    @Test
+    void saturationWinsOverThrottling() {
+        var limiter = limiter(1);
+        limiter.tryAcquire();
+        repository.backlog = 100;
+
+        assertThat(limiter.tryAcquire()).isEqualTo(Decision.SATURATED);
+    }
+
+    // +1/limit por sucesso, só com pelo menos metade do limite em uso
+    @Test
+    void growsAdditivelyOnlyWhileTheLimitIsInUse() {
+        var limiter = limiter(10);
+        samples(limiter, true, SECOND, 30);
+        assertThat(limiter.limit()).isEqualTo(10);
+
+        acquire(limiter, 10);
+        samples(limiter, true, SECOND, 30);
+        assertThat(limiter.limit()).isEqualTo(12);
+    }
+
+    @Test
+    void growthStopsAtTheMaximum() {
+        var limiter = limiter(19);
+        acquire(limiter, 19);
+
+        samples(limiter, true, SECOND, 1000);
+        assertThat(limiter.limit()).isEqualTo(20);
+    }
+
+    // falha corta multiplicativamente uma vez por latência observada, sem passar do mínimo
+    @Test
+    void failuresCutMultiplicativelyOncePerLatency() {
+        var limiter = limiter(10);
+
+        samples(limiter, false, SECOND, 5);
+        assertThat(limiter.limit()).isEqualTo(9);
+
+        limiter.onSample(false, 0);
+        assertThat(limiter.limit()).isEqualTo(8);
+
+        samples(limiter, false, 0, 50);
+        assertThat(limiter.limit()).isEqualTo(2);
+    }
+
+    // uma amostra lenta isolada é jitter; a média curta passando de 2x a longa é fila
+    @Test
+    void cutsWhenTheShortAverageLatencyOutgrowsTheLongOne() {
+        var limiter = limiter(10);
+        samples(limiter, true, SECOND, 300);
+
+        limiter.onSample(true, 3 * SECOND);
+        assertThat(limiter.limit()).isEqualTo(10);
+
+        samples(limiter, true, 5 * SECOND, 20);
+        assertThat(limiter.limit()).isEqualTo(9);
+    }
+
+    @Test
+    void disabledLimiterAcceptsEverything() {
+        var limiter = new AdmissionLimiter(store, repository, new PipelineMetrics(), false, 1, 1, 1, 2.0, 0.9, 90);
+        repository.backlog = 100;
+
+        assertThat(limiter.tryAcquire()).isEqualTo(Decision.ACCEPTED);
+        assertThat(limiter.tryAcquire()).isEqualTo(Decision.ACCEPTED);
+        samples(limiter, false, 0, 10);
+        assertThat(limiter.limit()).isEqualTo(1);
+    }
+
+    private AdmissionLimiter limiter(int initialLimit) {
+        return new AdmissionLimiter(store, repository, new PipelineMetrics(), true, initialLimit, 2, 20, 2.0, 0.9, 90);
+    }
+
+    private static void acquire(AdmissionLimiter limiter, int count) {
+        for (int i = 0; i < count; i++) {
+            limiter.acquire();
+        }
+    }
+
+    private static void samples(AdmissionLimiter limiter, boolean success, long latencyNanos, int count) {
+        for (int i = 0; i < count; i++) {
+            limiter.onSample(success, latencyNanos);
+        }
+    }
+
+    private static final class Backlog implements PaymentRepository {
+        private final int capacity;
+        private int backlog;
+
+        private Backlog(int capacity) {
+            this.capacity = capacity;
+        }
+
+        @Override
+        public void saveAsync(int slot) {
+        }
+
+        @Override
+        public boolean trySaveAsync(int slot) {
+            return true;
+        }
+
+        @Override
+        public PaymentSummary getSummary(OffsetDateTime from, OffsetDateTime to) {
+            return PaymentSummary.EMPTY;
+        }
+
+        @Override
+        public void purge() {
+        }
+
+        @Override
+        public int backlog() {
+            return backlog;
+        }
+
+        @Override
+        public int backlogCapacity() {
+            return capacity;
+        }
+    }
+}
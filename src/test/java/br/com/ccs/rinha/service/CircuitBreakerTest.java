@@ -0,0 +1,88 @@
+package br.com.ccs.rinha.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CircuitBreakerTest {
+
+    private static final long MS = 1_000_000;
+
+    @Test
+    void opensWhenFailureRatePassesTheLimit() {
+        var breaker = new CircuitBreaker("test", 10, 4, 50, 0, 60_000 * MS);
+
+        for (int i = 0; i < 4; i++) {
+            breaker.record(breaker.tryAcquire(), i % 2 == 0, MS);
+        }
+
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire()).isEqualTo(CircuitBreaker.REJECTED);
+    }
+
+    // chamadas que começaram fechado e terminam depois do half-open não decidem no lugar da prova
+    @Test
+    void onlyTheProbeDecidesHalfOpen() {
+        var breaker = new CircuitBreaker("test", 10, 2, 50, 0, 0);
+        long stale = breaker.tryAcquire();
+        long late = breaker.tryAcquire();
+        breaker.record(breaker.tryAcquire(), false, MS);
+        breaker.record(breaker.tryAcquire(), false, MS);
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        long probe = breaker.tryAcquire();
+        assertThat(probe).isNotIn(CircuitBreaker.REJECTED, CircuitBreaker.PERMITTED);
+        assertThat(breaker.tryAcquire()).isEqualTo(CircuitBreaker.REJECTED);
+
+        breaker.record(stale, true, MS);
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        breaker.record(late, false, MS);
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+
+        breaker.record(probe, true, MS);
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void failedProbeOpensAgainAndOldProbeIsIgnoredAfterwards() {
+        var breaker = new CircuitBreaker("test", 10, 1, 50, 0, 0);
+        breaker.record(breaker.tryAcquire(), false, MS);
+
+        long first = breaker.tryAcquire();
+        breaker.record(first, false, MS);
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        long second = breaker.tryAcquire();
+        breaker.record(first, true, MS);
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        breaker.record(second, true, MS);
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    // a chamada lenta conta como falha mas a latência dela entra no p95
+    @Test
+    void p95IncludesSlowCalls() {
+        var breaker = new CircuitBreaker("test", 20, 10, 100, 50 * MS, 60_000 * MS);
+
+        for (int i = 0; i < 18; i++) {
+            breaker.record(CircuitBreaker.PERMITTED, true, 10 * MS);
+        }
+        breaker.record(CircuitBreaker.PERMITTED, true, 200 * MS);
+        breaker.record(CircuitBreaker.PERMITTED, true, 300 * MS);
+
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(breaker.p95Nanos()).isEqualTo(200 * MS);
+    }
+
+    @Test
+    void p95IgnoresErrorsAndNeedsMinimumSamples() {
+        var breaker = new CircuitBreaker("test", 20, 5, 100, 0, 60_000 * MS);
+
+        for (int i = 0; i < 4; i++) {
+            breaker.record(CircuitBreaker.PERMITTED, true, 10 * MS);
+            breaker.record(CircuitBreaker.PERMITTED, false, 900 * MS);
+        }
+
+        assertThat(breaker.p95Nanos()).isZero();
+    }
+}
@@ -0,0 +1,123 @@
+package br.com.ccs.rinha.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConcurrencyWindowTest {
+
+    private static final long MS = 1_000_000;
+
+    @Test
+    void timedAcquireGivesUpWhenTheWindowStaysFull() throws Exception {
+        var window = new ConcurrencyWindow("test", 2, 1, 4, 2, 4);
+
+        assertThat(window.tryAcquire()).isTrue();
+        assertThat(window.tryAcquire(1, TimeUnit.MILLISECONDS)).isTrue();
+        assertThat(window.tryAcquire(5, TimeUnit.MILLISECONDS)).isFalse();
+        assertThat(window.inFlight()).isEqualTo(2);
+    }
+
+    // quem espera vaga acorda com a liberação de outra chamada
+    @Test
+    void timedAcquireWakesUpOnRelease() throws Exception {
+        var window = new ConcurrencyWindow("test", 1, 1, 4, 2, 4);
+        window.acquire();
+
+        Thread.ofVirtual().start(() -> {
+            try {
+                TimeUnit.MILLISECONDS.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            window.release();
+        });
+
+        assertThat(window.tryAcquire(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(window.inFlight()).isEqualTo(1);
+    }
+
+    // ociosa a janela não aprende nada; meio cheia cresce até deixar de estar em uso
+    @Test
+    void growsOnlyWhileTheWindowIsInUse() {
+        var window = new ConcurrencyWindow("test", 4, 1, 100, 2, 4);
+
+        samples(window, true, 100 * MS, 100);
+        assertThat(window.limit()).isEqualTo(4);
+
+        full(window, 3);
+        samples(window, true, 100 * MS, 100);
+        assertThat(window.limit()).isEqualTo(6);
+    }
+
+    // fila estimada = limit x (1 - min/rtt): entre alpha e beta segura, acima de beta encolhe até voltar a beta,
+    // abaixo de alpha cresce
+    @Test
+    void holdsBetweenAlphaAndBetaAndMovesOutsideThem() {
+        var window = full(new ConcurrencyWindow("test", 10, 1, 100, 2, 4), 10);
+        window.onSample(true, 100 * MS);
+
+        samples(window, true, 143 * MS, 100);
+        assertThat(window.limit()).isEqualTo(10);
+
+        samples(window, true, 200 * MS, 100);
+        assertThat(window.limit()).isEqualTo(8);
+
+        samples(window, true, 100 * MS, 25);
+        assertThat(window.limit()).isEqualTo(10);
+    }
+
+    // processor mais lento de vez: a mínima sobe devagar até a latência nova deixar de parecer fila
+    @Test
+    void minRttDriftsUpToAPermanentlySlowerProcessor() {
+        var window = full(new ConcurrencyWindow("test", 20, 1, 20, 2, 4), 20);
+        window.onSample(true, 10 * MS);
+
+        samples(window, true, 20 * MS, 300);
+        assertThat(window.limit()).isEqualTo(8);
+
+        samples(window, true, 20 * MS, 30_000);
+        assertThat(window.limit()).isEqualTo(20);
+    }
+
+    @Test
+    void minRttDropsAtOnce() {
+        var window = full(new ConcurrencyWindow("test", 20, 1, 20, 2, 4), 20);
+        samples(window, true, 20 * MS, 100);
+        assertThat(window.limit()).isEqualTo(20);
+
+        window.onSample(true, 5 * MS);
+        samples(window, true, 20 * MS, 50);
+        assertThat(window.limit()).isLessThan(20);
+    }
+
+    // rajada de falhas dentro de uma latência corta uma vez só
+    @Test
+    void failuresDecreaseOncePerRtt() {
+        var window = new ConcurrencyWindow("test", 10, 1, 100, 2, 4);
+
+        samples(window, false, TimeUnit.SECONDS.toNanos(1), 5);
+        assertThat(window.limit()).isEqualTo(9);
+
+        window.onSample(false, 0);
+        assertThat(window.limit()).isEqualTo(8);
+
+        samples(window, false, 0, 20);
+        assertThat(window.limit()).isEqualTo(1);
+    }
+
+    private static ConcurrencyWindow full(ConcurrencyWindow window, int inFlight) {
+        for (int i = 0; i < inFlight; i++) {
+            assertThat(window.tryAcquire()).isTrue();
+        }
+        return window;
+    }
+
+    private static void samples(ConcurrencyWindow window, boolean success, long rttNanos, int count) {
+        for (int i = 0; i < count; i++) {
+            window.onSample(success, rttNanos);
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package br.com.ccs.rinha.service;
+
+import br.com.ccs.rinha.service.PipelinedProcessorClient.Outcome;
+import br.com.ccs.rinha.service.PipelinedProcessorClient.ResponseReader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Timeout(30)
+class PipelinedProcessorClientTest {
+
+    private static final String RESPONSES = "HTTP/1.1 200 OK\r\nContent-Length: 5\r\n\r\nhello"
+            + "HTTP/1.1 500 Internal Server Error\r\nTransfer-Encoding: chunked\r\n\r\n"
+            + "4;ext=1\r\nfail\r\n3\r\nure\r\n0\r\nX-Trailer: t\r\n\r\n"
+            + "HTTP/1.1 204 No Content\r\nCONNECTION: Close\r\n\r\n";
+
+    private final ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor();
+    private ScriptedProcessor processor;
+
+    @BeforeEach
+    void start() throws IOException {
+        processor = new ScriptedProcessor();
+    }
+
+    @AfterEach
+    void stop() throws IOException {
+        processor.close();
+        callers.shutdownNow();
+    }
+
+    // um byte por read obriga cada parte da resposta a atravessar o fill()
+    @Test
+    void readsContentLengthChunkedAndConnectionCloseAcrossReads() throws IOException {
+        for (int step : new int[]{1, 7, 8192}) {
+            var reader = new ResponseReader(new ScriptedChannel(RESPONSES, step));
+
+            assertThat(reader.readResponse()).isEqualTo(200);
+            assertThat(reader.closeRequested).isFalse();
+            assertThat(reader.readResponse()).isEqualTo(500);
+            assertThat(reader.closeRequested).isFalse();
+            assertThat(reader.readResponse()).isEqualTo(204);
+            assertThat(reader.closeRequested).isTrue();
+            assertThatThrownBy(reader::readResponse).isInstanceOf(EOFException.class);
+        }
+    }
+
+    @Test
+    void rejectsTruncatedStatusLine() {
+        var reader = new ResponseReader(new ScriptedChannel("HTTP/1.1\r\n\r\n", 64));
+
+        assertThatThrownBy(reader::readResponse).isInstanceOf(IOException.class);
+    }
+
+    // respostas voltam na ordem de envio, cada uma para a sua requisição, qualquer que seja o enquadramento
+    @Test
+    void matchesPipelinedResponsesInOrder() throws Exception {
+        var client = processor.client(4);
+        var a = post(client, "a", 5000);
+        var b = post(client, "b", 5000);
+        var c = post(client, "c", 5000);
+
+        processor.accept();
+        var responses = new StringBuilder();
+        for (String body : processor.requests(3)) {
+            responses.append(switch (body) {
+                case "a" -> "HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok";
+                case "b" -> "HTTP/1.1 422 Unprocessable\r\nTransfer-Encoding: chunked\r\n\r\n2\r\nno\r\n0\r\n\r\n";
+                default -> "HTTP/1.1 201 Created\r\nContent-Length: 0\r\n\r\n";
+            });
+        }
+        processor.respond(responses.toString());
+
+        assertThat(a.get(5, TimeUnit.SECONDS)).isEqualTo(Outcome.SUCCEEDED);
+        assertThat(b.get(5, TimeUnit.SECONDS)).isEqualTo(Outcome.FAILED);
+        assertThat(c.get(5, TimeUnit.SECONDS)).isEqualTo(Outcome.SUCCEEDED);
+    }
+
+    @Test
+    void reconnectsAfterConnectionClose() throws Exception {
+        var client = processor.client(4);
+        var first = post(client, "1", 5000);
+        processor.accept();
+        assertThat(processor.requests(1)).containsExactly("1");
+        processor.respond("HTTP/1.1 200 OK\r\nConnection: close\r\nContent-Length: 0\r\n\r\n");
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo(Outcome.SUCCEEDED);
+
+        var second = post(client, "2", 5000);
+        processor.accept();
+        assertThat(processor.requests(1)).containsExactly("2");
+        processor.respond("HTTP/1.1 200 OK\r\nContent-Length: 0\r\n\r\n");
+        assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo(Outcome.SUCCEEDED);
+    }
+
+    // desistência antes do write não é escrita nem conta como falha; depois do write a resposta tardia é descartada
+    @Test
+    void abandonedExchangesKeepResponsesAligned() throws Exception {
+        var client = processor.client(1);
+        var first = post(client, "first", 5000);
+        processor.accept();
+        assertThat(processor.requests(1)).containsExactly("first");
+
+        assertThat(client.post(body("queued"), 100)).isEqualTo(Outcome.NOT_SENT);
+        processor.respond("HTTP/1.1 200 OK\r\nContent-Length: 0\r\n\r\n");
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo(Outcome.SUCCEEDED);
+
+        var late = post(client, "late", 500);
+        assertThat(processor.requests(1)).containsExactly("late");
+        assertThat(late.get(5, TimeUnit.SECONDS)).isEqualTo(Outcome.FAILED);
+        processor.respond("HTTP/1.1 500 Internal Server Error\r\nContent-Length: 0\r\n\r\n");
+
+        var next = post(client, "next", 5000);
+        assertThat(processor.requests(1)).containsExactly("next");
+        processor.respond("HTTP/1.1 200 OK\r\nContent-Length: 0\r\n\r\n");
+        assertThat(next.get(5, TimeUnit.SECONDS)).isEqualTo(Outcome.SUCCEEDED);
+    }
+
+    // fila local cheia devolve na hora, sem esperar o timeout e sem virar falha do processor
+    @Test
+    void fullLocalQueueIsNotSent() throws Exception {
+        var client = processor.client(1);
+        post(client, "held", 10_000);
+        processor.accept();
+        assertThat(processor.requests(1)).containsExactly("held");
+        for (int i = 0; i < 5; i++) {
+            post(client, "waiting-" + i, 10_000);
+        }
+        TimeUnit.MILLISECONDS.sleep(200);
+
+        long start = System.nanoTime();
+        assertThat(client.post(body("overflow"), 10_000)).isEqualTo(Outcome.NOT_SENT);
+        assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(5));
+    }
+
+    private CompletableFuture<Outcome> post(PipelinedProcessorClient client, String payload, long timeoutMillis) {
+        return CompletableFuture.supplyAsync(() -> client.post(body(payload), timeoutMillis), callers);
+    }
+
+    private static ByteBuffer body(String payload) {
+        return ByteBuffer.wrap(payload.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static final class ScriptedChannel implements ReadableByteChannel {
+        private final byte[] bytes;
+        private final int step;
+        private int position;
+
+        private ScriptedChannel(String script, int step) {
+            this.bytes = script.getBytes(StandardCharsets.US_ASCII);
+            this.step = step;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            if (position == bytes.length) {
+                return -1;
+            }
+            int n = Math.min(Math.min(step, dst.remaining()), bytes.length - position);
+            dst.put(bytes, position, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    // processor de mentira: lê as requisições pipelined e devolve exatamente os bytes que o teste manda
+    private static final class ScriptedProcessor implements AutoCloseable {
+        private final ServerSocketChannel server;
+        private final List<SocketChannel> accepted = new ArrayList<>();
+        private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        private SocketChannel connection;
+        private String pending = "";
+
+        private ScriptedProcessor() throws IOException {
+            this.server = ServerSocketChannel.open().bind(new InetSocketAddress("127.0.0.1", 0));
+        }
+
+        private PipelinedProcessorClient client(int pipelineDepth) throws IOException {
+            var address = (InetSocketAddress) server.getLocalAddress();
+            return new PipelinedProcessorClient("test-processor", "http://127.0.0.1:" + address.getPort(), 1, pipelineDepth);
+        }
+
+        private void accept() throws IOException {
+            connection = server.accept();
+            accepted.add(connection);
+            pending = "";
+        }
+
+        private List<String> requests(int count) throws IOException {
+            var bodies = new ArrayList<String>();
+            while (bodies.size() < count) {
+                int headerEnd = pending.indexOf("\r\n\r\n");
+                if (headerEnd >= 0) {
+                    int length = contentLength(pending.substring(0, headerEnd));
+                    int end = headerEnd + 4 + length;
+                    if (pending.length() >= end) {
+                        bodies.add(pending.substring(headerEnd + 4, end));
+                        pending = pending.substring(end);
+                        continue;
+                    }
+                }
+
+                buffer.clear();
+                if (connection.read(buffer) < 0) {
+                    throw new EOFException("client closed the connection");
+                }
+                pending += new String(buffer.array(), 0, buffer.position(), StandardCharsets.US_ASCII);
+            }
+            return bodies;
+        }
+
+        private void respond(String raw) throws IOException {
+            var bytes = ByteBuffer.wrap(raw.getBytes(StandardCharsets.US_ASCII));
+            while (bytes.hasRemaining()) {
+                connection.write(bytes);
+            }
+        }
+
+        private static int contentLength(String head) {
+            for (String line : head.split("\r\n")) {
+                if (line.regionMatches(true, 0, "content-length:", 0, 15)) {
+                    return Integer.parseInt(line.substring(15).trim());
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (SocketChannel channel : accepted) {
+                channel.close();
+            }
+            server.close();
+        }
+    }
+}
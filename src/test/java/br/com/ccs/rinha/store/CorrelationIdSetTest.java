@@ -0,0 +1,133 @@
+package br.com.ccs.rinha.store;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CorrelationIdSetTest {
+
+    // capacidade 64 dá stripes de 8 posições, cheias o bastante para crescer e dar a volta no array
+    private static final int CAPACITY = 64;
+    private static final int STRIPE_MASK = 7;
+
+    @Test
+    void acceptsAnIdOnceUntilItIsReleased() {
+        var ids = new CorrelationIdSet(CAPACITY);
+
+        assertThat(ids.acquire(1, 2)).isTrue();
+        assertThat(ids.acquire(1, 2)).isFalse();
+        ids.release(1, 2);
+        assertThat(ids.acquire(1, 2)).isTrue();
+        assertThat(ids.size()).isEqualTo(1);
+    }
+
+    // liquidado não sai no release: o reenvio do cliente continua sendo duplicado
+    @Test
+    void settlesOncePerProcessorAndSurvivesRelease() {
+        var ids = new CorrelationIdSet(CAPACITY);
+        ids.acquire(1, 2);
+
+        assertThat(ids.settle(1, 2, true)).isTrue();
+        assertThat(ids.settle(1, 2, true)).isFalse();
+        assertThat(ids.settle(1, 2, false)).isTrue();
+        ids.release(1, 2);
+        assertThat(ids.acquire(1, 2)).isFalse();
+
+        ids.clear();
+        assertThat(ids.size()).isZero();
+        assertThat(ids.acquire(1, 2)).isTrue();
+    }
+
+    @Test
+    void keepsEveryIdAcrossGrowth() {
+        var ids = new CorrelationIdSet(CAPACITY);
+        for (long id = 0; id < 10_000; id++) {
+            assertThat(ids.acquire(id, ~id)).isTrue();
+            if (id % 3 == 0) {
+                assertThat(ids.settle(id, ~id, id % 2 == 0)).isTrue();
+            }
+        }
+
+        assertThat(ids.size()).isEqualTo(10_000);
+        for (long id = 0; id < 10_000; id++) {
+            assertThat(ids.acquire(id, ~id)).isFalse();
+            if (id % 3 == 0) {
+                assertThat(ids.settle(id, ~id, id % 2 == 0)).isFalse();
+            }
+        }
+    }
+
+    // remover da última posição puxa para trás, dando a volta, quem sondou até o início do array
+    @Test
+    void deleteShiftsProbeChainsAcrossTheWraparound() {
+        var ids = new CorrelationIdSet(CAPACITY);
+        var lastSlot = idsHomedAt(STRIPE_MASK, 2);
+        long removed = lastSlot.get(0);
+        long wrapped = lastSlot.get(1);
+        long firstSlot = idsHomedAt(0, 1).get(0);
+
+        ids.acquire(removed, 0);
+        ids.acquire(wrapped, 0);
+        ids.settle(wrapped, 0, true);
+        ids.acquire(firstSlot, 0);
+
+        ids.release(removed, 0);
+
+        assertThat(ids.size()).isEqualTo(2);
+        assertThat(ids.settle(wrapped, 0, true)).isFalse();
+        assertThat(ids.acquire(wrapped, 0)).isFalse();
+        assertThat(ids.acquire(firstSlot, 0)).isFalse();
+        assertThat(ids.acquire(removed, 0)).isTrue();
+    }
+
+    // sequência aleatória contra um HashMap: cobre crescimento e remoções no meio das cadeias
+    @Test
+    void matchesAModelUnderRandomOperations() {
+        var ids = new CorrelationIdSet(CAPACITY);
+        Map<Long, Integer> model = new HashMap<>();
+        var random = new Random(42);
+
+        for (int op = 0; op < 200_000; op++) {
+            long id = random.nextInt(2_000);
+            int state = model.getOrDefault(id, 0);
+            switch (random.nextInt(4)) {
+                case 0 -> {
+                    assertThat(ids.acquire(id, id)).isEqualTo((state & 1) == 0);
+                    model.put(id, state | 1);
+                }
+                case 1 -> {
+                    boolean isDefault = random.nextBoolean();
+                    int bit = isDefault ? 2 : 4;
+                    assertThat(ids.settle(id, id, isDefault)).isEqualTo((state & bit) == 0);
+                    model.put(id, state | bit);
+                }
+                default -> {
+                    ids.release(id, id);
+                    if (state == 1) {
+                        model.remove(id);
+                    }
+                }
+            }
+        }
+
+        assertThat(ids.size()).isEqualTo(model.size());
+    }
+
+    // ids do stripe 0 cuja posição inicial é home numa stripe ainda com 8 posições
+    private static List<Long> idsHomedAt(int home, int count) {
+        List<Long> found = new ArrayList<>();
+        for (long msb = 1; found.size() < count; msb++) {
+            long hash = CorrelationIdSet.hash(msb, 0);
+            if (hash >>> 58 == 0 && ((int) hash & STRIPE_MASK) == home) {
+                found.add(msb);
+            }
+        }
+        return found;
+    }
+}
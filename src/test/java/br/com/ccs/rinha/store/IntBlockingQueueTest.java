@@ -0,0 +1,45 @@
+package br.com.ccs.rinha.store;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IntBlockingQueueTest {
+
+    // o consumidor estacionado sem prazo volta vazio quando acordado, e o take comum continua esperando item
+    @Test
+    void wakeWaitersReleasesOnlyTheWakeableTake() throws Exception {
+        var queue = new IntBlockingQueue(4);
+        var wakeable = CompletableFuture.supplyAsync(() -> take(queue, true));
+        var plain = CompletableFuture.supplyAsync(() -> take(queue, false));
+        TimeUnit.MILLISECONDS.sleep(50);
+
+        queue.wakeWaiters();
+
+        assertThat(wakeable.get(5, TimeUnit.SECONDS)).isEqualTo(IntBlockingQueue.EMPTY);
+        TimeUnit.MILLISECONDS.sleep(50);
+        assertThat(plain).isNotDone();
+        assertThat(queue.offer(7)).isTrue();
+        assertThat(plain.get(5, TimeUnit.SECONDS)).isEqualTo(7);
+    }
+
+    @Test
+    void pollOrWakeStillReturnsItemsAndTimesOut() throws Exception {
+        var queue = new IntBlockingQueue(4);
+        queue.offer(3);
+
+        assertThat(queue.pollOrWake(1, TimeUnit.SECONDS)).isEqualTo(3);
+        assertThat(queue.pollOrWake(10, TimeUnit.MILLISECONDS)).isEqualTo(IntBlockingQueue.EMPTY);
+    }
+
+    private static int take(IntBlockingQueue queue, boolean wakeable) {
+        try {
+            return wakeable ? queue.takeOrWake() : queue.take();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
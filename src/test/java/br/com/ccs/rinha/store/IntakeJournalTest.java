@@ -0,0 +1,141 @@
+package br.com.ccs.rinha.store;
+
+import br.com.ccs.rinha.monitor.PipelineMetrics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IntakeJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysUnsentPaymentWithTheRequestedAtAlreadySent() throws Exception {
+        var store = new PaymentStore(8);
+        var journal = journal(store);
+        int dispatched = accept(store, journal, 1, 1990);
+        store.requestedAtMillis[dispatched] = 1_752_000_000_123L;
+        journal.dispatched(dispatched);
+        accept(store, journal, 2, 500);
+
+        var replayed = new Recorder(new PaymentStore(8), 2);
+        journal(replayed.store).replay(replayed);
+
+        assertThat(replayed.await()).isTrue();
+        assertThat(replayed.unsent).containsExactlyInAnyOrder("1:1990:1752000000123", "2:500:0");
+        assertThat(replayed.paid).isEmpty();
+    }
+
+    @Test
+    void paidAndPersistedPaymentsAreNotReplayedAsUnsent() throws Exception {
+        var store = new PaymentStore(8);
+        var journal = journal(store);
+        int paid = accept(store, journal, 1, 1990);
+        store.requestedAtMillis[paid] = 1_752_000_000_123L;
+        journal.dispatched(paid);
+        store.isDefault[paid] = true;
+        journal.paid(paid);
+        int persisted = accept(store, journal, 2, 500);
+        store.requestedAtMillis[persisted] = 1_752_000_000_200L;
+        journal.dispatched(persisted);
+        journal.paid(persisted);
+        journal.persisted(new int[]{persisted}, 1);
+
+        var replayed = new Recorder(new PaymentStore(8), 1);
+        journal(replayed.store).replay(replayed);
+
+        assertThat(replayed.await()).isTrue();
+        assertThat(replayed.unsent).isEmpty();
+        assertThat(replayed.paid).containsExactly("1:1990:1752000000123");
+    }
+
+    // centavos têm long próprio no registro: nem valor acima de 2^55 nem negativo perdem bits no replay
+    @Test
+    void replaysAmountsOutsideThePackedRangeIntact() throws Exception {
+        var store = new PaymentStore(8);
+        var journal = journal(store);
+        accept(store, journal, 1, (1L << 60) + 7);
+        accept(store, journal, 2, -1990);
+
+        var replayed = new Recorder(new PaymentStore(8), 2);
+        journal(replayed.store).replay(replayed);
+
+        assertThat(replayed.await()).isTrue();
+        assertThat(replayed.unsent).containsExactlyInAnyOrder("1:" + ((1L << 60) + 7) + ":0", "2:-1990:0");
+    }
+
+    // com o store cheio o replay espera slots liberados pelo pipeline em vez de largar o resto
+    @Test
+    void replayWaitsForFreeSlotsInsteadOfDroppingEntries() throws Exception {
+        var store = new PaymentStore(8);
+        var journal = journal(store);
+        for (int id = 1; id <= 3; id++) {
+            accept(store, journal, id, id * 100);
+        }
+
+        var replayed = new Recorder(new PaymentStore(1), 3);
+        journal(replayed.store).replay(replayed);
+
+        for (int released = 1; released < 3; released++) {
+            TimeUnit.MILLISECONDS.sleep(50);
+            assertThat(replayed.unsent).hasSize(released);
+            replayed.store.release(0);
+        }
+        assertThat(replayed.await()).isTrue();
+        assertThat(replayed.unsent).containsExactlyInAnyOrder("1:100:0", "2:200:0", "3:300:0");
+    }
+
+    private IntakeJournal journal(PaymentStore store) throws Exception {
+        return new IntakeJournal(store, new CorrelationIdSet(64), new PipelineMetrics(), true, directory.toString(), 1, 0);
+    }
+
+    private static int accept(PaymentStore store, IntakeJournal journal, long id, long cents) {
+        int slot = store.allocate();
+        store.correlationIdMsb[slot] = id;
+        store.correlationIdLsb[slot] = id;
+        store.amountCents[slot] = cents;
+        store.receivedAtMillis[slot] = 1_700_000_000_000L;
+        journal.accepted(slot);
+        return slot;
+    }
+
+    private static final class Recorder implements IntakeJournal.Replay {
+        private final PaymentStore store;
+        private final CountDownLatch replayed;
+        private final List<String> unsent = new CopyOnWriteArrayList<>();
+        private final List<String> paid = new CopyOnWriteArrayList<>();
+
+        private Recorder(PaymentStore store, int expected) {
+            this.store = store;
+            this.replayed = new CountDownLatch(expected);
+        }
+
+        @Override
+        public void unsent(int slot) {
+            unsent.add(describe(slot));
+            replayed.countDown();
+        }
+
+        @Override
+        public void paid(int slot) {
+            paid.add(describe(slot));
+            replayed.countDown();
+        }
+
+        private boolean await() throws InterruptedException {
+            return replayed.await(5, TimeUnit.SECONDS);
+        }
+
+        private String describe(int slot) {
+            return store.correlationIdMsb[slot] + ":" + store.amountCents[slot] + ":" + store.requestedAtMillis[slot];
+        }
+    }
+}
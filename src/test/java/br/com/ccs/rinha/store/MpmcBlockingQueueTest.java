@@ -0,0 +1,99 @@
+package br.com.ccs.rinha.store;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MpmcBlockingQueueTest {
+
+    @Test
+    void removeTakesAnItemFromTheMiddleAndPollSkipsIt() {
+        var queue = new MpmcBlockingQueue<String>(8);
+        queue.offer("a");
+        queue.offer("b");
+        queue.offer("c");
+
+        assertThat(queue.remove("b")).isTrue();
+        assertThat(queue.remove("b")).isFalse();
+        assertThat(queue.remove("x")).isFalse();
+
+        assertThat(queue.poll()).isEqualTo("a");
+        assertThat(queue.peek()).isEqualTo("c");
+        assertThat(queue.poll()).isEqualTo("c");
+        assertThat(queue.poll()).isNull();
+        assertThat(queue.isEmpty()).isTrue();
+    }
+
+    // o executor remove a tarefa ainda na fila e ela nunca roda
+    @Test
+    void executorRemoveCancelsAQueuedTask() throws Exception {
+        var busy = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var ran = new AtomicInteger();
+        var executor = new ThreadPoolExecutor(1, 1, 10, TimeUnit.SECONDS, new MpmcBlockingQueue<>(8));
+        try {
+            executor.execute(() -> {
+                busy.countDown();
+                await(release);
+            });
+            busy.await();
+            Runnable queued = ran::incrementAndGet;
+            executor.execute(queued);
+
+            assertThat(executor.remove(queued)).isTrue();
+            release.countDown();
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(ran).hasValue(0);
+    }
+
+    // remove e poll disputando os mesmos itens: cada um sai por exatamente um dos dois
+    @Test
+    void removeAndPollNeverHandOutTheSameItemTwice() throws Exception {
+        var queue = new MpmcBlockingQueue<Integer>(1024);
+        var polled = new ArrayList<Integer>();
+        var removed = new AtomicInteger();
+        int total = 100_000;
+
+        var remover = Thread.ofPlatform().start(() -> {
+            for (int i = 0; i < total; i++) {
+                if (queue.remove(i)) {
+                    removed.incrementAndGet();
+                }
+            }
+        });
+        for (int i = 0; i < total; i++) {
+            while (!queue.offer(i)) {
+                Integer value = queue.poll();
+                if (value != null) {
+                    polled.add(value);
+                }
+            }
+        }
+        remover.join();
+        Integer value;
+        while ((value = queue.poll()) != null) {
+            polled.add(value);
+        }
+
+        assertThat(polled).doesNotHaveDuplicates();
+        assertThat(polled.size() + removed.get()).isEqualTo(total);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package br.com.ccs.rinha.store;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PaymentStoreTest {
+
+    // a fila livre arredonda para potência de 2, os arrays não
+    @Test
+    void reportsTheRequestedCapacity() {
+        var store = new PaymentStore(1000);
+
+        assertThat(store.capacity()).isEqualTo(1000);
+        assertThat(store.available()).isEqualTo(1000);
+
+        for (int i = 0; i < 1000; i++) {
+            assertThat(store.allocate()).isNotEqualTo(IntBlockingQueue.EMPTY);
+        }
+        assertThat(store.allocate()).isEqualTo(IntBlockingQueue.EMPTY);
+        assertThat(store.available()).isZero();
+    }
+
+    @Test
+    void releasedSlotsAreAllocatedAgain() {
+        var store = new PaymentStore(3);
+        int slot = store.allocate();
+        store.journalSegment[slot] = 7;
+        store.release(slot);
+
+        for (int i = 0; i < 3; i++) {
+            int again = store.allocate();
+            assertThat(store.journalSegment[again]).isEqualTo(-1);
+        }
+    }
+}
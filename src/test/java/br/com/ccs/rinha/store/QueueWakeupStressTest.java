@@ -0,0 +1,85 @@
+package br.com.ccs.rinha.store;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Sem spin o consumidor vazio se registra e estaciona a cada item, então todo offer do ping-pong disputa
+// com um enlist: um sinal perdido deixa as duas threads paradas no take com um item na fila
+class QueueWakeupStressTest {
+
+    private static final int ROUNDS = 200_000;
+
+    @Test
+    void intQueueNeverLosesTheWakeupOfAParkingConsumer() throws Exception {
+        var ping = new IntBlockingQueue(2, 0, 0);
+        var pong = new IntBlockingQueue(2, 0, 0);
+
+        assertPingPong(round -> ping.offer(round), () -> {
+            int value = ping.take();
+            pong.offer(value);
+        }, () -> pong.take());
+    }
+
+    @Test
+    void genericQueueNeverLosesTheWakeupOfAParkingConsumer() throws Exception {
+        var ping = new MpmcBlockingQueue<Integer>(2, 0, 0);
+        var pong = new MpmcBlockingQueue<Integer>(2, 0, 0);
+
+        assertPingPong(round -> ping.offer(round), () -> {
+            int value = ping.take();
+            pong.offer(value);
+        }, () -> pong.take());
+    }
+
+    private static void assertPingPong(Offer send, Step echo, Take receive) throws Exception {
+        var done = new CountDownLatch(2);
+        var failure = new AtomicReference<Throwable>();
+
+        var echoer = Thread.ofPlatform().daemon().start(() -> {
+            try {
+                for (int round = 0; round < ROUNDS; round++) {
+                    echo.run();
+                }
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+            done.countDown();
+        });
+        var sender = Thread.ofPlatform().daemon().start(() -> {
+            try {
+                for (int round = 0; round < ROUNDS; round++) {
+                    send.offer(round);
+                    assertThat(receive.take()).isEqualTo(round);
+                }
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+            done.countDown();
+        });
+
+        boolean finished = done.await(60, TimeUnit.SECONDS);
+        if (!finished) {
+            echoer.interrupt();
+            sender.interrupt();
+        }
+        assertThat(finished).as("ping-pong stalled on a lost wakeup").isTrue();
+        assertThat(failure.get()).isNull();
+    }
+
+    private interface Offer {
+        void offer(int round);
+    }
+
+    private interface Step {
+        void run() throws InterruptedException;
+    }
+
+    private interface Take {
+        int take() throws InterruptedException;
+    }
+}